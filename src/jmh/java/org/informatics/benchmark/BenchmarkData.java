@@ -0,0 +1,109 @@
+package org.informatics.benchmark;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.FoodProduct;
+import org.informatics.model.NonFoodProduct;
+import org.informatics.model.Product;
+import org.informatics.model.Receipt;
+import org.informatics.model.ReceiptItem;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Test data shared by the benchmarks
+ */
+final class BenchmarkData {
+    // Large enough that a benchmark run never sells out a product
+    static final int STOCK_PER_PRODUCT = 1_000_000_000;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates a catalog of food and non-food products with different expiration dates
+     */
+    static List<Product> createCatalog(int size) {
+        Random random = new Random(42);
+        LocalDate today = LocalDate.now();
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String id = String.format("P%06d", i);
+            double purchasePrice = 0.50 + random.nextInt(2000) / 100.0;
+            LocalDate expirationDate = today.plusDays(1 + random.nextInt(60));
+            if (i % 2 == 0) {
+                products.add(new FoodProduct(id, "Food " + i, purchasePrice, expirationDate,
+                        STOCK_PER_PRODUCT, 30.0));
+            } else {
+                products.add(new NonFoodProduct(id, "Item " + i, purchasePrice, expirationDate,
+                        STOCK_PER_PRODUCT, 40.0));
+            }
+        }
+        return products;
+    }
+
+    static List<Cashier> createCashiers(int count) {
+        List<Cashier> cashiers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            cashiers.add(new Cashier(String.format("C%03d", i), "Cashier " + i, 1500.0));
+        }
+        return cashiers;
+    }
+
+    /**
+     * Creates a receipt with the given number of lines
+     */
+    static Receipt createReceipt(int receiptNumber, Cashier cashier, List<Product> catalog, int basketSize) {
+        Receipt.Builder builder = new Receipt.Builder()
+                .receiptNumber(receiptNumber)
+                .cashier(cashier)
+                .issuedAt(LocalDateTime.now());
+        for (int i = 0; i < basketSize; i++) {
+            Product product = catalog.get(i % catalog.size());
+            builder.addItem(new ReceiptItem(product, 1 + i % 3, product.getPurchasePrice() * 1.3));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates an empty directory for receipts
+     *
+     * @param storage "tmpfs" for a RAM disk (/dev/shm when available), "disk" for the build directory
+     */
+    static Path createReceiptsDirectory(String storage) {
+        Path parent;
+        if ("tmpfs".equals(storage) && Files.isDirectory(Paths.get("/dev/shm"))) {
+            parent = Paths.get("/dev/shm");
+        } else if ("tmpfs".equals(storage)) {
+            parent = Paths.get(System.getProperty("java.io.tmpdir"));
+        } else {
+            parent = Paths.get("build", "jmh-receipts");
+        }
+        try {
+            Files.createDirectories(parent);
+            return Files.createTempDirectory(parent, "receipts-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void deleteDirectory(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
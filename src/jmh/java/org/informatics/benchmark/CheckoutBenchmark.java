@@ -0,0 +1,94 @@
+package org.informatics.benchmark;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.Product;
+import org.informatics.model.Receipt;
+import org.informatics.service.DurabilityMode;
+import org.informatics.service.Store;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Full checkout: reserve stock, price items, issue and persist the receipt
+ * Run with several threads (-Pjmh.threads) to measure parallel checkout
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class CheckoutBenchmark {
+    private static final int CASHIERS = 64;
+
+    @Param({"100", "10000"})
+    public int catalogSize;
+
+    @Param({"1", "5", "20"})
+    public int basketSize;
+
+    @Param({"FIRE_AND_FORGET", "FLUSH_PER_BATCH", "FSYNC_PER_RECEIPT"})
+    public DurabilityMode durabilityMode;
+
+    @Param({"tmpfs", "disk"})
+    public String storage;
+
+    private Path receiptsDirectory;
+    private Store store;
+    private List<Product> catalog;
+    private final AtomicInteger nextCashier = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        receiptsDirectory = BenchmarkData.createReceiptsDirectory(storage);
+        store = new Store("Benchmark", 3, 30.0, receiptsDirectory.toString(), durabilityMode);
+        store.setPrintReceipts(false);
+
+        catalog = BenchmarkData.createCatalog(catalogSize);
+        for (Product product : catalog) {
+            store.addProduct(product);
+        }
+        for (Cashier cashier : BenchmarkData.createCashiers(CASHIERS)) {
+            store.addCashier(cashier);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        store.close();
+        BenchmarkData.deleteDirectory(receiptsDirectory);
+    }
+
+    /**
+     * One cashier per benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class Checkout {
+        String cashierId;
+        SplittableRandom random;
+        Map<String, Integer> basket;
+
+        @Setup(Level.Trial)
+        public void setUp(CheckoutBenchmark benchmark) {
+            int index = benchmark.nextCashier.getAndIncrement() % CASHIERS;
+            cashierId = String.format("C%03d", index);
+            random = new SplittableRandom(index);
+            basket = new HashMap<>();
+        }
+    }
+
+    @Benchmark
+    public Receipt makeSale(Checkout checkout) throws Exception {
+        Map<String, Integer> basket = checkout.basket;
+        basket.clear();
+        while (basket.size() < Math.min(basketSize, catalogSize)) {
+            Product product = catalog.get(checkout.random.nextInt(catalogSize));
+            basket.put(product.getId(), 1 + checkout.random.nextInt(3));
+        }
+        return store.makeSale(checkout.cashierId, basket, Double.MAX_VALUE);
+    }
+}
@@ -0,0 +1,40 @@
+package org.informatics.benchmark;
+
+import org.informatics.model.Product;
+import org.informatics.service.PricingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sale price calculation for products near and far from expiration
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class PricingBenchmark {
+    @Param({"100", "10000"})
+    public int catalogSize;
+
+    private PricingService pricingService;
+    private List<Product> catalog;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pricingService = new PricingService(3, 30.0);
+        catalog = BenchmarkData.createCatalog(catalogSize);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+    }
+
+    @Benchmark
+    public double calculateSalePrice(Cursor cursor) {
+        Product product = catalog.get(cursor.index);
+        cursor.index = cursor.index + 1 == catalogSize ? 0 : cursor.index + 1;
+        return pricingService.calculateSalePrice(product);
+    }
+}
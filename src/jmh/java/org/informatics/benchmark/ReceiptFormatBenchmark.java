@@ -0,0 +1,31 @@
+package org.informatics.benchmark;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.Receipt;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a receipt as printed text
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ReceiptFormatBenchmark {
+    @Param({"1", "5", "20"})
+    public int basketSize;
+
+    private Receipt receipt;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Cashier cashier = BenchmarkData.createCashiers(1).get(0);
+        receipt = BenchmarkData.createReceipt(1, cashier, BenchmarkData.createCatalog(basketSize), basketSize);
+    }
+
+    @Benchmark
+    public String format() {
+        return receipt.format();
+    }
+}
@@ -0,0 +1,64 @@
+package org.informatics.benchmark;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.Product;
+import org.informatics.model.Receipt;
+import org.informatics.service.DurabilityMode;
+import org.informatics.service.ReceiptService;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issuing receipts, including writing them to the journal in the background
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ReceiptServiceBenchmark {
+    @Param({"1", "5", "20"})
+    public int basketSize;
+
+    @Param({"FIRE_AND_FORGET", "FLUSH_PER_BATCH", "FSYNC_PER_RECEIPT"})
+    public DurabilityMode durabilityMode;
+
+    @Param({"tmpfs", "disk"})
+    public String storage;
+
+    private Path receiptsDirectory;
+    private ReceiptService receiptService;
+    private Cashier cashier;
+    private List<Product> catalog;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        receiptsDirectory = BenchmarkData.createReceiptsDirectory(storage);
+        receiptService = new ReceiptService(receiptsDirectory.toString(), durabilityMode,
+                ReceiptService.DEFAULT_QUEUE_CAPACITY);
+        cashier = BenchmarkData.createCashiers(1).get(0);
+        catalog = BenchmarkData.createCatalog(basketSize);
+    }
+
+    /**
+     * Waits for the writer, so every iteration pays for the receipts it issued
+     */
+    @TearDown(Level.Iteration)
+    public void flush() throws Exception {
+        receiptService.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        receiptService.close();
+        BenchmarkData.deleteDirectory(receiptsDirectory);
+    }
+
+    @Benchmark
+    public Receipt issueReceipt() throws Exception {
+        Receipt receipt = BenchmarkData.createReceipt(receiptService.allocateReceiptNumber(),
+                cashier, catalog, basketSize);
+        return receiptService.issueReceipt(receipt);
+    }
+}
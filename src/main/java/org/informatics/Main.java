@@ -124,7 +124,7 @@ public class Main {
             System.out.println("Available products (without expired):");
             store.getAvailableProducts().forEach(p -> {
                 double price = store.getPricingService().calculateSalePrice(p);
-                boolean hasDiscount = p.getDaysUntilExpiration() <= store.getPricingService().getExpirationThresholdDays();
+                boolean hasDiscount = p.getDaysUntilExpiration(store.getClock().currentEpochDay()) <= store.getPricingService().getExpirationThresholdDays();
                 System.out.printf("  - %s (Price: %.2f EUR)%s\n",
                         p.getName(),
                         price,
@@ -279,9 +279,14 @@ public class Main {
             System.out.println("Products in stock: " + store.getAvailableProducts().size());
             System.out.println();
             System.out.println("All sales completed successfully!");
-            System.out.println("Receipt files created in /receipts directory");
+            System.out.println("Receipts journal written to /receipts directory");
             System.out.println("Data serialization working properly");
 
+            store.close();
+            for (String failure : store.getBackgroundFailures()) {
+                System.err.println(failure);
+            }
+
         } catch (Exception e) {
             System.err.println("ERROR: " + e.getMessage());
             e.printStackTrace();
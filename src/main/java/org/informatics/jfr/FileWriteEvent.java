@@ -0,0 +1,28 @@
+package org.informatics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One file written by FileManager.writeToFile or SerializationUtil.serialize
+ */
+@Name("org.informatics.FileWrite")
+@Label("File Write")
+@Category({"Store", "I/O"})
+@Description("Text file or serialized object written to disk")
+public class FileWriteEvent extends Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+
+    @Label("Object Type")
+    @Description("Class of the serialized object, null for text files")
+    public String objectType;
+}
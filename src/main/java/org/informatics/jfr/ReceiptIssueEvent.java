@@ -0,0 +1,27 @@
+package org.informatics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One call of ReceiptService.issueReceipt, including any wait for room in the writer queue
+ */
+@Name("org.informatics.ReceiptIssue")
+@Label("Receipt Issue")
+@Category("Store")
+@Description("Receipt registered and queued for the journal")
+@StackTrace(false)
+public class ReceiptIssueEvent extends Event {
+    @Label("Receipt Number")
+    public int receiptNumber;
+
+    @Label("Cashier")
+    public String cashierId;
+
+    @Label("Item Count")
+    public int itemCount;
+}
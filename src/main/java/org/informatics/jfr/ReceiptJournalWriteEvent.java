@@ -0,0 +1,36 @@
+package org.informatics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One group of receipts appended to the receipt journal by the background writer
+ */
+@Name("org.informatics.ReceiptJournalWrite")
+@Label("Receipt Journal Write")
+@Category({"Store", "I/O"})
+@Description("Group of receipts appended to the journal, including forcing it to disk")
+@StackTrace(false)
+public class ReceiptJournalWriteEvent extends Event {
+    @Label("First Receipt Number")
+    public int firstReceiptNumber;
+
+    @Label("Last Receipt Number")
+    public int lastReceiptNumber;
+
+    @Label("Receipt Count")
+    public int receiptCount;
+
+    @Label("Bytes Written")
+    @Description("Encoded receipts, without record headers")
+    @DataAmount
+    public long bytesWritten;
+
+    @Label("Durability Mode")
+    public String durabilityMode;
+}
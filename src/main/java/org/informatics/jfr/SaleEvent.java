@@ -0,0 +1,36 @@
+package org.informatics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One call of Store.makeSale, from reserving stock until the receipt is issued
+ *
+ * The Store events cost a few field writes when no recording is running. Record them with
+ * e.g. -XX:StartFlightRecording=filename=store.jfr and view them in JDK Mission Control
+ * (category "Store") next to GC pauses, safepoints and file I/O
+ */
+@Name("org.informatics.Sale")
+@Label("Sale")
+@Category("Store")
+@Description("Sale made by a cashier, including stock reservation, pricing and issuing the receipt")
+@StackTrace(false)
+public class SaleEvent extends Event {
+    @Label("Cashier")
+    public String cashierId;
+
+    @Label("Receipt Number")
+    @Description("0 if the sale failed")
+    public int receiptNumber;
+
+    @Label("Item Count")
+    public int itemCount;
+
+    @Label("Failure")
+    @Description("Exception that rejected the sale, null if it succeeded")
+    public String failure;
+}
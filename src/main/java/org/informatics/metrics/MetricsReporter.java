@@ -0,0 +1,80 @@
+package org.informatics.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Periodically takes a metrics snapshot and hands it, as text or JSON, to a sink
+ * (e.g. System.out::print or a line appended to a file)
+ */
+public class MetricsReporter implements AutoCloseable {
+
+    public enum Format {
+        TEXT,
+        JSON
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder failureCount;
+    private volatile RuntimeException lastFailure;
+
+    private MetricsReporter(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        this.failureCount = new LongAdder();
+    }
+
+    /**
+     * Starts reporting on a daemon thread, first after one interval
+     */
+    public static MetricsReporter start(Supplier<MetricsSnapshot> source, Duration interval,
+                                        Format format, Consumer<String> sink) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        MetricsReporter reporter = new MetricsReporter(scheduler);
+        long millis = Math.max(1, interval.toMillis());
+        scheduler.scheduleAtFixedRate(() -> reporter.report(source, format, sink), millis, millis,
+                TimeUnit.MILLISECONDS);
+        return reporter;
+    }
+
+    /**
+     * Returns the last failed report, or null if none failed
+     */
+    public RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Returns the number of failed reports
+     */
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    /**
+     * Stops reporting
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void report(Supplier<MetricsSnapshot> source, Format format, Consumer<String> sink) {
+        try {
+            MetricsSnapshot snapshot = source.get();
+            sink.accept(format == Format.JSON ? snapshot.toJson() + System.lineSeparator() : snapshot.toText());
+        } catch (RuntimeException e) {
+            // A failing sink must not stop later reports
+            lastFailure = e;
+            failureCount.increment();
+        }
+    }
+}
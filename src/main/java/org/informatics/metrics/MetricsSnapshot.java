@@ -0,0 +1,153 @@
+package org.informatics.metrics;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counters and latency histograms read at one moment, printable as text or JSON
+ */
+public class MetricsSnapshot {
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final Instant takenAt;
+    private final Map<String, Long> counters;
+    private final Map<String, LatencyHistogram.Snapshot> latencies;
+
+    private MetricsSnapshot(Builder builder) {
+        this.takenAt = builder.takenAt;
+        this.counters = Collections.unmodifiableMap(new LinkedHashMap<>(builder.counters));
+        this.latencies = Collections.unmodifiableMap(new LinkedHashMap<>(builder.latencies));
+    }
+
+    public Instant getTakenAt() {
+        return takenAt;
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    /**
+     * Returns a counter, 0 if there is no counter with that name
+     */
+    public long getCounter(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    public Map<String, LatencyHistogram.Snapshot> getLatencies() {
+        return latencies;
+    }
+
+    public LatencyHistogram.Snapshot getLatency(String name) {
+        return latencies.get(name);
+    }
+
+    /**
+     * Formats the snapshot as aligned text, latencies in microseconds
+     */
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== Metrics at ").append(takenAt).append(" ===").append(System.lineSeparator());
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            sb.append(String.format("%-36s %d", entry.getKey(), entry.getValue())).append(System.lineSeparator());
+        }
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : latencies.entrySet()) {
+            LatencyHistogram.Snapshot latency = entry.getValue();
+            sb.append(String.format(Locale.ROOT, "%-36s count=%d mean=%.1fus", entry.getKey(), latency.getCount(),
+                    latency.getMeanNanos() / 1000.0));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                sb.append(String.format(Locale.ROOT, " %s=%.1fus", PERCENTILE_NAMES[i],
+                        latency.getPercentileNanos(PERCENTILES[i]) / 1000.0));
+            }
+            sb.append(String.format(Locale.ROOT, " max=%.1fus", latency.getMaxNanos() / 1000.0))
+                    .append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Formats the snapshot as one JSON object, latencies in nanoseconds
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"takenAt\":\"").append(takenAt).append("\",\"counters\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendJsonString(sb, entry.getKey()).append(':').append(entry.getValue());
+        }
+        sb.append("},\"latencies\":{");
+        first = true;
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : latencies.entrySet()) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            LatencyHistogram.Snapshot latency = entry.getValue();
+            appendJsonString(sb, entry.getKey())
+                    .append(":{\"count\":").append(latency.getCount())
+                    .append(",\"meanNanos\":").append(Math.round(latency.getMeanNanos()));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                sb.append(",\"").append(PERCENTILE_NAMES[i]).append("Nanos\":")
+                        .append(latency.getPercentileNanos(PERCENTILES[i]));
+            }
+            sb.append(",\"maxNanos\":").append(latency.getMaxNanos()).append('}');
+        }
+        return sb.append("}}").toString();
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+
+    private static StringBuilder appendJsonString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * Builder for collecting the values of several components into one snapshot
+     */
+    public static class Builder {
+        private final Map<String, Long> counters = new LinkedHashMap<>();
+        private final Map<String, LatencyHistogram.Snapshot> latencies = new LinkedHashMap<>();
+        private Instant takenAt = Instant.now();
+
+        public Builder takenAt(Instant takenAt) {
+            this.takenAt = takenAt;
+            return this;
+        }
+
+        public Builder counter(String name, long value) {
+            counters.put(name, value);
+            return this;
+        }
+
+        public Builder latency(String name, LatencyHistogram histogram) {
+            latencies.put(name, histogram.snapshot());
+            return this;
+        }
+
+        public MetricsSnapshot build() {
+            return new MetricsSnapshot(this);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.informatics.model;
 
+import org.informatics.util.Money;
+
 import java.time.LocalDate;
 
 /**
@@ -19,15 +21,23 @@ public class NonFoodProduct extends Product {
     @Override
     public double calculateSalePrice(int daysUntilExpiration, int expirationThreshold,
                                      double discountPercentage) {
-        // Base price with markup
-        double basePrice = getPurchasePrice() * (1 + markupPercentage / 100.0);
+        // Rounded to cents, so it matches the price on the receipt
+        return Money.toUnits(calculateSalePriceCents(daysUntilExpiration, expirationThreshold,
+                discountPercentage));
+    }
 
+    @Override
+    public long calculateSalePriceCents(int daysUntilExpiration, int expirationThreshold,
+                                        double discountPercentage) {
         // Apply discount if nearing expiration
+        int discountBasisPoints = 0;
         if (daysUntilExpiration <= expirationThreshold && daysUntilExpiration > 0) {
-            basePrice = basePrice * (1 - discountPercentage / 100.0);
+            discountBasisPoints = Money.toBasisPoints(discountPercentage);
         }
 
-        return basePrice;
+        // Base price with markup, minus the discount
+        return Money.applyMarkupAndDiscount(getPurchasePriceCents(),
+                Money.toBasisPoints(markupPercentage), discountBasisPoints);
     }
 
     public double getMarkupPercentage() {
@@ -1,28 +1,62 @@
 package org.informatics.model;
 
+import org.informatics.util.Money;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serial;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 
 /**
  * Abstract base class for all products in the store
+ * Prices are kept in whole cents (see {@link Money})
  */
 public abstract class Product implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private final String id;
-    private final String name;
-    private final double purchasePrice;
-    private final ProductCategory category;
-    private final LocalDate expirationDate;
-    private int quantityInStock;
+    private static final VarHandle QUANTITY_IN_STOCK;
+
+    static {
+        try {
+            QUANTITY_IN_STOCK = MethodHandles.lookup()
+                    .findVarHandle(Product.class, "quantityInStock", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The purchase price is stored as "purchasePrice" in units, as in older versions
+     */
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", String.class),
+            new ObjectStreamField("name", String.class),
+            new ObjectStreamField("purchasePrice", double.class),
+            new ObjectStreamField("category", ProductCategory.class),
+            new ObjectStreamField("expirationDate", LocalDate.class),
+            new ObjectStreamField("quantityInStock", int.class)
+    };
+
+    // Not final only because of readObject
+    private String id;
+    private String name;
+    private long purchasePriceCents;
+    private ProductCategory category;
+    private LocalDate expirationDate;
+    private volatile int quantityInStock;
 
     public Product(String id, String name, double purchasePrice,
                    ProductCategory category, LocalDate expirationDate, int quantityInStock) {
         this.id = id;
         this.name = name;
-        this.purchasePrice = purchasePrice;
+        this.purchasePriceCents = Money.toCents(purchasePrice);
         this.category = category;
         this.expirationDate = expirationDate;
         this.quantityInStock = quantityInStock;
@@ -31,36 +65,72 @@ public abstract class Product implements Serializable {
     /**
      * Abstract method for calculating sale price
      * Each product type has its own pricing logic
+     *
+     * The price is rounded to whole cents (half up), the same as {@link #calculateSalePriceCents};
+     * before prices were kept in cents this returned the unrounded value, e.g. 1.90290625
+     * instead of 1.90
      */
     public abstract double calculateSalePrice(int daysUntilExpiration, int expirationThreshold,
                                               double discountPercentage);
 
     /**
-     * Checks if the product has expired
+     * Calculates the sale price in cents, rounded half up once after markup and discount
+     * Each product type has its own pricing logic
+     */
+    public abstract long calculateSalePriceCents(int daysUntilExpiration, int expirationThreshold,
+                                                 double discountPercentage);
+
+    /**
+     * Checks if the product has expired today by the system clock
+     * Wall-clock only: the store decides with {@link #isExpiredOn} and its own StoreClock
      */
     public boolean isExpired() {
-        return LocalDate.now().isAfter(expirationDate);
+        return isExpiredOn(LocalDate.now().toEpochDay());
+    }
+
+    /**
+     * Checks if the product has expired on the given day (days since 1970-01-01)
+     */
+    public boolean isExpiredOn(long epochDay) {
+        return epochDay > expirationDate.toEpochDay();
     }
 
     /**
-     * Calculates how many days remain until expiration
+     * Calculates how many days remain until expiration, counted from today by the system clock
+     * Wall-clock only: the store counts with {@link #getDaysUntilExpiration(long)} and its own StoreClock
      */
     public int getDaysUntilExpiration() {
-        return (int) ChronoUnit.DAYS.between(LocalDate.now(), expirationDate);
+        return getDaysUntilExpiration(LocalDate.now().toEpochDay());
+    }
+
+    /**
+     * Calculates how many days remain until expiration, counted from the given day
+     */
+    public int getDaysUntilExpiration(long epochDay) {
+        return (int) (expirationDate.toEpochDay() - epochDay);
     }
 
     /**
      * Reduces available quantity on sale
      */
     public void reduceStock(int quantity) {
-        this.quantityInStock -= quantity;
+        QUANTITY_IN_STOCK.getAndAdd(this, -quantity);
     }
 
     /**
      * Increases available quantity on restock
      */
     public void addStock(int quantity) {
-        this.quantityInStock += quantity;
+        QUANTITY_IN_STOCK.getAndAdd(this, quantity);
+    }
+
+    /**
+     * Sets the quantity only if it still is the expected one (atomic, without locking)
+     *
+     * @return false if another thread changed the quantity in the meantime
+     */
+    public boolean compareAndSetStock(int expectedQuantity, int newQuantity) {
+        return QUANTITY_IN_STOCK.compareAndSet(this, expectedQuantity, newQuantity);
     }
 
     // Getters
@@ -73,7 +143,11 @@ public abstract class Product implements Serializable {
     }
 
     public double getPurchasePrice() {
-        return purchasePrice;
+        return Money.toUnits(purchasePriceCents);
+    }
+
+    public long getPurchasePriceCents() {
+        return purchasePriceCents;
     }
 
     public ProductCategory getCategory() {
@@ -88,6 +162,29 @@ public abstract class Product implements Serializable {
         return quantityInStock;
     }
 
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("name", name);
+        fields.put("purchasePrice", Money.toUnits(purchasePriceCents));
+        fields.put("category", category);
+        fields.put("expirationDate", expirationDate);
+        fields.put("quantityInStock", quantityInStock);
+        out.writeFields();
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = (String) fields.get("id", null);
+        name = (String) fields.get("name", null);
+        purchasePriceCents = Money.toCents(fields.get("purchasePrice", 0.0));
+        category = (ProductCategory) fields.get("category", null);
+        expirationDate = (LocalDate) fields.get("expirationDate", null);
+        quantityInStock = fields.get("quantityInStock", 0);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,5 +1,13 @@
 package org.informatics.model;
 
+import org.informatics.util.Money;
+import org.informatics.util.MoneyFormat;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serial;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -9,29 +17,48 @@ import java.util.List;
 
 /**
  * Represents a receipt
+ * The total is the exact sum of the item totals in cents
  */
 public class Receipt implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss");
+    private static final int LINE_WIDTH = 50;
+    private static final String DOUBLE_LINE = "=".repeat(LINE_WIDTH) + "\n";
+    private static final String SINGLE_LINE = "-".repeat(LINE_WIDTH) + "\n";
 
-    private final int receiptNumber;
-    private final Cashier cashier;
-    private final LocalDateTime issuedAt;
-    private final List<ReceiptItem> items;
-    private final double totalAmount;
+    /**
+     * The total is stored as "totalAmount" in units, as in older versions
+     */
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("receiptNumber", int.class),
+            new ObjectStreamField("cashier", Cashier.class),
+            new ObjectStreamField("issuedAt", LocalDateTime.class),
+            new ObjectStreamField("items", List.class),
+            new ObjectStreamField("totalAmount", double.class)
+    };
+
+    // Not final only because of readObject
+    private int receiptNumber;
+    private Cashier cashier;
+    private LocalDateTime issuedAt;
+    private List<ReceiptItem> items;
+    private long totalAmountCents;
 
     private Receipt(Builder builder) {
         this.receiptNumber = builder.receiptNumber;
         this.cashier = builder.cashier;
         this.issuedAt = builder.issuedAt;
         this.items = new ArrayList<>(builder.items);
-        this.totalAmount = calculateTotal();
+        this.totalAmountCents = calculateTotalCents();
     }
 
-    private double calculateTotal() {
-        return items.stream()
-                .mapToDouble(ReceiptItem::getTotalPrice)
-                .sum();
+    private long calculateTotalCents() {
+        long total = 0;
+        for (int i = 0; i < items.size(); i++) {
+            total = Math.addExact(total, items.get(i).getTotalPriceCents());
+        }
+        return total;
     }
 
     public int getReceiptNumber() {
@@ -51,32 +78,93 @@ public class Receipt implements Serializable {
     }
 
     public double getTotalAmount() {
-        return totalAmount;
+        return Money.toUnits(totalAmountCents);
+    }
+
+    public long getTotalAmountCents() {
+        return totalAmountCents;
     }
 
     /**
      * Formats the receipt for display/storage
      */
     public String format() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("=".repeat(50)).append("\n");
-        sb.append("RECEIPT #").append(receiptNumber).append("\n");
-        sb.append("=".repeat(50)).append("\n");
+        return formatTo(new StringBuilder(256 + items.size() * 48)).toString();
+    }
+
+    /**
+     * Appends the formatted receipt (same text as {@link #format()}) to the given builder
+     * Nothing else is allocated, so a caller can reuse one builder for many receipts
+     */
+    public StringBuilder formatTo(StringBuilder sb) {
+        sb.append(DOUBLE_LINE);
+        sb.append("RECEIPT #").append(receiptNumber).append('\n');
+        sb.append(DOUBLE_LINE);
         sb.append("Cashier: ").append(cashier.getName()).append(" (").append(cashier.getId()).append(")\n");
-        sb.append("Date and time: ").append(issuedAt.format(DATE_FORMATTER)).append("\n");
-        sb.append("-".repeat(50)).append("\n");
+        sb.append("Date and time: ");
+        appendIssuedAt(sb);
+        sb.append('\n');
+        sb.append(SINGLE_LINE);
         sb.append("ARTICLES:\n");
-        sb.append("-".repeat(50)).append("\n");
+        sb.append(SINGLE_LINE);
+
+        for (int i = 0; i < items.size(); i++) {
+            items.get(i).appendTo(sb).append('\n');
+        }
+
+        sb.append(SINGLE_LINE);
+        sb.append("SUM: ");
+        MoneyFormat.appendCents(sb, getTotalAmountCents()).append(" EUR\n");
+        sb.append(DOUBLE_LINE);
+        return sb;
+    }
+
+    /**
+     * Appends the issue time as dd.MM.yyyy HH:mm:ss
+     */
+    private void appendIssuedAt(StringBuilder sb) {
+        int year = issuedAt.getYear();
+        if (year < 1000 || year > 9999) {
+            // Padding and sign rules of the formatter for unusual years
+            sb.append(issuedAt.format(DATE_FORMATTER));
+            return;
+        }
+        appendTwoDigits(sb, issuedAt.getDayOfMonth()).append('.');
+        appendTwoDigits(sb, issuedAt.getMonthValue()).append('.');
+        sb.append(year).append(' ');
+        appendTwoDigits(sb, issuedAt.getHour()).append(':');
+        appendTwoDigits(sb, issuedAt.getMinute()).append(':');
+        appendTwoDigits(sb, issuedAt.getSecond());
+    }
 
-        for (ReceiptItem item : items) {
-            sb.append(item.toString()).append("\n");
+    private static StringBuilder appendTwoDigits(StringBuilder sb, int value) {
+        if (value < 10) {
+            sb.append('0');
         }
+        return sb.append(value);
+    }
 
-        sb.append("-".repeat(50)).append("\n");
-        sb.append(String.format("SUM: %.2f EUR\n", totalAmount));
-        sb.append("=".repeat(50)).append("\n");
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("receiptNumber", receiptNumber);
+        fields.put("cashier", cashier);
+        fields.put("issuedAt", issuedAt);
+        fields.put("items", items);
+        fields.put("totalAmount", Money.toUnits(totalAmountCents));
+        out.writeFields();
+    }
 
-        return sb.toString();
+    @Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        receiptNumber = fields.get("receiptNumber", 0);
+        cashier = (Cashier) fields.get("cashier", null);
+        issuedAt = (LocalDateTime) fields.get("issuedAt", null);
+        items = (List<ReceiptItem>) fields.get("items", null);
+        // Keep the stored total, so receipts from older versions print exactly as before
+        totalAmountCents = Money.toCents(fields.get("totalAmount", 0.0));
     }
 
     @Override
@@ -85,7 +173,7 @@ public class Receipt implements Serializable {
                 "receiptNumber=" + receiptNumber +
                 ", cashier=" + cashier.getName() +
                 ", issuedAt=" + issuedAt +
-                ", totalAmount=" + totalAmount +
+                ", totalAmount=" + getTotalAmount() +
                 ", itemsCount=" + items.size() +
                 '}';
     }
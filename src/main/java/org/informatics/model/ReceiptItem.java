@@ -1,27 +1,78 @@
 package org.informatics.model;
 
+import org.informatics.util.Money;
+import org.informatics.util.MoneyFormat;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
+import java.io.Serial;
 import java.io.Serializable;
 
 /**
  * Represents a single item in a receipt
+ * Keeps only the product ID and name, so a stored receipt does not hold the whole product
+ * Prices are kept in whole cents
  */
 public class ReceiptItem implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private final Product product;
-    private final int quantity;
-    private final double unitPrice;
-    private final double totalPrice;
+    /**
+     * Receipts written by older versions stored the whole product in the "product" field
+     * Prices are stored in units as "unitPrice" and "totalPrice", as before
+     */
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("productId", String.class),
+            new ObjectStreamField("productName", String.class),
+            new ObjectStreamField("quantity", int.class),
+            new ObjectStreamField("unitPrice", double.class),
+            new ObjectStreamField("totalPrice", double.class),
+            new ObjectStreamField("product", Product.class)
+    };
+
+    private String productId;
+    private String productName;
+    private int quantity;
+    private long unitPriceCents;
+    private long totalPriceCents;
 
     public ReceiptItem(Product product, int quantity, double unitPrice) {
-        this.product = product;
+        this(product.getId(), product.getName(), quantity, unitPrice);
+    }
+
+    /**
+     * Creates an item from a price in units; the unit price and the line total are each
+     * rounded half up to cents, as they were printed before
+     */
+    public ReceiptItem(String productId, String productName, int quantity, double unitPrice) {
+        this(productId, productName, quantity, Money.toCents(unitPrice), Money.toCents(quantity * unitPrice));
+    }
+
+    private ReceiptItem(String productId, String productName, int quantity,
+                        long unitPriceCents, long totalPriceCents) {
+        this.productId = productId;
+        this.productName = productName;
         this.quantity = quantity;
-        this.unitPrice = unitPrice;
-        this.totalPrice = quantity * unitPrice;
+        this.unitPriceCents = unitPriceCents;
+        this.totalPriceCents = totalPriceCents;
     }
 
-    public Product getProduct() {
-        return product;
+    /**
+     * Creates an item from a unit price in cents; the line total is exact
+     */
+    public static ReceiptItem ofCents(String productId, String productName, int quantity, long unitPriceCents) {
+        return new ReceiptItem(productId, productName, quantity, unitPriceCents,
+                Money.multiply(unitPriceCents, quantity));
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
     }
 
     public int getQuantity() {
@@ -29,16 +80,64 @@ public class ReceiptItem implements Serializable {
     }
 
     public double getUnitPrice() {
-        return unitPrice;
+        return Money.toUnits(unitPriceCents);
     }
 
     public double getTotalPrice() {
-        return totalPrice;
+        return Money.toUnits(totalPriceCents);
+    }
+
+    public long getUnitPriceCents() {
+        return unitPriceCents;
+    }
+
+    public long getTotalPriceCents() {
+        return totalPriceCents;
+    }
+
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("productId", productId);
+        fields.put("productName", productName);
+        fields.put("quantity", quantity);
+        fields.put("unitPrice", Money.toUnits(unitPriceCents));
+        fields.put("totalPrice", Money.toUnits(totalPriceCents));
+        fields.put("product", null);
+        out.writeFields();
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        productId = (String) fields.get("productId", null);
+        productName = (String) fields.get("productName", null);
+        quantity = fields.get("quantity", 0);
+        unitPriceCents = Money.toCents(fields.get("unitPrice", 0.0));
+        totalPriceCents = Money.toCents(fields.get("totalPrice", 0.0));
+
+        Product legacyProduct = (Product) fields.get("product", null);
+        if (productId == null && legacyProduct != null) {
+            productId = legacyProduct.getId();
+            productName = legacyProduct.getName();
+        }
+    }
+
+    /**
+     * Appends the item line as printed on the receipt, e.g. "Milk x 2 @ 3.25 EUR = 6.50 EUR"
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        if (!MoneyFormat.isPlainLocale()) {
+            return sb.append(String.format("%s x %d @ %.2f EUR = %.2f EUR",
+                    productName, quantity, getUnitPrice(), getTotalPrice()));
+        }
+        sb.append(productName).append(" x ").append(quantity).append(" @ ");
+        MoneyFormat.appendCents(sb, unitPriceCents).append(" EUR = ");
+        return MoneyFormat.appendCents(sb, totalPriceCents).append(" EUR");
     }
 
     @Override
     public String toString() {
-        return String.format("%s x %d @ %.2f EUR = %.2f EUR",
-                product.getName(), quantity, unitPrice, totalPrice);
+        return appendTo(new StringBuilder(64)).toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,146 @@
+package org.informatics.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load generator for {@link CheckoutServer}: many tills, each selling in its own virtual thread
+ * Usage: CheckoutLoadClient baseUrl tills salesPerTill cashierCount productId...
+ * e.g. CheckoutLoadClient http://localhost:8080 10000 20 100 P001 P002 P003
+ */
+public final class CheckoutLoadClient {
+    private final URI saleUri;
+    private final int cashierCount;
+    private final List<String> productIds;
+
+    public CheckoutLoadClient(URI baseUri, int cashierCount, List<String> productIds) {
+        this.saleUri = baseUri.resolve("/sale");
+        this.cashierCount = cashierCount;
+        this.productIds = List.copyOf(productIds);
+    }
+
+    /**
+     * Runs the given number of tills at once; every till makes its sales one after another
+     */
+    public Result run(int tills, int salesPerTill) throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+
+            long start = System.nanoTime();
+            List<Future<long[]>> futures = new ArrayList<>(tills);
+            for (int till = 0; till < tills; till++) {
+                int tillNumber = till;
+                futures.add(executor.submit(() -> runTill(client, tillNumber, salesPerTill)));
+            }
+
+            long[] latencies = new long[tills * salesPerTill];
+            int count = 0;
+            long failed = 0;
+            for (Future<long[]> future : futures) {
+                for (long latency : future.get()) {
+                    if (latency < 0) {
+                        failed++;
+                    } else {
+                        latencies[count++] = latency;
+                    }
+                }
+            }
+            return new Result(Arrays.copyOf(latencies, count), failed, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the latency of every sale in nanoseconds, -1 for a sale that was not accepted
+     */
+    private long[] runTill(HttpClient client, int till, int sales) throws InterruptedException {
+        Random random = new Random(till);
+        String cashier = String.format("C%03d", till % cashierCount + 1);
+        long[] latencies = new long[sales];
+        for (int i = 0; i < sales; i++) {
+            String body = "cashier=" + cashier + "&payment=1000"
+                    + "&item=" + productIds.get(random.nextInt(productIds.size())) + ":" + (1 + random.nextInt(3));
+            HttpRequest request = HttpRequest.newBuilder(saleUri)
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                latencies[i] = response.statusCode() == 200 ? System.nanoTime() - start : -1;
+            } catch (IOException e) {
+                latencies[i] = -1;
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Latencies of the accepted sales and the number of failed ones
+     */
+    public static final class Result {
+        private final long[] sortedLatencies;
+        private final long failed;
+        private final long elapsedNanos;
+
+        private Result(long[] latencies, long failed, long elapsedNanos) {
+            this.sortedLatencies = latencies;
+            Arrays.sort(this.sortedLatencies);
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getCompleted() {
+            return sortedLatencies.length;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public double getSalesPerSecond() {
+            return (getCompleted() + failed) / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * Returns the latency at the given percentile (0-100) in milliseconds
+         */
+        public double getLatencyMillis(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0.0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(index, sortedLatencies.length - 1))] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("completed=%d failed=%d throughput=%.0f sales/s p50=%.2f ms p99=%.2f ms max=%.2f ms",
+                    getCompleted(), failed, getSalesPerSecond(),
+                    getLatencyMillis(50), getLatencyMillis(99), getLatencyMillis(100));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.err.println("Usage: CheckoutLoadClient <baseUrl> <tills> <salesPerTill> <cashierCount> <productId>...");
+            System.exit(2);
+        }
+        CheckoutLoadClient client = new CheckoutLoadClient(URI.create(args[0]), Integer.parseInt(args[3]),
+                Arrays.asList(args).subList(4, args.length));
+        System.out.println(client.run(Integer.parseInt(args[1]), Integer.parseInt(args[2])));
+    }
+}
@@ -0,0 +1,287 @@
+package org.informatics.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.informatics.exception.ExpiredProductException;
+import org.informatics.exception.InsufficientStockException;
+import org.informatics.exception.InvalidProductException;
+import org.informatics.metrics.MetricsSnapshot;
+import org.informatics.model.Cashier;
+import org.informatics.model.Receipt;
+import org.informatics.service.CatalogImportReport;
+import org.informatics.service.Store;
+import org.informatics.util.Money;
+import org.informatics.util.MoneyFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP front-end for a {@link Store}, so many tills can sell at once
+ *
+ * Every request runs on its own virtual thread, so a sale waiting for receipt I/O
+ * does not hold a platform thread. Idle connections are only watched by the server's selector
+ *
+ * POST /sale with a form body, e.g. cashier=C001&payment=20.00&item=P001:2&item=P002:1
+ * 200 - receipt=17, total=5.94, change=14.06 (one "key=value" per line)
+ * 400 - invalid request, cashier, product or payment
+ * 409 - not enough stock or an expired product
+ *
+ * GET /health answers "OK"
+ * GET /metrics returns the store's metrics, as JSON with ?format=json
+ */
+public class CheckoutServer implements AutoCloseable {
+    public static final int DEFAULT_BACKLOG = 16_384;
+
+    private final Store store;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LongAdder completedSales;
+    private final LongAdder rejectedSales;
+
+    public CheckoutServer(Store store, InetSocketAddress address) throws IOException {
+        this(store, address, DEFAULT_BACKLOG);
+    }
+
+    /**
+     * @param backlog Connections the operating system queues before they are accepted
+     */
+    public CheckoutServer(Store store, InetSocketAddress address, int backlog) throws IOException {
+        this.store = store;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.completedSales = new LongAdder();
+        this.rejectedSales = new LongAdder();
+        this.server = HttpServer.create(address, backlog);
+        this.server.setExecutor(executor);
+        this.server.createContext("/sale", this::handleSale);
+        this.server.createContext("/health", exchange -> respond(exchange, 200, "OK\n"));
+        this.server.createContext("/metrics", this::handleMetrics);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on (useful when started on port 0)
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getCompletedSalesCount() {
+        return completedSales.sum();
+    }
+
+    public long getRejectedSalesCount() {
+        return rejectedSales.sum();
+    }
+
+    /**
+     * Stops accepting requests, waits briefly for running sales and stops the request threads
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handleSale(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "Use POST\n");
+                return;
+            }
+
+            SaleRequest request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request = SaleRequest.parse(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                rejectedSales.increment();
+                respond(exchange, 400, "error=" + e.getMessage() + "\n");
+                return;
+            }
+
+            try {
+                Receipt receipt = store.makeSale(request.cashierId, request.items, request.payment);
+                completedSales.increment();
+                respond(exchange, 200, formatReceipt(receipt, request.payment));
+            } catch (InvalidProductException e) {
+                rejectedSales.increment();
+                respond(exchange, 400, "error=" + e.getMessage() + "\n");
+            } catch (InsufficientStockException | ExpiredProductException e) {
+                rejectedSales.increment();
+                respond(exchange, 409, "error=" + e.getMessage() + "\n");
+            } catch (IOException e) {
+                rejectedSales.increment();
+                respond(exchange, 500, "error=Receipt could not be saved\n");
+            } catch (RuntimeException e) {
+                // E.g. the state log failed or the store is closing; the client must still get an answer
+                rejectedSales.increment();
+                respond(exchange, 500, "error=Sale could not be completed\n");
+            }
+        }
+    }
+
+    /**
+     * GET /metrics returns the store's metrics as text, or as JSON with ?format=json
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                respond(exchange, 405, "Use GET\n");
+                return;
+            }
+            MetricsSnapshot snapshot = store.getMetricsSnapshot();
+            String query = exchange.getRequestURI().getQuery();
+            respond(exchange, 200, "format=json".equals(query) ? snapshot.toJson() + "\n" : snapshot.toText());
+        }
+    }
+
+    private static String formatReceipt(Receipt receipt, double payment) {
+        long totalCents = receipt.getTotalAmountCents();
+        StringBuilder sb = new StringBuilder(64);
+        sb.append("receipt=").append(receipt.getReceiptNumber()).append('\n');
+        MoneyFormat.appendCents(sb.append("total="), totalCents).append('\n');
+        MoneyFormat.appendCents(sb.append("change="), Money.toCents(payment) - totalCents).append('\n');
+        return sb.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Sale parsed from a form body
+     */
+    static final class SaleRequest {
+        private final String cashierId;
+        private final Map<String, Integer> items;
+        private final double payment;
+
+        private SaleRequest(String cashierId, Map<String, Integer> items, double payment) {
+            this.cashierId = cashierId;
+            this.items = items;
+            this.payment = payment;
+        }
+
+        static SaleRequest parse(String body) {
+            String cashierId = null;
+            Double payment = null;
+            Map<String, Integer> items = new LinkedHashMap<>();
+            for (String pair : body.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int eq = pair.indexOf('=');
+                String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                switch (key) {
+                    case "cashier" -> cashierId = value;
+                    case "payment" -> payment = parsePayment(value);
+                    case "item" -> addItem(items, value);
+                    default -> throw new IllegalArgumentException("Unknown field '" + key + "'");
+                }
+            }
+            if (cashierId == null || cashierId.isEmpty()) {
+                throw new IllegalArgumentException("Missing cashier");
+            }
+            if (payment == null) {
+                throw new IllegalArgumentException("Missing payment");
+            }
+            if (items.isEmpty()) {
+                throw new IllegalArgumentException("Missing items");
+            }
+            return new SaleRequest(cashierId, items, payment);
+        }
+
+        private static double parsePayment(String value) {
+            try {
+                double payment = Double.parseDouble(value);
+                // NaN, Infinity and out-of-range values like 1e400 parse, but are no amount of money
+                if (Double.isFinite(payment) && payment >= 0) {
+                    return payment;
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Invalid payment '" + value + "'");
+        }
+
+        private static void addItem(Map<String, Integer> items, String value) {
+            int colon = value.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Invalid item '" + value + "' (expected productId:quantity)");
+            }
+            int quantity;
+            try {
+                quantity = Integer.parseInt(value.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid item '" + value + "' (expected productId:quantity)");
+            }
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("Invalid quantity in item '" + value + "'");
+            }
+            try {
+                // Repeated items are summed, which must not wrap around to a small or negative quantity
+                items.merge(value.substring(0, colon), quantity, Math::addExact);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Too many of item '" + value.substring(0, colon) + "'");
+            }
+        }
+    }
+
+    /**
+     * Starts a server for a store loaded from a catalog file
+     * Usage: CheckoutServer port receiptsDirectory catalog.csv [cashierCount]
+     * Cashiers C001, C002, ... are registered, so the load client can use them
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: CheckoutServer <port> <receiptsDirectory> <catalog.csv> [cashierCount]");
+            System.exit(2);
+        }
+        int port = Integer.parseInt(args[0]);
+        int cashierCount = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+
+        Store store = new Store("Shop NBU", 5, 20.0, args[1]);
+        store.setPrintReceipts(false);
+        for (int i = 1; i <= cashierCount; i++) {
+            store.addCashier(new Cashier(String.format("C%03d", i), "Cashier " + i, 1500.0));
+        }
+        CatalogImportReport report = store.importCatalog(Path.of(args[2]));
+        System.out.print(report.format());
+
+        CheckoutServer server = new CheckoutServer(store, new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                store.close();
+            } catch (Exception e) {
+                System.err.println("Could not close the store: " + e.getMessage());
+            }
+            for (String failure : store.getBackgroundFailures()) {
+                System.err.println(failure);
+            }
+        }));
+        server.start();
+        System.out.println("Checkout server listening on port " + server.getPort());
+    }
+}
@@ -0,0 +1,97 @@
+package org.informatics.service;
+
+import org.informatics.exception.InvalidProductException;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a catalog import: how many rows were imported and which rows were rejected
+ */
+public class CatalogImportReport {
+    private final long rowCount;
+    private final long importedCount;
+    private final List<RowError> errors;
+
+    CatalogImportReport(long rowCount, long importedCount, List<RowError> errors) {
+        this.rowCount = rowCount;
+        this.importedCount = importedCount;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Returns the number of product rows read (without header, blank and comment lines)
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * Returns the rejected rows, ordered by line number
+     */
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    /**
+     * Formats the report as text, one line per rejected row
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Imported ").append(importedCount).append(" of ").append(rowCount).append(" rows");
+        if (!errors.isEmpty()) {
+            sb.append(", ").append(errors.size()).append(" rejected");
+        }
+        sb.append(System.lineSeparator());
+        for (RowError error : errors) {
+            sb.append(error).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    /**
+     * A rejected row of the catalog file
+     */
+    public static final class RowError {
+        private final long lineNumber;
+        private final InvalidProductException error;
+
+        RowError(long lineNumber, InvalidProductException error) {
+            this.lineNumber = lineNumber;
+            this.error = error;
+        }
+
+        /**
+         * Returns the line number in the file, starting at 1
+         */
+        public long getLineNumber() {
+            return lineNumber;
+        }
+
+        public InvalidProductException getError() {
+            return error;
+        }
+
+        public String getMessage() {
+            return error.getMessage();
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + error.getMessage();
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package org.informatics.service;
+
+import org.informatics.exception.InvalidProductException;
+import org.informatics.model.FoodProduct;
+import org.informatics.model.NonFoodProduct;
+import org.informatics.model.Product;
+import org.informatics.model.ProductCategory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Imports products from a supplier CSV file into the inventory
+ *
+ * Expected columns (the header line is optional):
+ * category,id,name,purchasePrice,expirationDate,quantity,markupPercentage
+ * e.g. FOOD,P001,Milk,1.50,2026-01-31,100,30
+ *
+ * The file is read in chunks of lines; chunks are parsed in parallel and inserted in file order,
+ * one bulk insert per chunk. Invalid rows do not stop the import, they are listed in the report
+ */
+public class CatalogImporter {
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+    public static final String HEADER = "category,id,name,purchasePrice,expirationDate,quantity,markupPercentage";
+
+    private static final int COLUMN_COUNT = 7;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final ProductSink sink;
+    private final int chunkSize;
+    // Chunks parsed ahead of the insert; bounds the memory used for large files
+    private final int maxChunksInFlight;
+
+    public CatalogImporter(InventoryService inventoryService) {
+        this(inventoryService, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize Number of lines parsed by one task
+     */
+    public CatalogImporter(InventoryService inventoryService, int chunkSize) {
+        this(inventoryService::addProducts, chunkSize);
+    }
+
+    /**
+     * @param sink Inserts the parsed chunks (e.g. into the inventory and the store's state log)
+     */
+    CatalogImporter(ProductSink sink, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be a positive number");
+        }
+        this.sink = sink;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2);
+    }
+
+    /**
+     * Imports a UTF-8 CSV file
+     */
+    public CatalogImportReport importFile(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try (BufferedReader reader = new BufferedReader(Channels.newReader(channel,
+                StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE), -1), READ_BUFFER_SIZE)) {
+            return importFrom(reader);
+        }
+    }
+
+    /**
+     * Imports CSV lines from a reader; the reader is not closed
+     */
+    public CatalogImportReport importFrom(BufferedReader reader) throws IOException {
+        Deque<CompletableFuture<ParsedChunk>> pending = new ArrayDeque<>();
+        ImportTotals totals = new ImportTotals();
+
+        List<String> lines = new ArrayList<>(chunkSize);
+        long firstLineNumber = 1;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1 && isHeader(line)) {
+                firstLineNumber = 2;
+                continue;
+            }
+            lines.add(line);
+            if (lines.size() == chunkSize) {
+                submit(pending, lines, firstLineNumber, totals);
+                lines = new ArrayList<>(chunkSize);
+                firstLineNumber = lineNumber + 1;
+            }
+        }
+        if (!lines.isEmpty()) {
+            submit(pending, lines, firstLineNumber, totals);
+        }
+        while (!pending.isEmpty()) {
+            insert(pending.poll(), totals);
+        }
+
+        return new CatalogImportReport(totals.rowCount, totals.importedCount, totals.errors);
+    }
+
+    private void submit(Deque<CompletableFuture<ParsedChunk>> pending, List<String> lines,
+                        long firstLineNumber, ImportTotals totals) {
+        pending.add(CompletableFuture.supplyAsync(() -> parseChunk(lines, firstLineNumber)));
+        // Chunks are inserted in file order, so the first row with an ID wins
+        while (pending.size() > maxChunksInFlight) {
+            insert(pending.poll(), totals);
+        }
+    }
+
+    private void insert(CompletableFuture<ParsedChunk> future, ImportTotals totals) {
+        ParsedChunk chunk;
+        try {
+            chunk = future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+
+        totals.rowCount += chunk.rowCount;
+        List<CatalogImportReport.RowError> chunkErrors = chunk.errors;
+        if (!chunk.products.isEmpty()) {
+            List<Product> duplicates;
+            try {
+                duplicates = sink.addProducts(chunk.products);
+            } catch (InvalidProductException e) {
+                // Parsed products are never null
+                throw new IllegalStateException(e);
+            }
+            totals.importedCount += chunk.products.size() - duplicates.size();
+
+            if (!duplicates.isEmpty()) {
+                // Duplicates come back in input order, so one pass finds their lines
+                int next = 0;
+                for (int i = 0; i < chunk.products.size() && next < duplicates.size(); i++) {
+                    Product product = chunk.products.get(i);
+                    if (product == duplicates.get(next)) {
+                        chunkErrors.add(new CatalogImportReport.RowError(chunk.lineNumbers[i],
+                                new InvalidProductException("Product with ID " + product.getId() + " already exists")));
+                        next++;
+                    }
+                }
+                chunkErrors.sort(Comparator.comparingLong(CatalogImportReport.RowError::getLineNumber));
+            }
+        }
+        totals.errors.addAll(chunkErrors);
+    }
+
+    /**
+     * Parses one chunk of lines; runs in parallel with the other chunks
+     */
+    private static ParsedChunk parseChunk(List<String> lines, long firstLineNumber) {
+        ParsedChunk chunk = new ParsedChunk(lines.size());
+        String[] fields = new String[COLUMN_COUNT];
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            long lineNumber = firstLineNumber + i;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            chunk.rowCount++;
+            try {
+                chunk.add(parseRow(line, fields), lineNumber);
+            } catch (InvalidProductException e) {
+                chunk.errors.add(new CatalogImportReport.RowError(lineNumber, e));
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Parses and validates one row
+     */
+    private static Product parseRow(String line, String[] fields) throws InvalidProductException {
+        int count = splitFields(line, fields);
+        if (count != COLUMN_COUNT) {
+            throw new InvalidProductException("Expected " + COLUMN_COUNT + " columns but found " + count);
+        }
+
+        ProductCategory category = parseCategory(fields[0]);
+        String id = fields[1].trim();
+        if (id.isEmpty()) {
+            throw new InvalidProductException("Product ID cannot be empty");
+        }
+        String name = fields[2].trim();
+        if (name.isEmpty()) {
+            throw new InvalidProductException("Product name cannot be empty");
+        }
+        double purchasePrice = parseAmount(fields[3], "purchase price");
+        if (purchasePrice < 0) {
+            throw new InvalidProductException("Purchase price cannot be negative");
+        }
+        LocalDate expirationDate = parseDate(fields[4]);
+        int quantity = parseQuantity(fields[5]);
+        double markupPercentage = parseAmount(fields[6], "markup percentage");
+        if (markupPercentage < 0) {
+            throw new InvalidProductException("Markup percentage cannot be negative");
+        }
+
+        return category == ProductCategory.FOOD
+                ? new FoodProduct(id, name, purchasePrice, expirationDate, quantity, markupPercentage)
+                : new NonFoodProduct(id, name, purchasePrice, expirationDate, quantity, markupPercentage);
+    }
+
+    private static ProductCategory parseCategory(String value) throws InvalidProductException {
+        String trimmed = value.trim();
+        if (trimmed.equalsIgnoreCase("FOOD")) {
+            return ProductCategory.FOOD;
+        }
+        if (trimmed.equalsIgnoreCase("NON_FOOD")) {
+            return ProductCategory.NON_FOOD;
+        }
+        throw new InvalidProductException("Unknown category '" + trimmed + "'");
+    }
+
+    private static double parseAmount(String value, String column) throws InvalidProductException {
+        try {
+            double amount = Double.parseDouble(value.trim());
+            if (Double.isFinite(amount)) {
+                return amount;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new InvalidProductException("Invalid " + column + " '" + value.trim() + "'");
+    }
+
+    private static LocalDate parseDate(String value) throws InvalidProductException {
+        String trimmed = value.trim();
+        try {
+            if (isPlainIsoDate(trimmed)) {
+                // Much cheaper than the formatter for the common yyyy-MM-dd form
+                return LocalDate.of(digits(trimmed, 0, 4), digits(trimmed, 5, 7), digits(trimmed, 8, 10));
+            }
+            return LocalDate.parse(trimmed);
+        } catch (DateTimeException e) {
+            throw new InvalidProductException("Invalid expiration date '" + trimmed + "' (expected yyyy-MM-dd)");
+        }
+    }
+
+    private static boolean isPlainIsoDate(String value) {
+        if (value.length() != 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return false;
+        }
+        for (int i = 0; i < 10; i++) {
+            if (i != 4 && i != 7 && (value.charAt(i) < '0' || value.charAt(i) > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int digits(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            result = result * 10 + (value.charAt(i) - '0');
+        }
+        return result;
+    }
+
+    private static int parseQuantity(String value) throws InvalidProductException {
+        int quantity;
+        try {
+            quantity = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidProductException("Invalid quantity '" + value.trim() + "'");
+        }
+        if (quantity < 0) {
+            throw new InvalidProductException("Quantity cannot be negative");
+        }
+        return quantity;
+    }
+
+    /**
+     * Splits a CSV line into fields; a field may be quoted ("a, b") with "" for a quote inside
+     *
+     * @return Number of fields in the line (only the first fields.length are stored)
+     */
+    private static int splitFields(String line, String[] fields) {
+        int count = 0;
+        int length = line.length();
+        int pos = 0;
+        while (true) {
+            String field;
+            if (pos < length && line.charAt(pos) == '"') {
+                StringBuilder sb = new StringBuilder();
+                pos++;
+                while (pos < length) {
+                    char c = line.charAt(pos++);
+                    if (c == '"') {
+                        if (pos < length && line.charAt(pos) == '"') {
+                            sb.append('"');
+                            pos++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        sb.append(c);
+                    }
+                }
+                // Skip anything between the closing quote and the separator
+                int comma = line.indexOf(',', pos);
+                pos = comma < 0 ? length : comma;
+                field = sb.toString();
+            } else {
+                int comma = line.indexOf(',', pos);
+                int end = comma < 0 ? length : comma;
+                field = line.substring(pos, end);
+                pos = end;
+            }
+
+            if (count < fields.length) {
+                fields[count] = field;
+            }
+            count++;
+            if (pos >= length) {
+                return count;
+            }
+            pos++; // the comma
+        }
+    }
+
+    private static boolean isHeader(String line) {
+        String first = line.startsWith("\uFEFF") ? line.substring(1) : line;
+        return first.regionMatches(true, 0, "category,", 0, "category,".length());
+    }
+
+    /**
+     * Products parsed from one chunk, with the line each came from
+     */
+    private static final class ParsedChunk {
+        private final List<Product> products;
+        private final long[] lineNumbers;
+        private final List<CatalogImportReport.RowError> errors;
+        private int rowCount;
+
+        private ParsedChunk(int lineCount) {
+            this.products = new ArrayList<>(lineCount);
+            this.lineNumbers = new long[lineCount];
+            this.errors = new ArrayList<>();
+        }
+
+        private void add(Product product, long lineNumber) {
+            lineNumbers[products.size()] = lineNumber;
+            products.add(product);
+        }
+    }
+
+    /**
+     * Running totals, only touched by the importing thread
+     */
+    private static final class ImportTotals {
+        private long rowCount;
+        private long importedCount;
+        private final List<CatalogImportReport.RowError> errors = new ArrayList<>();
+    }
+
+    /**
+     * Inserts one chunk of parsed products
+     */
+    @FunctionalInterface
+    interface ProductSink {
+        /**
+         * @return Products that were not added because their ID already exists, in input order
+         */
+        List<Product> addProducts(List<Product> products) throws InvalidProductException;
+    }
+}
@@ -0,0 +1,476 @@
+package org.informatics.service;
+
+import org.informatics.exception.ExpiredProductException;
+import org.informatics.exception.InsufficientStockException;
+import org.informatics.exception.InvalidProductException;
+import org.informatics.model.FoodProduct;
+import org.informatics.model.NonFoodProduct;
+import org.informatics.model.Product;
+import org.informatics.model.ProductCategory;
+import org.informatics.util.Money;
+import org.informatics.util.StoreClock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inventory backend for very large catalogs, kept as columns of primitive arrays
+ *
+ * Every product ID gets a dense index (0, 1, 2, ...) when it is added. Purchase price, markup,
+ * expiration day, category and stock are stored per index in primitive columns, so whole-catalog
+ * computations are plain loops that never touch a Product object. Products are exposed as
+ * {@link ProductView}s over the columns
+ *
+ * The columns are split into fixed-size pages; growing adds pages but never copies them,
+ * so a stock update is never lost to a resize. Stock lives in {@link StockCounters}
+ * (on the heap by default, or off-heap / in a mapped file) and is updated with compare-and-set;
+ * adding products is serialized
+ */
+public class ColumnarInventory implements AutoCloseable {
+    static final int PAGE_BITS = 12;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final ProductCategory[] CATEGORIES = ProductCategory.values();
+
+    private final StoreClock clock;
+    // ID to dense index; the only per-product object kept apart from the ID and name strings
+    private final Map<String, Integer> indexById;
+    private final StockCounters stock;
+    private volatile Columns columns;
+    private volatile int size;
+
+    public ColumnarInventory() {
+        this(StoreClock.system());
+    }
+
+    /**
+     * @param clock Clock that decides which products have expired
+     */
+    public ColumnarInventory(StoreClock clock) {
+        this(clock, new HeapStockCounters());
+    }
+
+    /**
+     * @param stock Where the stock levels are kept (e.g. {@link OffHeapStockCounters})
+     */
+    public ColumnarInventory(StoreClock clock, StockCounters stock) {
+        this.clock = clock != null ? clock : StoreClock.system();
+        this.stock = stock;
+        this.indexById = new ConcurrentHashMap<>();
+        this.columns = new Columns(0);
+    }
+
+    // ==================== Adding products ====================
+
+    /**
+     * Adds a new product given by its column values
+     * With file-backed stock counters, a count kept from an earlier run replaces the given quantity
+     *
+     * @param markupBasisPoints Markup in basis points (3000 = 30%)
+     * @return Dense index of the product
+     */
+    public synchronized int addProduct(String id, String name, ProductCategory category, long purchasePriceCents,
+                                       int markupBasisPoints, LocalDate expirationDate, int quantityInStock)
+            throws InvalidProductException {
+        if (id == null || category == null || expirationDate == null) {
+            throw new InvalidProductException("Product ID, category and expiration date are required");
+        }
+        if (indexById.containsKey(id)) {
+            throw new InvalidProductException("Product with ID " + id + " already exists");
+        }
+        long epochDay = expirationDate.toEpochDay();
+        if (epochDay != (int) epochDay) {
+            throw new InvalidProductException("Expiration date " + expirationDate + " is out of range");
+        }
+
+        int index = size;
+        Columns current = ensurePage(index >>> PAGE_BITS);
+        current.set(index, id, name, category, purchasePriceCents, markupBasisPoints, (int) epochDay);
+        try {
+            stock.ensureCapacity(index + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not grow the stock counters", e);
+        }
+        stock.initialize(index, id, quantityInStock);
+        // Publish the row only after all its columns are written
+        size = index + 1;
+        indexById.put(id, index);
+        return index;
+    }
+
+    /**
+     * Adds a food or non-food product; the Product object itself is not kept
+     */
+    public int addProduct(Product product) throws InvalidProductException {
+        if (product == null) {
+            throw new InvalidProductException("Product cannot be null");
+        }
+        return addProduct(product.getId(), product.getName(), product.getCategory(),
+                product.getPurchasePriceCents(), Money.toBasisPoints(markupPercentage(product)),
+                product.getExpirationDate(), product.getQuantityInStock());
+    }
+
+    /**
+     * Adds many products at once
+     *
+     * @return Products that were not added because their ID already exists
+     */
+    public synchronized List<Product> addProducts(Collection<? extends Product> products)
+            throws InvalidProductException {
+        List<Product> duplicates = new ArrayList<>();
+        for (Product product : products) {
+            if (product != null && indexById.containsKey(product.getId())) {
+                duplicates.add(product);
+            } else {
+                addProduct(product);
+            }
+        }
+        return duplicates;
+    }
+
+    private static double markupPercentage(Product product) throws InvalidProductException {
+        if (product instanceof FoodProduct) {
+            return ((FoodProduct) product).getMarkupPercentage();
+        }
+        if (product instanceof NonFoodProduct) {
+            return ((NonFoodProduct) product).getMarkupPercentage();
+        }
+        throw new InvalidProductException("Unsupported product type " + product.getClass().getSimpleName());
+    }
+
+    private Columns ensurePage(int page) {
+        Columns current = columns;
+        if (page >= current.pageCount()) {
+            current = current.grow(Math.max(page + 1, current.pageCount() * 2));
+            columns = current;
+        }
+        if (current.ids[page] == null) {
+            current.allocatePage(page);
+        }
+        return current;
+    }
+
+    // ==================== Stock ====================
+
+    /**
+     * Reduces quantity on sale
+     * Checking and reducing the stock is one compare-and-set, so two sales cannot oversell
+     */
+    public void reduceStock(String productId, int quantity)
+            throws InsufficientStockException, ExpiredProductException, InvalidProductException {
+        int index = indexOf(productId);
+        if (quantity <= 0) {
+            throw new InvalidProductException("Quantity must be a positive number");
+        }
+
+        Columns current = columns;
+        int page = index >>> PAGE_BITS;
+        int slot = index & PAGE_MASK;
+        int expirationDay = current.expirationEpochDay[page][slot];
+        if (clock.currentEpochDay() > expirationDay) {
+            throw new ExpiredProductException(productId, current.names[page][slot],
+                    LocalDate.ofEpochDay(expirationDay));
+        }
+
+        int available;
+        do {
+            available = stock.get(index);
+            if (available < quantity) {
+                throw new InsufficientStockException(productId, current.names[page][slot], quantity, available);
+            }
+        } while (!stock.compareAndSet(index, available, available - quantity));
+    }
+
+    /**
+     * Increases available quantity on restock
+     */
+    public void addStock(String productId, int quantity) throws InvalidProductException {
+        int index = indexOf(productId);
+        if (quantity <= 0) {
+            throw new InvalidProductException("Quantity must be a positive number");
+        }
+        stock.getAndAdd(index, quantity);
+    }
+
+    /**
+     * Closes the stock counters (e.g. forces a counters file to the disk)
+     */
+    @Override
+    public void close() throws IOException {
+        stock.close();
+    }
+
+    // ==================== Queries ====================
+
+    /**
+     * Returns the dense index of a product
+     */
+    public int indexOf(String productId) throws InvalidProductException {
+        Integer index = productId != null ? indexById.get(productId) : null;
+        if (index == null) {
+            throw new InvalidProductException("Product with ID " + productId + " does not exist");
+        }
+        return index;
+    }
+
+    public boolean contains(String productId) {
+        return productId != null && indexById.containsKey(productId);
+    }
+
+    /**
+     * Returns a view of the product with the given ID
+     */
+    public ProductView getProduct(String productId) throws InvalidProductException {
+        return new ProductView(this, indexOf(productId));
+    }
+
+    /**
+     * Returns a view of the product at the given dense index
+     */
+    public ProductView view(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return new ProductView(this, index);
+    }
+
+    public int getProductCount() {
+        return size;
+    }
+
+    /**
+     * Returns the total value of purchased goods in stock, in cents
+     * Computed by one pass over the price and stock columns
+     */
+    public long getTotalPurchaseValueCents() {
+        // Size first: a row counted in size is always in the columns read after it
+        int count = size;
+        Columns current = columns;
+        long total = 0;
+        for (int page = 0, start = 0; start < count; page++, start += PAGE_SIZE) {
+            long[] prices = current.purchasePriceCents[page];
+            int rows = Math.min(PAGE_SIZE, count - start);
+            for (int i = 0; i < rows; i++) {
+                total += prices[i] * stock.get(start + i);
+            }
+        }
+        return total;
+    }
+
+    public double getTotalPurchaseValue() {
+        return Money.toUnits(getTotalPurchaseValueCents());
+    }
+
+    /**
+     * Returns the number of units in stock over all products
+     */
+    public long getTotalStock() {
+        int count = size;
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += stock.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns all expired products, in index order
+     */
+    public List<ProductView> getExpiredProducts() {
+        long today = clock.currentEpochDay();
+        return findByExpiration(Long.MIN_VALUE, today - 1);
+    }
+
+    /**
+     * Returns products that have not expired and expire within the given number of days
+     * (0 = expiring today), in index order
+     */
+    public List<ProductView> getProductsExpiringWithin(int days) throws InvalidProductException {
+        if (days < 0) {
+            throw new InvalidProductException("Number of days cannot be negative");
+        }
+        long today = clock.currentEpochDay();
+        return findByExpiration(today, today + days);
+    }
+
+    private List<ProductView> findByExpiration(long fromDay, long toDay) {
+        // Size first: a row counted in size is always in the columns read after it
+        int count = size;
+        Columns current = columns;
+        List<ProductView> result = new ArrayList<>();
+        for (int page = 0, start = 0; start < count; page++, start += PAGE_SIZE) {
+            int[] days = current.expirationEpochDay[page];
+            int rows = Math.min(PAGE_SIZE, count - start);
+            for (int i = 0; i < rows; i++) {
+                if (days[i] >= fromDay && days[i] <= toDay) {
+                    result.add(new ProductView(this, start + i));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Column arrays split into pages; a grown copy shares the existing pages
+     */
+    private static final class Columns {
+        private final String[][] ids;
+        private final String[][] names;
+        private final byte[][] categories;
+        private final long[][] purchasePriceCents;
+        private final int[][] markupBasisPoints;
+        private final int[][] expirationEpochDay;
+
+        private Columns(int pageCount) {
+            this(new String[pageCount][], new String[pageCount][], new byte[pageCount][],
+                    new long[pageCount][], new int[pageCount][], new int[pageCount][]);
+        }
+
+        private Columns(String[][] ids, String[][] names, byte[][] categories, long[][] purchasePriceCents,
+                        int[][] markupBasisPoints, int[][] expirationEpochDay) {
+            this.ids = ids;
+            this.names = names;
+            this.categories = categories;
+            this.purchasePriceCents = purchasePriceCents;
+            this.markupBasisPoints = markupBasisPoints;
+            this.expirationEpochDay = expirationEpochDay;
+        }
+
+        private int pageCount() {
+            return ids.length;
+        }
+
+        private Columns grow(int pageCount) {
+            return new Columns(Arrays.copyOf(ids, pageCount), Arrays.copyOf(names, pageCount),
+                    Arrays.copyOf(categories, pageCount), Arrays.copyOf(purchasePriceCents, pageCount),
+                    Arrays.copyOf(markupBasisPoints, pageCount), Arrays.copyOf(expirationEpochDay, pageCount));
+        }
+
+        private void allocatePage(int page) {
+            ids[page] = new String[PAGE_SIZE];
+            names[page] = new String[PAGE_SIZE];
+            categories[page] = new byte[PAGE_SIZE];
+            purchasePriceCents[page] = new long[PAGE_SIZE];
+            markupBasisPoints[page] = new int[PAGE_SIZE];
+            expirationEpochDay[page] = new int[PAGE_SIZE];
+        }
+
+        private void set(int index, String id, String name, ProductCategory category, long priceCents,
+                         int markup, int epochDay) {
+            int page = index >>> PAGE_BITS;
+            int slot = index & PAGE_MASK;
+            ids[page][slot] = id;
+            names[page][slot] = name;
+            categories[page][slot] = (byte) category.ordinal();
+            purchasePriceCents[page][slot] = priceCents;
+            markupBasisPoints[page][slot] = markup;
+            expirationEpochDay[page][slot] = epochDay;
+        }
+    }
+
+    /**
+     * Lightweight view of one product; reads the columns on every call, so the stock is always current
+     */
+    public static final class ProductView {
+        private final ColumnarInventory inventory;
+        private final int index;
+
+        private ProductView(ColumnarInventory inventory, int index) {
+            this.inventory = inventory;
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getId() {
+            return columns().ids[page()][slot()];
+        }
+
+        public String getName() {
+            return columns().names[page()][slot()];
+        }
+
+        public ProductCategory getCategory() {
+            return CATEGORIES[columns().categories[page()][slot()]];
+        }
+
+        public long getPurchasePriceCents() {
+            return columns().purchasePriceCents[page()][slot()];
+        }
+
+        public int getMarkupBasisPoints() {
+            return columns().markupBasisPoints[page()][slot()];
+        }
+
+        public LocalDate getExpirationDate() {
+            return LocalDate.ofEpochDay(columns().expirationEpochDay[page()][slot()]);
+        }
+
+        public int getQuantityInStock() {
+            return inventory.stock.get(index);
+        }
+
+        public boolean isExpired() {
+            return inventory.clock.currentEpochDay() > columns().expirationEpochDay[page()][slot()];
+        }
+
+        /**
+         * Calculates the sale price in cents with the same rules as {@link Product#calculateSalePriceCents}
+         */
+        public long calculateSalePriceCents(int expirationThreshold, double discountPercentage) {
+            long daysUntilExpiration = columns().expirationEpochDay[page()][slot()] - inventory.clock.currentEpochDay();
+            int discountBasisPoints = 0;
+            if (daysUntilExpiration <= expirationThreshold && daysUntilExpiration > 0) {
+                discountBasisPoints = Money.toBasisPoints(discountPercentage);
+            }
+            return Money.applyMarkupAndDiscount(getPurchasePriceCents(), getMarkupBasisPoints(), discountBasisPoints);
+        }
+
+        /**
+         * Creates a standalone Product with the current values (e.g. for a receipt or report)
+         */
+        public Product toProduct() {
+            double purchasePrice = Money.toUnits(getPurchasePriceCents());
+            double markupPercentage = getMarkupBasisPoints() / (double) Money.BASIS_POINTS_PER_PERCENT;
+            return getCategory() == ProductCategory.FOOD
+                    ? new FoodProduct(getId(), getName(), purchasePrice, getExpirationDate(),
+                    getQuantityInStock(), markupPercentage)
+                    : new NonFoodProduct(getId(), getName(), purchasePrice, getExpirationDate(),
+                    getQuantityInStock(), markupPercentage);
+        }
+
+        private Columns columns() {
+            return inventory.columns;
+        }
+
+        private int page() {
+            return index >>> PAGE_BITS;
+        }
+
+        private int slot() {
+            return index & PAGE_MASK;
+        }
+
+        @Override
+        public String toString() {
+            return "ProductView{" +
+                    "index=" + index +
+                    ", id='" + getId() + '\'' +
+                    ", name='" + getName() + '\'' +
+                    ", category=" + getCategory() +
+                    ", quantityInStock=" + getQuantityInStock() +
+                    ", expirationDate=" + getExpirationDate() +
+                    '}';
+        }
+    }
+}
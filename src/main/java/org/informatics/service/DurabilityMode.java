@@ -0,0 +1,24 @@
+package org.informatics.service;
+
+/**
+ * How strongly issued receipts are written to disk by the background receipt writer
+ *
+ * The mode only changes how the writer does its I/O: a sale never waits for its receipt to reach
+ * the disk, whatever the mode. Receipts are known to be on disk (as far as the mode goes) once
+ * {@link ReceiptService#flush()} returns, or when the future of {@link ReceiptWriter#submit} completes
+ */
+public enum DurabilityMode {
+    FIRE_AND_FORGET("Written in the background, never forced to disk"),
+    FLUSH_PER_BATCH("Forced to disk once per group of receipts"),
+    FSYNC_PER_RECEIPT("Forced to disk after every receipt");
+
+    private final String description;
+
+    DurabilityMode(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,57 @@
+package org.informatics.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Stock counters in int arrays on the heap, split into pages that are never copied
+ */
+public class HeapStockCounters implements StockCounters {
+    private static final VarHandle COUNTER = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private volatile int[][] pages = new int[0][];
+
+    @Override
+    public void ensureCapacity(int size) {
+        int pageCount = (size + ColumnarInventory.PAGE_SIZE - 1) >>> ColumnarInventory.PAGE_BITS;
+        int[][] current = pages;
+        if (pageCount <= current.length) {
+            return;
+        }
+        int[][] grown = Arrays.copyOf(current, Math.max(pageCount, current.length * 2));
+        for (int page = current.length; page < grown.length; page++) {
+            grown[page] = new int[ColumnarInventory.PAGE_SIZE];
+        }
+        pages = grown;
+    }
+
+    @Override
+    public int initialize(int index, String productId, int quantity) {
+        COUNTER.setVolatile(page(index), slot(index), quantity);
+        return quantity;
+    }
+
+    @Override
+    public int get(int index) {
+        return (int) COUNTER.getVolatile(page(index), slot(index));
+    }
+
+    @Override
+    public boolean compareAndSet(int index, int expected, int newValue) {
+        return COUNTER.compareAndSet(page(index), slot(index), expected, newValue);
+    }
+
+    @Override
+    public int getAndAdd(int index, int delta) {
+        return (int) COUNTER.getAndAdd(page(index), slot(index), delta);
+    }
+
+    private int[] page(int index) {
+        return pages[index >>> ColumnarInventory.PAGE_BITS];
+    }
+
+    private static int slot(int index) {
+        return index & (ColumnarInventory.PAGE_SIZE - 1);
+    }
+}
@@ -4,17 +4,50 @@ import org.informatics.exception.ExpiredProductException;
 import org.informatics.exception.InsufficientStockException;
 import org.informatics.exception.InvalidProductException;
 import org.informatics.model.Product;
+import org.informatics.util.Money;
+import org.informatics.util.StoreClock;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service for managing inventory (stock levels)
+ * Safe to use from many cashier threads at once
+ * Stock changes must go through this service, so the running purchase value stays correct
  */
 public class InventoryService {
+    private final StoreClock clock;
     private final Map<String, Product> products;
+    // Products grouped by expiration date (epoch day), so date queries skip the other days
+    private final ConcurrentNavigableMap<Long, Set<Product>> productsByExpirationDay;
+    // Purchase price * quantity in stock over all products in cents, updated on every stock change
+    private final LongAdder totalPurchaseValueCents;
+    // Held for writing while a batch restock is applied. Sales do not lock it: a sale that fails
+    // while a delivery was being applied waits for the delivery and tries again, so a sale
+    // never fails because it saw only half of a delivery
+    private final StampedLock deliveryLock;
+    private final StockContentionMetrics contentionMetrics;
 
     public InventoryService() {
-        this.products = new HashMap<>();
+        this(StoreClock.system());
+    }
+
+    /**
+     * @param clock Clock that decides which products have expired
+     */
+    public InventoryService(StoreClock clock) {
+        this.clock = clock != null ? clock : StoreClock.system();
+        this.products = new ConcurrentHashMap<>();
+        this.productsByExpirationDay = new ConcurrentSkipListMap<>();
+        this.totalPurchaseValueCents = new LongAdder();
+        this.deliveryLock = new StampedLock();
+        this.contentionMetrics = new StockContentionMetrics();
     }
 
     /**
@@ -24,10 +57,47 @@ public class InventoryService {
         if (product == null) {
             throw new InvalidProductException("Product cannot be null");
         }
-        if (products.containsKey(product.getId())) {
+        if (products.putIfAbsent(product.getId(), product) != null) {
             throw new InvalidProductException("Product with ID " + product.getId() + " already exists");
         }
-        products.put(product.getId(), product);
+        productsByExpirationDay
+                .computeIfAbsent(product.getExpirationDate().toEpochDay(), day -> ConcurrentHashMap.newKeySet())
+                .add(product);
+        totalPurchaseValueCents.add(Money.multiply(product.getPurchasePriceCents(), product.getQuantityInStock()));
+    }
+
+    /**
+     * Adds many new products at once (e.g. an imported catalog)
+     * The expiration index and the purchase value are updated once per day and once per call,
+     * instead of once per product
+     *
+     * @return Products that were not added because their ID already exists
+     */
+    public List<Product> addProducts(Collection<? extends Product> newProducts) throws InvalidProductException {
+        if (newProducts == null || newProducts.contains(null)) {
+            throw new InvalidProductException("Product cannot be null");
+        }
+
+        List<Product> duplicates = new ArrayList<>();
+        Map<Long, List<Product>> addedByDay = new HashMap<>();
+        long addedValueCents = 0;
+        for (Product product : newProducts) {
+            if (products.putIfAbsent(product.getId(), product) != null) {
+                duplicates.add(product);
+                continue;
+            }
+            addedByDay.computeIfAbsent(product.getExpirationDate().toEpochDay(), day -> new ArrayList<>())
+                    .add(product);
+            addedValueCents += Money.multiply(product.getPurchasePriceCents(), product.getQuantityInStock());
+        }
+
+        for (Map.Entry<Long, List<Product>> entry : addedByDay.entrySet()) {
+            productsByExpirationDay
+                    .computeIfAbsent(entry.getKey(), day -> ConcurrentHashMap.newKeySet())
+                    .addAll(entry.getValue());
+        }
+        totalPurchaseValueCents.add(addedValueCents);
+        return duplicates;
     }
 
     /**
@@ -41,7 +111,70 @@ public class InventoryService {
         if (quantity <= 0) {
             throw new InvalidProductException("Quantity must be a positive number");
         }
-        product.addStock(quantity);
+        returnStock(product, quantity);
+    }
+
+    /**
+     * Restocks a whole delivery (productId to quantity per line) in one pass
+     * Lines for the same product are added up; bad lines are rejected in the report instead
+     * of stopping the batch. The lines are applied under one lock, and a sale never fails
+     * because it saw only part of a delivery
+     */
+    public RestockReport restockAll(Collection<? extends Map.Entry<String, Integer>> delivery) {
+        RestockReport.Line[] results = new RestockReport.Line[delivery.size()];
+        Map<Product, PendingRestock> pending = new LinkedHashMap<>();
+
+        // Validate and aggregate without holding the lock
+        int index = 0;
+        for (Map.Entry<String, Integer> entry : delivery) {
+            String productId = entry.getKey();
+            int quantity = entry.getValue() != null ? entry.getValue() : 0;
+            Product product = productId != null ? products.get(productId) : null;
+            if (product == null) {
+                results[index] = new RestockReport.Line(index + 1, productId, quantity,
+                        new InvalidProductException("Product with ID " + productId + " does not exist"));
+            } else if (quantity <= 0) {
+                results[index] = new RestockReport.Line(index + 1, productId, quantity,
+                        new InvalidProductException("Quantity must be a positive number"));
+            } else {
+                pending.computeIfAbsent(product, p -> new PendingRestock()).add(index, quantity);
+            }
+            index++;
+        }
+
+        long restockedQuantity = 0;
+        long addedValueCents = 0;
+        long stamp = deliveryLock.writeLock();
+        try {
+            for (Map.Entry<Product, PendingRestock> entry : pending.entrySet()) {
+                Product product = entry.getKey();
+                PendingRestock restock = entry.getValue();
+                InvalidProductException error = null;
+                if (restock.quantity > Integer.MAX_VALUE - product.getQuantityInStock()) {
+                    error = new InvalidProductException("Restocked quantity of product " + product.getId()
+                            + " is too large");
+                } else {
+                    product.addStock((int) restock.quantity);
+                    restockedQuantity += restock.quantity;
+                    addedValueCents += Money.multiply(product.getPurchasePriceCents(), (int) restock.quantity);
+                }
+                for (int i = 0; i < restock.lineCount; i++) {
+                    int line = restock.lines[i];
+                    results[line] = new RestockReport.Line(line + 1, product.getId(), restock.quantities[i], error);
+                }
+            }
+            totalPurchaseValueCents.add(addedValueCents);
+        } finally {
+            deliveryLock.unlockWrite(stamp);
+        }
+        return new RestockReport(Arrays.asList(results), restockedQuantity);
+    }
+
+    /**
+     * Restocks a delivery given as a stream of productId to quantity lines
+     */
+    public RestockReport restockAll(Stream<? extends Map.Entry<String, Integer>> delivery) {
+        return restockAll(delivery.collect(Collectors.toList()));
     }
 
     /**
@@ -49,25 +182,119 @@ public class InventoryService {
      */
     public void reduceStock(String productId, int quantity)
             throws InsufficientStockException, ExpiredProductException, InvalidProductException {
-        Product product = products.get(productId);
+        Product product = getProduct(productId);
+        long stamp = deliveryStamp();
+        try {
+            takeStock(product, quantity);
+        } catch (InsufficientStockException e) {
+            if (deliveryLock.validate(stamp)) {
+                throw e;
+            }
+            // A delivery was applied meanwhile, try again with all of it
+            deliveryStamp();
+            takeStock(product, quantity);
+        }
+    }
 
-        if (product == null) {
-            throw new InvalidProductException("Product with ID " + productId + " does not exist");
+    /**
+     * Reserves stock for all items of a sale at once (productId to quantity)
+     * If any item cannot be reserved, the already reserved ones are returned to stock
+     * and the exception is rethrown, so the inventory is left as it was
+     */
+    public StockReservation reserve(Map<String, Integer> items)
+            throws InsufficientStockException, ExpiredProductException, InvalidProductException {
+        long stamp = deliveryStamp();
+        try {
+            return reserveOnce(items);
+        } catch (InsufficientStockException e) {
+            if (deliveryLock.validate(stamp)) {
+                throw e;
+            }
+            // A delivery was applied meanwhile, try again with all of it
+            deliveryStamp();
+            return reserveOnce(items);
+        }
+    }
+
+    private StockReservation reserveOnce(Map<String, Integer> items)
+            throws InsufficientStockException, ExpiredProductException, InvalidProductException {
+        StockReservation reservation = new StockReservation(this);
+        try {
+            for (Map.Entry<String, Integer> entry : items.entrySet()) {
+                Product product = getProduct(entry.getKey());
+                takeStock(product, entry.getValue());
+                reservation.add(product, entry.getValue());
+            }
+        } catch (InsufficientStockException | ExpiredProductException | InvalidProductException e) {
+            reservation.release();
+            throw e;
+        }
+        return reservation;
+    }
+
+    /**
+     * Returns a stamp to check later whether a delivery was applied in between
+     * Only waits if a delivery is being applied right now
+     */
+    private long deliveryStamp() {
+        long stamp = deliveryLock.tryOptimisticRead();
+        if (stamp == 0) {
+            deliveryLock.unlockRead(deliveryLock.readLock());
+            stamp = deliveryLock.tryOptimisticRead();
+        }
+        return stamp;
+    }
+
+    /**
+     * Checks and reduces the stock of a single product
+     * Uses compare-and-set on the product instead of a lock: sales of different products never
+     * touch the same data, sales of the same product retry if another sale came first
+     */
+    private void takeStock(Product product, int quantity)
+            throws InsufficientStockException, ExpiredProductException, InvalidProductException {
+        if (quantity <= 0) {
+            throw new InvalidProductException("Quantity must be a positive number");
         }
 
         // Check for expiration
-        if (product.isExpired()) {
+        if (product.isExpiredOn(clock.currentEpochDay())) {
             throw new ExpiredProductException(product.getId(), product.getName(),
                     product.getExpirationDate());
         }
 
-        // Check for availability
-        if (product.getQuantityInStock() < quantity) {
-            throw new InsufficientStockException(product.getId(), product.getName(),
-                    quantity, product.getQuantityInStock());
+        // Check for availability and reduce as one step, so two sales cannot oversell
+        int retries = 0;
+        while (true) {
+            int available = product.getQuantityInStock();
+            if (available < quantity) {
+                throw new InsufficientStockException(product.getId(), product.getName(),
+                        quantity, available);
+            }
+            if (product.compareAndSetStock(available, available - quantity)) {
+                break;
+            }
+            retries++;
         }
+        contentionMetrics.record(product.getId(), retries);
+        totalPurchaseValueCents.add(-Money.multiply(product.getPurchasePriceCents(), quantity));
+    }
 
-        product.reduceStock(quantity);
+    /**
+     * Adds quantity back to a product (restock or released reservation)
+     */
+    void returnStock(Product product, int quantity) {
+        product.addStock(quantity);
+        totalPurchaseValueCents.add(Money.multiply(product.getPurchasePriceCents(), quantity));
+    }
+
+    /**
+     * Takes the quantity of an already made sale from stock, without the checks of a new sale
+     * (used when the store replays its state log)
+     */
+    void replaySale(String productId, int quantity) throws InvalidProductException {
+        Product product = getProduct(productId);
+        product.addStock(-quantity);
+        totalPurchaseValueCents.add(-Money.multiply(product.getPurchasePriceCents(), quantity));
     }
 
     /**
@@ -81,6 +308,13 @@ public class InventoryService {
         return product;
     }
 
+    /**
+     * Returns a product by ID, or null if there is none
+     */
+    Product findProduct(String productId) {
+        return products.get(productId);
+    }
+
     /**
      * Returns all products
      */
@@ -89,21 +323,60 @@ public class InventoryService {
     }
 
     /**
-     * Returns all products that have not expired
+     * Returns all products that have not expired, ordered by expiration date
      */
     public List<Product> getAvailableProducts() {
-        return products.values().stream()
-                .filter(p -> !p.isExpired())
-                .toList();
+        return collect(productsByExpirationDay.tailMap(today(), true));
+    }
+
+    /**
+     * Returns all expired products, ordered by expiration date
+     */
+    public List<Product> getExpiredProducts() {
+        return collect(productsByExpirationDay.headMap(today(), false));
+    }
+
+    /**
+     * Returns products that have not expired and expire within the given number of days
+     * (0 = expiring today), ordered by expiration date
+     */
+    public List<Product> getProductsExpiringWithin(int days) throws InvalidProductException {
+        if (days < 0) {
+            throw new InvalidProductException("Number of days cannot be negative");
+        }
+        long today = today();
+        return collect(productsByExpirationDay.subMap(today, true, today + days, true));
+    }
+
+    private long today() {
+        return clock.currentEpochDay();
+    }
+
+    private static List<Product> collect(Map<Long, Set<Product>> buckets) {
+        List<Product> result = new ArrayList<>();
+        for (Set<Product> bucket : buckets.values()) {
+            result.addAll(bucket);
+        }
+        return result;
     }
 
     /**
      * Returns the total value of purchased goods (supply expenses)
+     * Kept as a running total, so this does not walk the products
      */
     public double getTotalPurchaseValue() {
-        return products.values().stream()
-                .mapToDouble(p -> p.getPurchasePrice() * p.getQuantityInStock())
-                .sum();
+        return Money.toUnits(getTotalPurchaseValueCents());
+    }
+
+    public long getTotalPurchaseValueCents() {
+        return totalPurchaseValueCents.sum();
+    }
+
+    /**
+     * Returns how often sales of the same product had to retry their stock update
+     */
+    public StockContentionMetrics getContentionMetrics() {
+        return contentionMetrics;
     }
 
     /**
@@ -112,7 +385,7 @@ public class InventoryService {
     public boolean isAvailable(String productId, int quantity) {
         Product product = products.get(productId);
         return product != null &&
-                !product.isExpired() &&
+                !product.isExpiredOn(clock.currentEpochDay()) &&
                 product.getQuantityInStock() >= quantity;
     }
 
@@ -122,4 +395,25 @@ public class InventoryService {
     public int getProductCount() {
         return products.size();
     }
+
+    /**
+     * Delivery lines of one product collected by {@link #restockAll}
+     */
+    private static final class PendingRestock {
+        private long quantity;
+        private int[] lines = new int[1];
+        private int[] quantities = new int[1];
+        private int lineCount;
+
+        private void add(int line, int lineQuantity) {
+            if (lineCount == lines.length) {
+                lines = Arrays.copyOf(lines, lineCount * 2);
+                quantities = Arrays.copyOf(quantities, lineCount * 2);
+            }
+            lines[lineCount] = line;
+            quantities[lineCount] = lineQuantity;
+            lineCount++;
+            quantity += lineQuantity;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,169 @@
+package org.informatics.service;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Stock counters outside the Java heap, optionally kept in a memory-mapped file
+ *
+ * The counters are not traced by the garbage collector. With a file, every update goes straight
+ * into the mapped file, so the counts survive a crash of the process and are restored on the next
+ * run; {@link #force()} also writes them to the disk
+ *
+ * File layout: a 64 byte header (magic, version, page size), then one 8 byte slot per product
+ * index with the stock and a tag of the product ID. A restored count is only used if the
+ * tag still matches, so a catalog added in a different order starts from the given quantities
+ */
+public class OffHeapStockCounters implements StockCounters {
+    private static final int MAGIC = 0x53544B31; // "STK1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 8;
+    private static final int TAG_OFFSET = 4;
+    private static final int PAGE_BYTES = ColumnarInventory.PAGE_SIZE * SLOT_BYTES;
+
+    // Little endian in the file, so it can be moved between machines
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel channel;
+    private volatile ByteBuffer[] pages = new ByteBuffer[0];
+
+    private OffHeapStockCounters(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Creates counters in direct memory; they are lost when the process ends
+     */
+    public static OffHeapStockCounters inMemory() {
+        return new OffHeapStockCounters(null);
+    }
+
+    /**
+     * Opens the counters file, creating it if it does not exist
+     */
+    public static OffHeapStockCounters open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() == 0) {
+                header.putInt(MAGIC).putInt(VERSION).putInt(ColumnarInventory.PAGE_SIZE).clear();
+                channel.write(header, 0);
+            } else {
+                channel.read(header, 0);
+                header.flip();
+                if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION
+                        || header.getInt() != ColumnarInventory.PAGE_SIZE) {
+                    throw new IOException("Not a stock counters file: " + file);
+                }
+            }
+            return new OffHeapStockCounters(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public boolean isFileBacked() {
+        return channel != null;
+    }
+
+    @Override
+    public void ensureCapacity(int size) throws IOException {
+        int pageCount = (size + ColumnarInventory.PAGE_SIZE - 1) >>> ColumnarInventory.PAGE_BITS;
+        ByteBuffer[] current = pages;
+        if (pageCount <= current.length) {
+            return;
+        }
+        ByteBuffer[] grown = Arrays.copyOf(current, Math.max(pageCount, current.length * 2));
+        for (int page = current.length; page < grown.length; page++) {
+            grown[page] = allocatePage(page);
+        }
+        pages = grown;
+    }
+
+    private ByteBuffer allocatePage(int page) throws IOException {
+        if (channel == null) {
+            // Atomic access needs 8 byte aligned slots
+            return ByteBuffer.allocateDirect(PAGE_BYTES + SLOT_BYTES).alignedSlice(SLOT_BYTES);
+        }
+        return channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + (long) page * PAGE_BYTES, PAGE_BYTES);
+    }
+
+    @Override
+    public int initialize(int index, String productId, int quantity) {
+        ByteBuffer page = page(index);
+        int offset = offset(index);
+        int tag = tag(productId);
+        if ((int) INT.getVolatile(page, offset + TAG_OFFSET) == tag) {
+            return (int) INT.getVolatile(page, offset);
+        }
+        INT.setVolatile(page, offset, quantity);
+        INT.setVolatile(page, offset + TAG_OFFSET, tag);
+        return quantity;
+    }
+
+    @Override
+    public int get(int index) {
+        return (int) INT.getVolatile(page(index), offset(index));
+    }
+
+    @Override
+    public boolean compareAndSet(int index, int expected, int newValue) {
+        return INT.compareAndSet(page(index), offset(index), expected, newValue);
+    }
+
+    @Override
+    public int getAndAdd(int index, int delta) {
+        return (int) INT.getAndAdd(page(index), offset(index), delta);
+    }
+
+    /**
+     * Writes the mapped counters to the disk (no-op without a file)
+     */
+    public void force() {
+        if (channel == null) {
+            return;
+        }
+        for (ByteBuffer page : pages) {
+            if (page != null) {
+                ((MappedByteBuffer) page).force();
+            }
+        }
+    }
+
+    /**
+     * Forces the counters to the disk and closes the file
+     * The mapping itself is released by the garbage collector
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            force();
+            channel.close();
+        }
+    }
+
+    private ByteBuffer page(int index) {
+        return pages[index >>> ColumnarInventory.PAGE_BITS];
+    }
+
+    private static int offset(int index) {
+        return (index & (ColumnarInventory.PAGE_SIZE - 1)) * SLOT_BYTES;
+    }
+
+    private static int tag(String productId) {
+        // 0 marks a slot that was never used
+        int hash = productId.hashCode();
+        return hash != 0 ? hash : 1;
+    }
+}
@@ -1,33 +1,83 @@
 package org.informatics.service;
 
 import org.informatics.model.Product;
+import org.informatics.util.StoreClock;
+
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for calculating product prices
+ * Sale prices only change at midnight or when the pricing rules change, so the checkout
+ * price in cents is cached per product for the current day
  */
 public class PricingService {
-    private final int expirationThresholdDays;
-    private final double expirationDiscountPercentage;
+    private final StoreClock clock;
+    private volatile int expirationThresholdDays;
+    private volatile double expirationDiscountPercentage;
+    private volatile PriceSnapshot snapshot;
 
     /**
      * @param expirationThresholdDays Days before expiration when discount is applied
      * @param expirationDiscountPercentage Discount percentage for nearing expiration
      */
     public PricingService(int expirationThresholdDays, double expirationDiscountPercentage) {
+        this(expirationThresholdDays, expirationDiscountPercentage, StoreClock.system());
+    }
+
+    /**
+     * @param clock Clock that decides the current day
+     */
+    public PricingService(int expirationThresholdDays, double expirationDiscountPercentage, StoreClock clock) {
+        this.clock = clock != null ? clock : StoreClock.system();
         this.expirationThresholdDays = expirationThresholdDays;
         this.expirationDiscountPercentage = expirationDiscountPercentage;
+        this.snapshot = PriceSnapshot.EXPIRED;
     }
 
     /**
-     * Calculates the sale price of a product according to store rules
+     * Calculates the sale price of a product according to store rules, on this service's current day
      */
     public double calculateSalePrice(Product product) {
-        int daysUntilExpiration = product.getDaysUntilExpiration();
+        int daysUntilExpiration = product.getDaysUntilExpiration(clock.currentEpochDay());
         return product.calculateSalePrice(daysUntilExpiration,
                 expirationThresholdDays,
                 expirationDiscountPercentage);
     }
 
+    /**
+     * Calculates the sale price of a product in cents (used at checkout)
+     * The price is calculated once per product and day and then read from the cache
+     */
+    public long calculateSalePriceCents(Product product) {
+        PriceSnapshot current = snapshot;
+        if (current.epochDay != clock.currentEpochDay()) {
+            current = startNewDay(current);
+        }
+
+        CachedPrice cached = current.prices.get(product.getId());
+        if (cached == null || cached.product != product) {
+            cached = new CachedPrice(product, current.calculate(product));
+            current.prices.put(product.getId(), cached);
+        }
+        return cached.cents;
+    }
+
+    /**
+     * Changes the expiration discount rules; cached prices are recalculated
+     */
+    public synchronized void updateRules(int expirationThresholdDays, double expirationDiscountPercentage) {
+        this.expirationThresholdDays = expirationThresholdDays;
+        this.expirationDiscountPercentage = expirationDiscountPercentage;
+        this.snapshot = PriceSnapshot.EXPIRED;
+    }
+
+    /**
+     * Drops all cached prices (e.g. after the clock was adjusted)
+     */
+    public synchronized void invalidatePrices() {
+        this.snapshot = PriceSnapshot.EXPIRED;
+    }
+
     public int getExpirationThresholdDays() {
         return expirationThresholdDays;
     }
@@ -35,4 +85,57 @@ public class PricingService {
     public double getExpirationDiscountPercentage() {
         return expirationDiscountPercentage;
     }
-}
\ No newline at end of file
+
+    /**
+     * Replaces the snapshot of another day; only one thread builds the new one
+     */
+    private synchronized PriceSnapshot startNewDay(PriceSnapshot seen) {
+        long today = clock.currentEpochDay();
+        PriceSnapshot current = snapshot;
+        if (current != seen && current.epochDay == today) {
+            return current;
+        }
+        current = new PriceSnapshot(today, expirationThresholdDays, expirationDiscountPercentage);
+        snapshot = current;
+        return current;
+    }
+
+    /**
+     * Prices valid for one day with one set of rules
+     */
+    private static final class PriceSnapshot {
+        private static final PriceSnapshot EXPIRED = new PriceSnapshot(Long.MIN_VALUE, 0, 0.0);
+
+        private final long epochDay;
+        private final int expirationThresholdDays;
+        private final double expirationDiscountPercentage;
+        private final ConcurrentHashMap<String, CachedPrice> prices;
+
+        private PriceSnapshot(long epochDay, int expirationThresholdDays, double expirationDiscountPercentage) {
+            this.epochDay = epochDay;
+            this.expirationThresholdDays = expirationThresholdDays;
+            this.expirationDiscountPercentage = expirationDiscountPercentage;
+            this.prices = new ConcurrentHashMap<>();
+        }
+
+        private long calculate(Product product) {
+            int daysUntilExpiration = product.getDaysUntilExpiration(epochDay);
+            return product.calculateSalePriceCents(daysUntilExpiration,
+                    expirationThresholdDays,
+                    expirationDiscountPercentage);
+        }
+    }
+
+    /**
+     * Price of one product; also remembers the product, so a replaced product is priced again
+     */
+    private static final class CachedPrice {
+        private final Product product;
+        private final long cents;
+
+        private CachedPrice(Product product, long cents) {
+            this.product = product;
+            this.cents = cents;
+        }
+    }
+}
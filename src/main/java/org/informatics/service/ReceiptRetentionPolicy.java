@@ -0,0 +1,81 @@
+package org.informatics.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Decides how many issued receipts ReceiptService keeps in memory
+ * Older receipts are only kept in the receipt journal and read back when needed
+ */
+public class ReceiptRetentionPolicy {
+    private static final ReceiptRetentionPolicy UNBOUNDED =
+            new ReceiptRetentionPolicy(Integer.MAX_VALUE, null);
+
+    private final int maxReceipts;
+    private final Duration maxAge;
+
+    private ReceiptRetentionPolicy(int maxReceipts, Duration maxAge) {
+        this.maxReceipts = maxReceipts;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Keeps the last N receipts in memory
+     */
+    public static ReceiptRetentionPolicy keepLast(int maxReceipts) {
+        if (maxReceipts < 0) {
+            throw new IllegalArgumentException("Number of receipts cannot be negative");
+        }
+        return new ReceiptRetentionPolicy(maxReceipts, null);
+    }
+
+    /**
+     * Keeps receipts issued within the given time in memory
+     */
+    public static ReceiptRetentionPolicy keepFor(Duration maxAge) {
+        if (maxAge == null || maxAge.isNegative()) {
+            throw new IllegalArgumentException("Retention time must be zero or positive");
+        }
+        return new ReceiptRetentionPolicy(Integer.MAX_VALUE, maxAge);
+    }
+
+    /**
+     * Keeps all receipts in memory
+     */
+    public static ReceiptRetentionPolicy unbounded() {
+        return UNBOUNDED;
+    }
+
+    public int getMaxReceipts() {
+        return maxReceipts;
+    }
+
+    /**
+     * Returns the maximum age of receipts in memory, or null when there is no time limit
+     */
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Checks if the oldest receipt in memory has to be evicted
+     *
+     * @param retainedCount Number of receipts currently in memory
+     * @param oldestIssuedAt Issue time of the oldest receipt in memory
+     * @param now Current time
+     */
+    boolean shouldEvict(int retainedCount, LocalDateTime oldestIssuedAt, LocalDateTime now) {
+        if (retainedCount > maxReceipts) {
+            return true;
+        }
+        return maxAge != null && oldestIssuedAt.plus(maxAge).isBefore(now);
+    }
+
+    @Override
+    public String toString() {
+        if (maxAge != null) {
+            return "ReceiptRetentionPolicy{maxAge=" + maxAge + '}';
+        }
+        return "ReceiptRetentionPolicy{maxReceipts=" + maxReceipts + '}';
+    }
+}
@@ -1,101 +1,606 @@
 package org.informatics.service;
 
+import org.informatics.jfr.ReceiptIssueEvent;
 import org.informatics.model.Receipt;
 import org.informatics.util.FileManager;
+import org.informatics.util.Money;
+import org.informatics.util.ReceiptArchiveScanner;
+import org.informatics.util.ReceiptCheckpoint;
+import org.informatics.util.ReceiptCodec;
+import org.informatics.util.ReceiptJournal;
+import org.informatics.util.ReceiptNames;
+import org.informatics.util.ReceiptScanSummary;
 import org.informatics.util.SerializationUtil;
+import org.informatics.util.StoreClock;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service for managing receipts
+ * Receipt numbers and revenue stay consistent when many cashiers issue receipts at once
+ * Receipts are appended to a segmented journal in the background, so issuing a receipt
+ * does not wait for the disk. Receipt files from older versions (receipt_N.txt/.ser) are still readable
+ *
+ * Only recent receipts are kept in memory (see {@link ReceiptRetentionPolicy}); older ones
+ * are read back from the journal when requested. Counters and revenue always cover all receipts
+ *
+ * On startup the receipt number, count and revenue continue from the receipts already in the
+ * directory: they are read from the last checkpoint and the journal records written after it
  */
-public class ReceiptService {
-    private final List<Receipt> receipts;
-    private int nextReceiptNumber;
-    private double totalRevenue;
+public class ReceiptService implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final ReceiptRetentionPolicy DEFAULT_RETENTION_POLICY = ReceiptRetentionPolicy.keepLast(10_000);
+
+    // Recent receipts by number, oldest first; also guards the issued numbers
+    private final LinkedHashMap<Integer, Receipt> recentReceipts;
+    private final NumberRanges issuedNumbers;
+    private int issuedCount;
+    private final LongAdder totalRevenueCents;
+    private volatile ReceiptRetentionPolicy retentionPolicy;
+    private volatile ReceiptNames receiptNames;
+    private final AtomicInteger nextReceiptNumber;
     private final String receiptsDirectory;
+    private final StoreClock clock;
+    private final ReceiptJournal journal;
+    private final ReceiptWriter receiptWriter;
+    private final ReceiptCheckpoint recovered;
+    // Receipt files of older versions (receipt_N.ser) found on startup, listed first in getAllReceipts()
+    private final int[] legacyNumbers;
+    // Journal records present on startup, listed in getAllReceipts() before the new receipts
+    private final int[] recoveredNumbers;
 
     public ReceiptService(String receiptsDirectory) {
-        this.receipts = new ArrayList<>();
-        this.nextReceiptNumber = 1;
-        this.totalRevenue = 0.0;
+        this(receiptsDirectory, DurabilityMode.FLUSH_PER_BATCH, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param receiptsDirectory Directory for receipt files
+     * @param durabilityMode How strongly receipts are written to disk
+     * @param queueCapacity Maximum number of receipts waiting to be written
+     */
+    public ReceiptService(String receiptsDirectory, DurabilityMode durabilityMode, int queueCapacity) {
+        this(receiptsDirectory, durabilityMode, queueCapacity, StoreClock.system());
+    }
+
+    /**
+     * @param clock Clock used to decide which receipts are old enough to leave memory
+     */
+    public ReceiptService(String receiptsDirectory, DurabilityMode durabilityMode, int queueCapacity,
+                          StoreClock clock) {
+        this.clock = clock != null ? clock : StoreClock.system();
+        this.recentReceipts = new LinkedHashMap<>();
+        this.issuedNumbers = new NumberRanges();
+        this.issuedCount = 0;
+        this.totalRevenueCents = new LongAdder();
+        this.retentionPolicy = DEFAULT_RETENTION_POLICY;
+        this.receiptNames = ReceiptNames.NONE;
         this.receiptsDirectory = receiptsDirectory;
+        Path checkpointFile = Paths.get(receiptsDirectory, ReceiptCheckpoint.FILE_NAME);
+        try {
+            this.journal = ReceiptJournal.open(Paths.get(receiptsDirectory));
+            this.recovered = ReceiptCheckpoint.recover(journal);
+            // Written right away, so a stale checkpoint never outlives a journal cut off by a crash
+            recovered.write(checkpointFile);
+            // Taken before the writer starts, so it never includes the receipts issued from now on
+            this.recoveredNumbers = journal.getReceiptNumbers();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot recover receipt journal in " + receiptsDirectory, e);
+        }
+        try {
+            this.legacyNumbers = listLegacyReceipts(Paths.get(receiptsDirectory));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list receipt files in " + receiptsDirectory, e);
+        }
+        this.nextReceiptNumber = new AtomicInteger(recovered.getNextReceiptNumber());
+        this.totalRevenueCents.add(recovered.getRevenueCents());
+        this.receiptWriter = new ReceiptWriter(journal, durabilityMode, queueCapacity, recovered, checkpointFile);
     }
 
     /**
      * Issues a new receipt
+     * The receipt is written by the background writer; this only waits when the writer queue
+     * is full, in every {@link DurabilityMode}. A failed write is reported by the next
+     * {@link #flush()} or {@link #close()}
      */
     public Receipt issueReceipt(Receipt receipt) throws IOException {
-        // Add receipt to the list
-        receipts.add(receipt);
-        totalRevenue += receipt.getTotalAmount();
+        ReceiptIssueEvent event = new ReceiptIssueEvent();
+        event.begin();
+        totalRevenueCents.add(receipt.getTotalAmountCents());
 
-        // Write to file
-        String fileName = String.format("receipt_%d.txt", receipt.getReceiptNumber());
-        String filePath = receiptsDirectory + "/" + fileName;
-        FileManager.writeToFile(filePath, receipt.format());
+        // Receipt count and the in-memory window are updated together
+        synchronized (recentReceipts) {
+            issuedNumbers.add(receipt.getReceiptNumber());
+            issuedCount++;
+            recentReceipts.put(receipt.getReceiptNumber(), receipt);
+            evictOldReceipts();
+        }
 
-        // Serialize the receipt
-        String serializedFileName = String.format("receipt_%d.ser", receipt.getReceiptNumber());
-        String serializedFilePath = receiptsDirectory + "/" + serializedFileName;
-        SerializationUtil.serialize(receipt, serializedFilePath);
+        // Append the receipt to the journal in the background
+        receiptWriter.submit(receipt);
 
+        if (event.shouldCommit()) {
+            event.receiptNumber = receipt.getReceiptNumber();
+            event.cashierId = receipt.getCashier().getId();
+            event.itemCount = receipt.getItems().size();
+            event.commit();
+        }
         return receipt;
     }
 
+    /**
+     * Waits until all issued receipts are written to the journal
+     */
+    public void flush() throws IOException {
+        receiptWriter.flush();
+    }
+
+    /**
+     * Writes all pending receipts and checkpoints the receipt totals, so a restart does not
+     * need to replay them
+     */
+    public void checkpoint() throws IOException {
+        receiptWriter.checkpoint();
+    }
+
+    /**
+     * Issues again a receipt that a restart did not find in the journal (lost in a crash before
+     * it was written), e.g. when it is replayed from the store's state log
+     *
+     * @return false if the journal already has the receipt
+     */
+    boolean restoreReceipt(Receipt receipt) throws IOException {
+        if (journal.contains(receipt.getReceiptNumber())) {
+            return false;
+        }
+        nextReceiptNumber.accumulateAndGet(receipt.getReceiptNumber() + 1, Math::max);
+        issueReceipt(receipt);
+        return true;
+    }
+
+    /**
+     * Writes all pending receipts and stops the background writer
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            receiptWriter.close();
+        } finally {
+            journal.close();
+        }
+    }
+
+    public DurabilityMode getDurabilityMode() {
+        return receiptWriter.getDurabilityMode();
+    }
+
+    /**
+     * Returns the last failure of the background writer, or null if it never failed
+     * Unlike the error thrown by {@link #flush()} and {@link #close()}, it is not cleared once reported
+     */
+    public IOException getLastWriteFailure() {
+        return receiptWriter.getLastFailure();
+    }
+
+    /**
+     * Returns the number of failed receipt writes and checkpoints
+     */
+    public long getWriteFailureCount() {
+        return receiptWriter.getFailureCount();
+    }
+
+    public ReceiptRetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    /**
+     * Changes how many receipts are kept in memory
+     */
+    public void setRetentionPolicy(ReceiptRetentionPolicy retentionPolicy) {
+        if (retentionPolicy == null) {
+            throw new IllegalArgumentException("Retention policy cannot be null");
+        }
+        this.retentionPolicy = retentionPolicy;
+        synchronized (recentReceipts) {
+            evictOldReceipts();
+        }
+    }
+
+    public ReceiptNames getReceiptNames() {
+        return receiptNames;
+    }
+
+    /**
+     * Sets where the cashier and product names of receipts read back from the journal come from
+     * (the journal only stores their IDs); without it the IDs are shown instead
+     */
+    public void setReceiptNames(ReceiptNames receiptNames) {
+        if (receiptNames == null) {
+            throw new IllegalArgumentException("Receipt names cannot be null");
+        }
+        this.receiptNames = receiptNames;
+    }
+
+    /**
+     * Returns the number of receipts currently kept in memory
+     */
+    public int getRetainedReceiptsCount() {
+        synchronized (recentReceipts) {
+            evictOldReceipts();
+            return recentReceipts.size();
+        }
+    }
+
+    /**
+     * Reserves the next receipt number for a sale
+     * Each call returns a different number, without gaps between calls
+     */
+    public int allocateReceiptNumber() {
+        return nextReceiptNumber.getAndIncrement();
+    }
+
     /**
      * Returns the next receipt number
      */
     public int getNextReceiptNumber() {
-        return nextReceiptNumber;
+        return nextReceiptNumber.get();
     }
 
     /**
      * Increments the receipt counter
      */
     public void incrementReceiptNumber() {
-        nextReceiptNumber++;
+        nextReceiptNumber.incrementAndGet();
     }
 
     /**
-     * Returns the total number of issued receipts
+     * Returns the total number of issued receipts, including those recovered on startup
      */
     public int getTotalReceiptsCount() {
-        return receipts.size();
+        synchronized (recentReceipts) {
+            return recovered.getReceiptCount() + issuedCount;
+        }
+    }
+
+    /**
+     * Returns the receipt totals found on startup
+     */
+    public ReceiptCheckpoint getRecoveredState() {
+        return recovered;
     }
 
     /**
      * Returns the total turnover from issued receipts
      */
     public double getTotalRevenue() {
-        return totalRevenue;
+        return Money.toUnits(getTotalRevenueCents());
+    }
+
+    /**
+     * Returns the total turnover from issued receipts in cents
+     */
+    public long getTotalRevenueCents() {
+        return totalRevenueCents.sum();
     }
 
     /**
-     * Returns all issued receipts
+     * Returns all issued receipts (the receipts issued up to the moment of the call)
+     * The list is a read-only view: receipts no longer in memory are read from the journal
+     * or their files when accessed, so iterate it instead of keeping it around
+     *
+     * Receipt files of older versions come first, then the receipts found in the journal on
+     * startup, then the receipts issued since then by receipt number. Receipts archived out of
+     * the journal are still counted, but no longer listed
      */
     public List<Receipt> getAllReceipts() {
-        return Collections.unmodifiableList(receipts);
+        int[] recoveredListed = recoveredNumbersInJournal();
+        synchronized (recentReceipts) {
+            return new ReceiptHistory(recoveredListed, issuedNumbers.copy());
+        }
     }
 
     /**
-     * Reads a receipt from file
+     * Returns the receipt journal
+     */
+    public ReceiptJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Reads a receipt as text, as it was printed
      */
     public String readReceiptFromFile(int receiptNumber) throws IOException {
-        String fileName = String.format("receipt_%d.txt", receiptNumber);
-        String filePath = receiptsDirectory + "/" + fileName;
-        return FileManager.readFromFile(filePath);
+        flush();
+        byte[] payload = journal.read(receiptNumber);
+        if (payload == null) {
+            // Receipt written by an older version as a separate text file
+            String fileName = String.format("receipt_%d.txt", receiptNumber);
+            String filePath = receiptsDirectory + "/" + fileName;
+            return FileManager.readFromFile(filePath);
+        }
+        return ReceiptCodec.decode(payload, receiptNames).format();
     }
 
     /**
      * Deserializes a receipt
      */
     public Receipt deserializeReceipt(int receiptNumber) throws IOException, ClassNotFoundException {
+        flush();
+        byte[] payload = journal.read(receiptNumber);
+        if (payload == null) {
+            return readLegacyReceipt(receiptNumber);
+        }
+        return ReceiptCodec.decode(payload, receiptNames);
+    }
+
+    /**
+     * Reads a receipt written by an older version as a separate .ser file
+     */
+    private Receipt readLegacyReceipt(int receiptNumber) throws IOException, ClassNotFoundException {
         String serializedFileName = String.format("receipt_%d.ser", receiptNumber);
         String serializedFilePath = receiptsDirectory + "/" + serializedFileName;
         return (Receipt) SerializationUtil.deserialize(serializedFilePath);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the sorted numbers of the receipt_N.ser files written by versions before the journal
+     */
+    private static int[] listLegacyReceipts(Path directory) throws IOException {
+        int[] numbers = new int[0];
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "receipt_*.ser")) {
+            for (Path file : stream) {
+                String fileName = file.getFileName().toString();
+                try {
+                    int number = Integer.parseInt(fileName.substring("receipt_".length(), fileName.length() - 4));
+                    if (count == numbers.length) {
+                        numbers = Arrays.copyOf(numbers, Math.max(16, count * 2));
+                    }
+                    numbers[count++] = number;
+                } catch (NumberFormatException e) {
+                    // Not a receipt file
+                }
+            }
+        }
+        numbers = Arrays.copyOf(numbers, count);
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    /**
+     * Computes totals over all receipts in the journal without deserializing them
+     */
+    public ReceiptScanSummary summarizeJournal() throws IOException {
+        flush();
+        return ReceiptArchiveScanner.open(journal.getDirectory()).summarize();
+    }
+
+    /**
+     * Drops the oldest receipts from memory while the retention policy requires it
+     * They stay in the journal (or in the writer queue until written)
+     */
+    private void evictOldReceipts() {
+        ReceiptRetentionPolicy policy = retentionPolicy;
+        LocalDateTime now = clock.now();
+        Iterator<Receipt> oldest = recentReceipts.values().iterator();
+        while (oldest.hasNext()) {
+            Receipt receipt = oldest.next();
+            if (!policy.shouldEvict(recentReceipts.size(), receipt.getIssuedAt(), now)) {
+                break;
+            }
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Returns the numbers of the receipts found on startup that have not been archived since
+     */
+    private int[] recoveredNumbersInJournal() {
+        int[] numbers = new int[recoveredNumbers.length];
+        int count = 0;
+        try {
+            for (int number : recoveredNumbers) {
+                if (journal.contains(number)) {
+                    numbers[count++] = number;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count == numbers.length ? recoveredNumbers : Arrays.copyOf(numbers, count);
+    }
+
+    private Receipt findReceipt(int receiptNumber) {
+        synchronized (recentReceipts) {
+            Receipt receipt = recentReceipts.get(receiptNumber);
+            if (receipt != null) {
+                return receipt;
+            }
+        }
+
+        try {
+            byte[] payload = journal.read(receiptNumber);
+            if (payload == null) {
+                // Evicted before the background writer reached it
+                flush();
+                payload = journal.read(receiptNumber);
+            }
+            if (payload == null) {
+                throw new IOException("Receipt #" + receiptNumber + " is not in the receipt journal");
+            }
+            return ReceiptCodec.decode(payload, receiptNames);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Receipt findLegacyReceipt(int receiptNumber) {
+        try {
+            return readLegacyReceipt(receiptNumber);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new UncheckedIOException(new IOException("Cannot read legacy receipt #" + receiptNumber, e));
+        }
+    }
+
+    /**
+     * Read-only list of issued receipts, backed by memory, the journal and legacy receipt files
+     */
+    private class ReceiptHistory extends AbstractList<Receipt> implements RandomAccess {
+        private final int[] recovered;
+        private final NumberRanges issued;
+        private final int size;
+
+        ReceiptHistory(int[] recovered, NumberRanges issued) {
+            this.recovered = recovered;
+            this.issued = issued;
+            this.size = legacyNumbers.length + recovered.length + issued.size();
+        }
+
+        @Override
+        public Receipt get(int index) {
+            Objects.checkIndex(index, size);
+            if (index < legacyNumbers.length) {
+                return findLegacyReceipt(legacyNumbers[index]);
+            }
+            index -= legacyNumbers.length;
+            if (index < recovered.length) {
+                return findReceipt(recovered[index]);
+            }
+            return findReceipt(issued.get(index - recovered.length));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Set of receipt numbers stored as sorted ranges of consecutive numbers
+     * Numbers are allocated in sequence, so the receipts issued since startup take a few
+     * ranges instead of one entry each; only gaps (skipped numbers, receipts issued out of
+     * order by parallel cashiers) start a new range
+     */
+    private static class NumberRanges {
+        // Range i holds the numbers starts[i] until ends[i] (exclusive), after before[i] smaller numbers
+        private int[] starts;
+        private int[] ends;
+        private int[] before;
+        private int rangeCount;
+        private int size;
+
+        NumberRanges() {
+            this(new int[16], new int[16], new int[16], 0, 0);
+        }
+
+        private NumberRanges(int[] starts, int[] ends, int[] before, int rangeCount, int size) {
+            this.starts = starts;
+            this.ends = ends;
+            this.before = before;
+            this.rangeCount = rangeCount;
+            this.size = size;
+        }
+
+        void add(int number) {
+            // Numbers mostly arrive in order, so the search starts from the last range
+            int i = rangeCount - 1;
+            while (i >= 0 && starts[i] > number) {
+                i--;
+            }
+            if (i >= 0 && number < ends[i]) {
+                return;
+            }
+            boolean extendsLeft = i >= 0 && ends[i] == number;
+            boolean extendsRight = i + 1 < rangeCount && starts[i + 1] == number + 1;
+            int changed;
+            if (extendsLeft && extendsRight) {
+                ends[i] = ends[i + 1];
+                removeRange(i + 1);
+                changed = i + 1;
+            } else if (extendsLeft) {
+                ends[i]++;
+                changed = i + 1;
+            } else if (extendsRight) {
+                starts[i + 1]--;
+                changed = i + 2;
+            } else {
+                insertRange(i + 1, number);
+                changed = i + 1;
+            }
+            size++;
+            for (int j = Math.max(changed, 1); j < rangeCount; j++) {
+                before[j] = before[j - 1] + (ends[j - 1] - starts[j - 1]);
+            }
+        }
+
+        /**
+         * Returns the number at the given position in ascending order
+         */
+        int get(int index) {
+            int low = 0;
+            int high = rangeCount - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (before[mid] <= index) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return starts[low] + (index - before[low]);
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns a copy that later additions do not change
+         */
+        NumberRanges copy() {
+            return new NumberRanges(Arrays.copyOf(starts, rangeCount), Arrays.copyOf(ends, rangeCount),
+                    Arrays.copyOf(before, rangeCount), rangeCount, size);
+        }
+
+        private void insertRange(int index, int number) {
+            if (rangeCount == starts.length) {
+                int capacity = Math.max(16, rangeCount * 2);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                before = Arrays.copyOf(before, capacity);
+            }
+            int moved = rangeCount - index;
+            System.arraycopy(starts, index, starts, index + 1, moved);
+            System.arraycopy(ends, index, ends, index + 1, moved);
+            System.arraycopy(before, index, before, index + 1, moved);
+            starts[index] = number;
+            ends[index] = number + 1;
+            before[index] = index == 0 ? 0 : before[index - 1] + (ends[index - 1] - starts[index - 1]);
+            rangeCount++;
+        }
+
+        private void removeRange(int index) {
+            int moved = rangeCount - index - 1;
+            System.arraycopy(starts, index + 1, starts, index, moved);
+            System.arraycopy(ends, index + 1, ends, index, moved);
+            System.arraycopy(before, index + 1, before, index, moved);
+            rangeCount--;
+        }
+    }
+}
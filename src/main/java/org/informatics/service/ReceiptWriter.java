@@ -0,0 +1,349 @@
+package org.informatics.service;
+
+import org.informatics.jfr.ReceiptJournalWriteEvent;
+import org.informatics.model.Receipt;
+import org.informatics.util.ReceiptCheckpoint;
+import org.informatics.util.ReceiptCodec;
+import org.informatics.util.ReceiptJournal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes issued receipts to the receipt journal on a background thread, in the compact binary format
+ * Receipts wait in a bounded queue and are appended in groups; when the queue is full
+ * the cashier thread waits until there is room again (back-pressure)
+ *
+ * The writer also keeps the totals of the journal and checkpoints them (see {@link ReceiptCheckpoint}),
+ * so a restart only replays the receipts written since the last checkpoint
+ */
+public class ReceiptWriter implements AutoCloseable {
+    public static final int CHECKPOINT_INTERVAL = 10_000;
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final ReceiptJournal journal;
+    private final ReceiptCodec codec;
+    private final DurabilityMode durabilityMode;
+    private final BlockingQueue<Task> queue;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile IOException lastError;
+    // Never cleared, unlike lastError
+    private volatile IOException lastFailure;
+    private final LongAdder failureCount = new LongAdder();
+
+    // Totals of the journal, only touched by the writer thread
+    private final Path checkpointFile;
+    private int nextReceiptNumber;
+    private int receiptCount;
+    private long revenueCents;
+    private int receiptsSinceCheckpoint;
+
+    /**
+     * @param journal Journal the receipts are appended to
+     * @param durabilityMode How strongly receipts are written to disk
+     * @param queueCapacity Maximum number of receipts waiting to be written
+     */
+    public ReceiptWriter(ReceiptJournal journal, DurabilityMode durabilityMode, int queueCapacity) {
+        this(journal, durabilityMode, queueCapacity, null, null);
+    }
+
+    /**
+     * @param recovered Totals of the journal when it was opened
+     * @param checkpointFile File the totals are checkpointed to every {@link #CHECKPOINT_INTERVAL}
+     *                       receipts and on close, or null for no checkpoints
+     */
+    public ReceiptWriter(ReceiptJournal journal, DurabilityMode durabilityMode, int queueCapacity,
+                         ReceiptCheckpoint recovered, Path checkpointFile) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be a positive number");
+        }
+        this.journal = journal;
+        this.codec = new ReceiptCodec();
+        this.durabilityMode = durabilityMode;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.closed = false;
+        this.checkpointFile = checkpointFile;
+        if (recovered != null) {
+            this.nextReceiptNumber = recovered.getNextReceiptNumber();
+            this.receiptCount = recovered.getReceiptCount();
+            this.revenueCents = recovered.getRevenueCents();
+        }
+
+        this.thread = new Thread(this::run, "receipt-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a receipt for writing
+     * Blocks while the queue is full
+     *
+     * @return Future completed when the receipt is written according to the durability mode
+     */
+    public CompletableFuture<Void> submit(Receipt receipt) throws IOException {
+        Task task = new Task(receipt);
+        enqueue(task);
+        if (durabilityMode == DurabilityMode.FIRE_AND_FORGET) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return task.done;
+    }
+
+    /**
+     * Waits until all receipts queued so far are written
+     *
+     * @throws IOException if any receipt failed to be written since the last flush
+     */
+    public void flush() throws IOException {
+        Task marker = new Task(null);
+        enqueue(marker);
+        try {
+            marker.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while flushing receipts");
+        } catch (ExecutionException e) {
+            throw new IOException("Receipt writer failed", e.getCause());
+        }
+
+        IOException error = lastError;
+        if (error != null) {
+            lastError = null;
+            throw error;
+        }
+    }
+
+    /**
+     * Waits until all receipts queued so far are written and checkpoints the totals
+     * (only when the writer was created with a checkpoint file)
+     */
+    public void checkpoint() throws IOException {
+        Task marker = new Task(null);
+        marker.checkpoint = true;
+        enqueue(marker);
+        try {
+            marker.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while checkpointing receipts");
+        } catch (ExecutionException e) {
+            throw new IOException("Receipt writer failed", e.getCause());
+        }
+    }
+
+    /**
+     * Writes all queued receipts and stops the background thread
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        put(new Task(null));
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing receipt writer");
+        }
+
+        IOException error = lastError;
+        if (error != null) {
+            lastError = null;
+            throw error;
+        }
+    }
+
+    public DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    /**
+     * Returns the last failed receipt write or checkpoint, or null if none failed
+     */
+    public IOException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Returns the number of failed receipt writes and checkpoints
+     */
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    /**
+     * Returns the number of receipts waiting to be written
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void enqueue(Task task) throws IOException {
+        if (closed) {
+            throw new IOException("Receipt writer is closed");
+        }
+        put(task);
+    }
+
+    private void put(Task task) throws IOException {
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing receipt");
+        }
+    }
+
+    private void run() {
+        List<Task> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            writeBatch(batch);
+            batch.clear();
+
+            if (closed && queue.isEmpty()) {
+                writeCheckpoint();
+                return;
+            }
+            if (receiptsSinceCheckpoint >= CHECKPOINT_INTERVAL) {
+                writeCheckpoint();
+            }
+        }
+    }
+
+    /**
+     * Appends one group of receipts to the journal and completes their futures
+     */
+    private void writeBatch(List<Task> batch) {
+        ReceiptJournalWriteEvent event = new ReceiptJournalWriteEvent();
+        event.begin();
+        long bytesWritten = 0;
+        List<Task> written = new ArrayList<>(batch.size());
+        for (Task task : batch) {
+            if (task.receipt == null) {
+                continue;
+            }
+            try {
+                ByteBuffer encoded = codec.encode(task.receipt);
+                bytesWritten += encoded.remaining();
+                journal.append(task.receipt.getReceiptNumber(), encoded);
+                // Counted even if the sync below fails: the record is in the journal, so a later
+                // checkpoint (which syncs first) covers it and a restart must not reuse its number
+                countAppended(task.receipt);
+                if (durabilityMode == DurabilityMode.FSYNC_PER_RECEIPT) {
+                    journal.sync();
+                }
+                written.add(task);
+            } catch (IOException e) {
+                fail(task, e);
+            }
+        }
+
+        try {
+            // One force for the whole group instead of one per receipt
+            if (durabilityMode == DurabilityMode.FLUSH_PER_BATCH && !written.isEmpty()) {
+                journal.sync();
+            }
+            for (Task task : written) {
+                task.done.complete(null);
+            }
+        } catch (IOException e) {
+            for (Task task : written) {
+                fail(task, e);
+            }
+        }
+
+        if (!written.isEmpty() && event.shouldCommit()) {
+            event.firstReceiptNumber = written.get(0).receipt.getReceiptNumber();
+            event.lastReceiptNumber = written.get(written.size() - 1).receipt.getReceiptNumber();
+            event.receiptCount = written.size();
+            event.bytesWritten = bytesWritten;
+            event.durabilityMode = durabilityMode.name();
+            event.commit();
+        }
+
+        // Flush markers are completed after all receipts queued before them
+        for (Task task : batch) {
+            if (task.checkpoint) {
+                writeCheckpoint();
+                break;
+            }
+        }
+        for (Task task : batch) {
+            if (task.receipt == null) {
+                task.done.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Adds a receipt appended to the journal to the checkpointed totals
+     */
+    private void countAppended(Receipt receipt) {
+        nextReceiptNumber = Math.max(nextReceiptNumber, receipt.getReceiptNumber() + 1);
+        receiptCount++;
+        revenueCents += receipt.getTotalAmountCents();
+        receiptsSinceCheckpoint++;
+    }
+
+    /**
+     * Forces the journal to disk and records the totals up to its end
+     * A failed checkpoint only makes the next startup replay more records, so it is recorded
+     * (see {@link #getLastFailure()}) but does not fail any receipt
+     */
+    private void writeCheckpoint() {
+        if (checkpointFile == null || receiptsSinceCheckpoint == 0) {
+            return;
+        }
+        try {
+            journal.sync();
+            new ReceiptCheckpoint(journal.getEndPosition(), nextReceiptNumber, receiptCount, revenueCents)
+                    .write(checkpointFile);
+            receiptsSinceCheckpoint = 0;
+        } catch (IOException e) {
+            recordFailure(e);
+        }
+    }
+
+    private void fail(Task task, IOException e) {
+        lastError = e;
+        recordFailure(e);
+        task.done.completeExceptionally(e);
+    }
+
+    private void recordFailure(IOException e) {
+        lastFailure = e;
+        failureCount.increment();
+    }
+
+    /**
+     * Receipt waiting to be written, or a flush (or checkpoint) marker when receipt is null
+     */
+    private static class Task {
+        private final Receipt receipt;
+        private final CompletableFuture<Void> done;
+        private boolean checkpoint;
+
+        Task(Receipt receipt) {
+            this.receipt = receipt;
+            this.done = new CompletableFuture<>();
+        }
+    }
+}
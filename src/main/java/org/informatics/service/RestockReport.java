@@ -0,0 +1,136 @@
+package org.informatics.service;
+
+import org.informatics.exception.InvalidProductException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of {@link InventoryService#restockAll}: one entry per delivery line, in input order
+ */
+public class RestockReport {
+    private final List<Line> lines;
+    private final int appliedCount;
+    private final long restockedQuantity;
+
+    RestockReport(List<Line> lines, long restockedQuantity) {
+        this.lines = Collections.unmodifiableList(lines);
+        this.restockedQuantity = restockedQuantity;
+        int applied = 0;
+        for (Line line : lines) {
+            if (line.isApplied()) {
+                applied++;
+            }
+        }
+        this.appliedCount = applied;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns only the lines that were rejected
+     */
+    public List<Line> getRejectedLines() {
+        List<Line> rejected = new ArrayList<>();
+        for (Line line : lines) {
+            if (!line.isApplied()) {
+                rejected.add(line);
+            }
+        }
+        return rejected;
+    }
+
+    public int getAppliedCount() {
+        return appliedCount;
+    }
+
+    public int getRejectedCount() {
+        return lines.size() - appliedCount;
+    }
+
+    /**
+     * Returns the total quantity added to stock over all applied lines
+     */
+    public long getRestockedQuantity() {
+        return restockedQuantity;
+    }
+
+    public boolean hasErrors() {
+        return appliedCount < lines.size();
+    }
+
+    /**
+     * Formats the report as text, one line per rejected delivery line
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Restocked ").append(appliedCount).append(" of ").append(lines.size()).append(" lines");
+        if (hasErrors()) {
+            sb.append(", ").append(getRejectedCount()).append(" rejected");
+        }
+        sb.append(System.lineSeparator());
+        for (Line line : lines) {
+            if (!line.isApplied()) {
+                sb.append(line).append(System.lineSeparator());
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    /**
+     * Outcome of one delivery line
+     */
+    public static final class Line {
+        private final int lineNumber;
+        private final String productId;
+        private final int quantity;
+        private final InvalidProductException error;
+
+        Line(int lineNumber, String productId, int quantity, InvalidProductException error) {
+            this.lineNumber = lineNumber;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.error = error;
+        }
+
+        /**
+         * Returns the position of the line in the batch, starting at 1
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getProductId() {
+            return productId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public boolean isApplied() {
+            return error == null;
+        }
+
+        /**
+         * Returns why the line was rejected, or null if it was applied
+         */
+        public InvalidProductException getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + " (" + productId + " x " + quantity + "): "
+                    + (error == null ? "restocked" : error.getMessage());
+        }
+    }
+}
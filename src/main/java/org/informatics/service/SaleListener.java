@@ -0,0 +1,16 @@
+package org.informatics.service;
+
+import org.informatics.model.Receipt;
+
+/**
+ * Consumer of completed sales, subscribed with {@link Store#subscribeToSales}
+ * Called on the subscription's own thread, one sale after the other in the order they were published
+ */
+@FunctionalInterface
+public interface SaleListener {
+    /**
+     * @param receipt Receipt of the completed sale
+     * @param endOfBatch true for the last sale available right now, e.g. to flush buffered output
+     */
+    void onSale(Receipt receipt, boolean endOfBatch) throws Exception;
+}
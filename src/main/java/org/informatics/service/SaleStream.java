@@ -0,0 +1,325 @@
+package org.informatics.service;
+
+import org.informatics.model.Receipt;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stream of completed sales in a fixed ring buffer, read by any number of subscribers
+ * Cashier threads publish by claiming the next sequence number and filling its slot; every
+ * subscriber reads the ring on its own thread, at its own pace, without copying receipt lists.
+ * A slot is only reused once all subscribers have read it, so a subscriber that falls a whole
+ * ring behind makes the checkout wait (back-pressure) instead of losing sales
+ *
+ * Subscribers only see sales published after they subscribed. Slots read by all subscribers
+ * are cleared, so the ring does not keep receipts in memory after they were delivered
+ */
+public class SaleStream implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private final int mask;
+    private final AtomicReferenceArray<Receipt> slots;
+    // Sequence number held by each slot, set after the receipt so readers see a complete slot
+    private final AtomicLongArray published;
+    // Next sequence to claim; once closed it holds ~(next sequence), so no sale is claimed after close
+    private final AtomicLong nextSequence;
+    // Last sequence whose slot was cleared and may be reused by publishers
+    private final AtomicLong releasedSequence;
+    private final AtomicBoolean releasing;
+    private final List<Subscription> subscriptions;
+    private final LongAdder backPressureWaits;
+
+    public SaleStream() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Number of sales held in the ring, a power of two
+     */
+    public SaleStream(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.nextSequence = new AtomicLong(0);
+        this.releasedSequence = new AtomicLong(-1);
+        this.releasing = new AtomicBoolean();
+        this.subscriptions = new CopyOnWriteArrayList<>();
+        this.backPressureWaits = new LongAdder();
+    }
+
+    /**
+     * Publishes a completed sale; waits while the slowest subscriber is a whole ring behind
+     *
+     * @throws IllegalStateException if the stream is closed
+     */
+    public void publish(Receipt receipt) {
+        long sequence = claim();
+        long wrapPoint = sequence - slots.length();
+        if (wrapPoint > releasedSequence.get()) {
+            awaitSlot(wrapPoint);
+        }
+
+        int index = (int) (sequence & mask);
+        // A subscriber added later starts after this sequence, so without subscribers nothing is kept
+        if (!subscriptions.isEmpty()) {
+            slots.set(index, receipt);
+        }
+        published.set(index, sequence);
+    }
+
+    /**
+     * Starts a subscriber thread that passes every sale published from now on to the listener
+     * A listener that throws is counted, its last failure is kept (see
+     * {@link Subscription#getLastFailure()}) and it keeps receiving the next sales
+     */
+    public synchronized Subscription subscribe(String name, SaleListener listener) {
+        if (isClosed()) {
+            throw new IllegalStateException("Sale stream is closed");
+        }
+        Subscription subscription = new Subscription(name, listener);
+        subscriptions.add(subscription);
+        // Sales claimed before this point are not waited for by the new subscriber
+        subscription.sequence.set(claimedCount() - 1);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Stops accepting sales, lets all subscribers read the sales published so far and stops them
+     */
+    @Override
+    public synchronized void close() {
+        long next;
+        do {
+            next = nextSequence.get();
+            if (next < 0) {
+                return;
+            }
+        } while (!nextSequence.compareAndSet(next, ~next));
+
+        // Sales claimed before the close are still published and read
+        for (Subscription subscription : subscriptions) {
+            subscription.stop(next - 1);
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.join();
+        }
+    }
+
+    public boolean isClosed() {
+        return nextSequence.get() < 0;
+    }
+
+    public long getPublishedCount() {
+        return claimedCount();
+    }
+
+    /**
+     * Returns how many times a sale had to wait for a slow subscriber
+     */
+    public long getBackPressureWaits() {
+        return backPressureWaits.sum();
+    }
+
+    public List<Subscription> getSubscriptions() {
+        return List.copyOf(subscriptions);
+    }
+
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    private long claim() {
+        while (true) {
+            long next = nextSequence.get();
+            if (next < 0) {
+                throw new IllegalStateException("Sale stream is closed");
+            }
+            if (nextSequence.compareAndSet(next, next + 1)) {
+                return next;
+            }
+        }
+    }
+
+    private long claimedCount() {
+        long next = nextSequence.get();
+        return next < 0 ? ~next : next;
+    }
+
+    private void awaitSlot(long wrapPoint) {
+        boolean interrupted = false;
+        boolean waited = false;
+        // The sequence is already claimed, so the slot must be filled even if interrupted
+        while (wrapPoint > releaseConsumedSlots()) {
+            waited = true;
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+            interrupted |= Thread.interrupted();
+        }
+        if (waited) {
+            backPressureWaits.increment();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Clears the slots all subscribers have read and hands them back to the publishers
+     * Only one thread releases at a time; a slot is cleared before it can be reused
+     *
+     * @return Last released sequence
+     */
+    private long releaseConsumedSlots() {
+        if (!releasing.compareAndSet(false, true)) {
+            return releasedSequence.get();
+        }
+        try {
+            long released = releasedSequence.get();
+            long consumed = minimumSequence();
+            // Only the last capacity sequences can still be in the ring
+            for (long sequence = Math.max(released + 1, consumed - mask); sequence <= consumed; sequence++) {
+                slots.set((int) (sequence & mask), null);
+            }
+            if (consumed > released) {
+                releasedSequence.set(consumed);
+                return consumed;
+            }
+            return released;
+        } finally {
+            releasing.set(false);
+        }
+    }
+
+    private long minimumSequence() {
+        long minimum = claimedCount() - 1;
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * One subscriber and its thread
+     */
+    public final class Subscription implements AutoCloseable {
+        private final String name;
+        private final SaleListener listener;
+        private final Thread thread;
+        // Last sequence passed to the listener
+        private final AtomicLong sequence;
+        private final LongAdder failures;
+        private volatile Exception lastFailure;
+        // Last sequence to read before stopping, Long.MAX_VALUE while running
+        private volatile long stopAt;
+
+        private Subscription(String name, SaleListener listener) {
+            this.name = name;
+            this.listener = listener;
+            this.sequence = new AtomicLong(Long.MAX_VALUE);
+            this.failures = new LongAdder();
+            this.stopAt = Long.MAX_VALUE;
+            this.thread = new Thread(this::run, "sale-subscriber-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Reads the sales published so far, then stops the subscriber and stops holding back publishers
+         */
+        @Override
+        public void close() {
+            stop(claimedCount() - 1);
+            join();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the number of published sales this subscriber has not read yet
+         */
+        public long getLag() {
+            return Math.max(0, claimedCount() - 1 - sequence.get());
+        }
+
+        public long getFailureCount() {
+            return failures.sum();
+        }
+
+        /**
+         * Returns the last exception thrown by the listener, or null if it never failed
+         */
+        public Exception getLastFailure() {
+            return lastFailure;
+        }
+
+        private void stop(long lastSequence) {
+            stopAt = Math.min(stopAt, lastSequence);
+            LockSupport.unpark(thread);
+        }
+
+        private void join() {
+            if (Thread.currentThread() == thread) {
+                return;
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            try {
+                while (true) {
+                    long next = sequence.get() + 1;
+                    if (next > stopAt) {
+                        return;
+                    }
+                    if (!isPublished(next)) {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                        continue;
+                    }
+
+                    long last = next;
+                    while (last - next + 1 < MAX_BATCH_SIZE && isPublished(last + 1)) {
+                        last++;
+                    }
+                    for (long current = next; current <= last; current++) {
+                        Receipt receipt = slots.get((int) (current & mask));
+                        try {
+                            listener.onSale(receipt, current == last);
+                        } catch (Exception e) {
+                            lastFailure = e;
+                            failures.increment();
+                        }
+                    }
+                    sequence.set(last);
+                    releaseConsumedSlots();
+                }
+            } finally {
+                // Its slots may only be cleared once it no longer reads them
+                subscriptions.remove(this);
+            }
+        }
+
+        private boolean isPublished(long candidate) {
+            return published.get((int) (candidate & mask)) == candidate;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package org.informatics.service;
+
+import org.informatics.util.StateLog;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Appends store state changes to the {@link StateLog} on a background thread, with group commit
+ * Callers only queue an encoded record; the writer appends everything queued in the meantime
+ * and syncs the log once per group, so logging does not slow down the checkout.
+ * When the queue is full the caller waits until there is room again (back-pressure)
+ */
+public class StateLogWriter implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private final StateLog log;
+    private final DurabilityMode durabilityMode;
+    private final BlockingQueue<Task> queue;
+    private final long snapshotInterval;
+    private final Runnable snapshotDue;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile IOException lastError;
+    // Still set after sync or close has thrown lastError
+    private volatile IOException lastFailure;
+    private final LongAdder failureCount = new LongAdder();
+    // Only touched by the writer thread
+    private long recordsSinceRoll;
+
+    /**
+     * @param durabilityMode FIRE_AND_FORGET leaves syncing to the operating system, the other modes
+     *                       sync once per group of records
+     * @param snapshotInterval Number of records after which snapshotDue is called, 0 for never
+     * @param snapshotDue Called on the writer thread when a snapshot is due; must not block
+     */
+    public StateLogWriter(StateLog log, DurabilityMode durabilityMode, int queueCapacity,
+                          long snapshotInterval, Runnable snapshotDue) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be a positive number");
+        }
+        this.log = log;
+        this.durabilityMode = durabilityMode;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.snapshotInterval = snapshotInterval;
+        this.snapshotDue = snapshotDue;
+        this.recordsSinceRoll = log.getRecordsSinceSnapshot();
+        this.closed = false;
+
+        this.thread = new Thread(this::run, "state-log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a record; blocks while the queue is full
+     */
+    public void submit(ByteBuffer record) throws IOException {
+        enqueue(new Task(TaskType.RECORD, record));
+    }
+
+    /**
+     * Ends the current log generation after all records queued so far
+     *
+     * @return Future completed with the number of the new generation
+     */
+    public CompletableFuture<Integer> roll() throws IOException {
+        Task task = new Task(TaskType.ROLL, null);
+        enqueue(task);
+        return task.done;
+    }
+
+    /**
+     * Waits until all records queued so far are synced to disk
+     */
+    public void sync() throws IOException {
+        Task marker = new Task(TaskType.SYNC, null);
+        enqueue(marker);
+        await(marker.done);
+
+        IOException error = lastError;
+        if (error != null) {
+            lastError = null;
+            throw error;
+        }
+    }
+
+    /**
+     * Waits for a future of this writer
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the state log");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("State log writer failed", e.getCause());
+        }
+    }
+
+    /**
+     * Writes all queued records and stops the background thread
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        put(new Task(TaskType.SYNC, null));
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing state log writer");
+        }
+
+        IOException error = lastError;
+        if (error != null) {
+            lastError = null;
+            throw error;
+        }
+    }
+
+    /**
+     * Returns the last failed write of the state log, or null if none failed
+     */
+    public IOException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Returns the number of failed writes of the state log
+     */
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    private void enqueue(Task task) throws IOException {
+        if (closed) {
+            throw new IOException("State log writer is closed");
+        }
+        put(task);
+    }
+
+    private void put(Task task) throws IOException {
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing state change");
+        }
+    }
+
+    private void run() {
+        List<Task> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+            writeBatch(batch);
+            batch.clear();
+
+            if (closed && queue.isEmpty()) {
+                return;
+            }
+            if (snapshotInterval > 0 && recordsSinceRoll >= snapshotInterval) {
+                snapshotDue.run();
+            }
+        }
+    }
+
+    /**
+     * Appends one group of records with a single sync, then completes the waiting callers
+     */
+    private void writeBatch(List<Task> batch) {
+        List<Task> markers = new ArrayList<>();
+        try {
+            for (Task task : batch) {
+                switch (task.type) {
+                    case RECORD -> {
+                        log.append(task.record);
+                        recordsSinceRoll++;
+                    }
+                    case ROLL -> {
+                        // Records queued before the roll stay in the old generation
+                        task.done.complete(log.roll());
+                        recordsSinceRoll = 0;
+                    }
+                    case SYNC -> markers.add(task);
+                }
+            }
+            if (durabilityMode != DurabilityMode.FIRE_AND_FORGET || !markers.isEmpty()) {
+                log.sync();
+            } else {
+                log.flush();
+            }
+            for (Task marker : markers) {
+                marker.done.complete(null);
+            }
+        } catch (IOException e) {
+            lastError = e;
+            lastFailure = e;
+            failureCount.increment();
+            for (Task task : batch) {
+                if (task.done != null) {
+                    task.done.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private enum TaskType {
+        RECORD,
+        ROLL,
+        SYNC
+    }
+
+    /**
+     * Record waiting to be written, or a roll or sync request
+     */
+    private static class Task {
+        private final TaskType type;
+        private final ByteBuffer record;
+        private final CompletableFuture<Integer> done;
+
+        Task(TaskType type, ByteBuffer record) {
+            this.type = type;
+            this.record = record;
+            // Records are not waited for one by one
+            this.done = type == TaskType.RECORD ? null : new CompletableFuture<>();
+        }
+    }
+}
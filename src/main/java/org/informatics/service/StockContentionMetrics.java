@@ -0,0 +1,137 @@
+package org.informatics.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often stock updates had to retry because another sale changed the same product
+ * A product only gets its own counters once it was contended, so quiet products cost nothing
+ */
+public class StockContentionMetrics {
+    private final LongAdder updates;
+    private final LongAdder contendedUpdates;
+    private final LongAdder retries;
+    private final Map<String, Counters> byProduct;
+
+    public StockContentionMetrics() {
+        this.updates = new LongAdder();
+        this.contendedUpdates = new LongAdder();
+        this.retries = new LongAdder();
+        this.byProduct = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Records one stock update that needed the given number of compare-and-set retries
+     */
+    void record(String productId, int retryCount) {
+        updates.increment();
+        if (retryCount > 0) {
+            contendedUpdates.increment();
+            retries.add(retryCount);
+            Counters counters = byProduct.computeIfAbsent(productId, id -> new Counters());
+            counters.contendedUpdates.increment();
+            counters.retries.add(retryCount);
+        }
+    }
+
+    /**
+     * Returns the number of stock updates (sales) recorded
+     */
+    public long getUpdateCount() {
+        return updates.sum();
+    }
+
+    /**
+     * Returns the number of updates that needed at least one retry
+     */
+    public long getContendedUpdateCount() {
+        return contendedUpdates.sum();
+    }
+
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /**
+     * Returns the average number of retries per update
+     */
+    public double getRetriesPerUpdate() {
+        long count = getUpdateCount();
+        return count == 0 ? 0.0 : getRetryCount() / (double) count;
+    }
+
+    /**
+     * Returns the contention of one product (zeros if it was never contended)
+     */
+    public ProductContention getProductContention(String productId) {
+        Counters counters = byProduct.get(productId);
+        return counters == null
+                ? new ProductContention(productId, 0, 0)
+                : new ProductContention(productId, counters.contendedUpdates.sum(), counters.retries.sum());
+    }
+
+    /**
+     * Returns the most contended products, most retries first
+     */
+    public List<ProductContention> getMostContended(int limit) {
+        List<ProductContention> result = new ArrayList<>();
+        for (Map.Entry<String, Counters> entry : byProduct.entrySet()) {
+            result.add(new ProductContention(entry.getKey(),
+                    entry.getValue().contendedUpdates.sum(), entry.getValue().retries.sum()));
+        }
+        result.sort(Comparator.comparingLong(ProductContention::getRetries).reversed()
+                .thenComparing(ProductContention::getProductId));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * Clears all counters (e.g. at the start of a measurement)
+     */
+    public void reset() {
+        updates.reset();
+        contendedUpdates.reset();
+        retries.reset();
+        byProduct.clear();
+    }
+
+    private static final class Counters {
+        private final LongAdder contendedUpdates = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+    }
+
+    /**
+     * Contention of one product at the time it was read
+     */
+    public static final class ProductContention {
+        private final String productId;
+        private final long contendedUpdates;
+        private final long retries;
+
+        ProductContention(String productId, long contendedUpdates, long retries) {
+            this.productId = productId;
+            this.contendedUpdates = contendedUpdates;
+            this.retries = retries;
+        }
+
+        public String getProductId() {
+            return productId;
+        }
+
+        public long getContendedUpdates() {
+            return contendedUpdates;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        @Override
+        public String toString() {
+            return productId + ": " + contendedUpdates + " contended updates, " + retries + " retries";
+        }
+    }
+}
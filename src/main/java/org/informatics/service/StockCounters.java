@@ -0,0 +1,32 @@
+package org.informatics.service;
+
+import java.io.IOException;
+
+/**
+ * Stock level per dense product index, used by {@link ColumnarInventory}
+ * All updates are atomic; a counter never moves once created, so no update is lost when the store grows
+ */
+public interface StockCounters extends AutoCloseable {
+
+    /**
+     * Makes room for counters 0 .. size - 1 (called by a single writer)
+     */
+    void ensureCapacity(int size) throws IOException;
+
+    /**
+     * Sets up the counter of a newly added product
+     *
+     * @return The stock to use: the given quantity, or a count kept from an earlier run
+     */
+    int initialize(int index, String productId, int quantity);
+
+    int get(int index);
+
+    boolean compareAndSet(int index, int expected, int newValue);
+
+    int getAndAdd(int index, int delta);
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,93 @@
+package org.informatics.service;
+
+import org.informatics.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stock held for one sale, created by {@link InventoryService#reserve}
+ * The quantities are already taken out of stock; the sale either commits them
+ * or releases them back, so a failed sale never leaves stock half reduced
+ */
+public class StockReservation implements AutoCloseable {
+    private final InventoryService inventoryService;
+    private final List<Line> lines;
+    private boolean completed;
+
+    StockReservation(InventoryService inventoryService) {
+        this.inventoryService = inventoryService;
+        this.lines = new ArrayList<>();
+        this.completed = false;
+    }
+
+    void add(Product product, int quantity) {
+        lines.add(new Line(product, quantity));
+    }
+
+    /**
+     * Returns the reserved lines in the order they were requested
+     */
+    public List<Line> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * Makes the reservation final - the stock stays sold
+     */
+    public void commit() {
+        if (completed) {
+            throw new IllegalStateException("Reservation is already completed");
+        }
+        completed = true;
+    }
+
+    /**
+     * Returns all reserved quantities back to stock
+     */
+    public void release() {
+        if (completed) {
+            throw new IllegalStateException("Reservation is already completed");
+        }
+        completed = true;
+        for (Line line : lines) {
+            inventoryService.returnStock(line.product, line.quantity);
+        }
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Releases the stock if the reservation was neither committed nor released
+     */
+    @Override
+    public void close() {
+        if (!completed) {
+            release();
+        }
+    }
+
+    /**
+     * Single reserved product and quantity
+     */
+    public static class Line {
+        private final Product product;
+        private final int quantity;
+
+        Line(Product product, int quantity) {
+            this.product = product;
+            this.quantity = quantity;
+        }
+
+        public Product getProduct() {
+            return product;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+}
@@ -3,30 +3,97 @@ package org.informatics.service;
 import org.informatics.exception.ExpiredProductException;
 import org.informatics.exception.InsufficientStockException;
 import org.informatics.exception.InvalidProductException;
+import org.informatics.jfr.SaleEvent;
+import org.informatics.metrics.MetricsSnapshot;
 import org.informatics.model.*;
+import org.informatics.util.Money;
+import org.informatics.util.ReceiptNames;
+import org.informatics.util.ReceiptPrinter;
+import org.informatics.util.StateCodec;
+import org.informatics.util.StateLog;
+import org.informatics.util.StoreClock;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * Main class representing the store
  * Coordinates all operations between different services
+ * Sales can be made from many cashier threads in parallel
+ *
+ * With {@link #recoverState} the products, stock, cashiers and pricing rules survive a restart:
+ * every change made through the store is written to a state log, which is compacted into
+ * periodic snapshots
  */
-public class Store {
+public class Store implements AutoCloseable {
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 100_000;
+
     private final String name;
+    private final StoreClock clock;
     private final InventoryService inventoryService;
     private final PricingService pricingService;
     private final ReceiptService receiptService;
     private final Map<String, Cashier> cashiers;
+    private final LongAdder salaryExpensesCents;
+    private final StoreMetrics metrics;
+    private final SaleStream saleStream;
+    private volatile boolean printReceipts;
+
+    // State log, set once by recoverState
+    private final StampedLock stateLock;
+    private final AtomicBoolean snapshotScheduled;
+    private volatile StateLogWriter stateLogWriter;
+    private StateLog stateLog;
+    private ExecutorService snapshotExecutor;
+    private volatile Exception lastSnapshotFailure;
+    private final LongAdder snapshotFailures;
 
     public Store(String name, int expirationThresholdDays,
                  double expirationDiscountPercentage, String receiptsDirectory) {
+        this(name, expirationThresholdDays, expirationDiscountPercentage, receiptsDirectory,
+                DurabilityMode.FLUSH_PER_BATCH);
+    }
+
+    /**
+     * @param durabilityMode How strongly issued receipts are written to disk
+     */
+    public Store(String name, int expirationThresholdDays, double expirationDiscountPercentage,
+                 String receiptsDirectory, DurabilityMode durabilityMode) {
+        this(name, expirationThresholdDays, expirationDiscountPercentage, receiptsDirectory, durabilityMode,
+                StoreClock.system());
+    }
+
+    /**
+     * @param clock Business clock for expiration, prices and receipt times
+     */
+    public Store(String name, int expirationThresholdDays, double expirationDiscountPercentage,
+                 String receiptsDirectory, DurabilityMode durabilityMode, StoreClock clock) {
         this.name = name;
-        this.inventoryService = new InventoryService();
-        this.pricingService = new PricingService(expirationThresholdDays, expirationDiscountPercentage);
-        this.receiptService = new ReceiptService(receiptsDirectory);
-        this.cashiers = new HashMap<>();
+        this.clock = clock != null ? clock : StoreClock.system();
+        this.inventoryService = new InventoryService(this.clock);
+        this.pricingService = new PricingService(expirationThresholdDays, expirationDiscountPercentage, this.clock);
+        this.receiptService = new ReceiptService(receiptsDirectory, durabilityMode,
+                ReceiptService.DEFAULT_QUEUE_CAPACITY, this.clock);
+        this.cashiers = new ConcurrentHashMap<>();
+        this.receiptService.setReceiptNames(new StoreReceiptNames());
+        this.salaryExpensesCents = new LongAdder();
+        this.metrics = new StoreMetrics();
+        this.saleStream = new SaleStream();
+        this.printReceipts = true;
+        this.stateLock = new StampedLock();
+        this.snapshotScheduled = new AtomicBoolean();
+        this.snapshotFailures = new LongAdder();
     }
 
     // ==================== Cashier operations ====================
@@ -38,10 +105,18 @@ public class Store {
         if (cashier == null) {
             throw new InvalidProductException("Cashier cannot be null");
         }
-        if (cashiers.containsKey(cashier.getId())) {
-            throw new InvalidProductException("Cashier with ID " + cashier.getId() + " already exists");
+        long stamp = beginChange();
+        try {
+            if (cashiers.putIfAbsent(cashier.getId(), cashier) != null) {
+                throw new InvalidProductException("Cashier with ID " + cashier.getId() + " already exists");
+            }
+            salaryExpensesCents.add(Money.toCents(cashier.getMonthlySalary()));
+            if (stamp != 0) {
+                logChange(StateCodec.cashierAdded(cashier));
+            }
+        } finally {
+            endChange(stamp);
         }
-        cashiers.put(cashier.getId(), cashier);
     }
 
     /**
@@ -68,14 +143,90 @@ public class Store {
      * Adds product to the store
      */
     public void addProduct(Product product) throws InvalidProductException {
-        inventoryService.addProduct(product);
+        long stamp = beginChange();
+        try {
+            // Encoded first, so the logged quantity is the one before any sale
+            ByteBuffer record = stamp != 0 && product != null ? StateCodec.productAdded(product) : null;
+            inventoryService.addProduct(product);
+            if (record != null) {
+                logChange(record);
+            }
+        } finally {
+            endChange(stamp);
+        }
+    }
+
+    /**
+     * Imports products from a supplier CSV file (see {@link CatalogImporter} for the columns)
+     * Invalid rows are skipped and listed in the returned report
+     */
+    public CatalogImportReport importCatalog(Path file) throws IOException {
+        return new CatalogImporter(this::addImportedProducts, CatalogImporter.DEFAULT_CHUNK_SIZE).importFile(file);
     }
 
     /**
      * Restocks products in the store
      */
     public void restockProduct(String productId, int quantity) throws InvalidProductException {
-        inventoryService.restockProduct(productId, quantity);
+        long stamp = beginChange();
+        try {
+            inventoryService.restockProduct(productId, quantity);
+            if (stamp != 0) {
+                logChange(StateCodec.restocked(productId, quantity));
+            }
+        } finally {
+            endChange(stamp);
+        }
+    }
+
+    /**
+     * Restocks a whole delivery (productId to quantity per line) at once
+     * Bad lines are listed in the returned report instead of failing the delivery
+     */
+    public RestockReport restockAll(Collection<? extends Map.Entry<String, Integer>> delivery) {
+        long stamp = beginChange();
+        try {
+            RestockReport report = inventoryService.restockAll(delivery);
+            if (stamp != 0) {
+                for (RestockReport.Line line : report.getLines()) {
+                    if (line.isApplied()) {
+                        logChange(StateCodec.restocked(line.getProductId(), line.getQuantity()));
+                    }
+                }
+            }
+            return report;
+        } finally {
+            endChange(stamp);
+        }
+    }
+
+    /**
+     * Adds one chunk of an imported catalog and logs the products that were new
+     */
+    private List<Product> addImportedProducts(List<Product> products) throws InvalidProductException {
+        long stamp = beginChange();
+        try {
+            if (stamp == 0) {
+                return inventoryService.addProducts(products);
+            }
+            ByteBuffer[] records = new ByteBuffer[products.size()];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = StateCodec.productAdded(products.get(i));
+            }
+            List<Product> duplicates = inventoryService.addProducts(products);
+            // Duplicates come back in input order
+            int next = 0;
+            for (int i = 0; i < records.length; i++) {
+                if (next < duplicates.size() && products.get(i) == duplicates.get(next)) {
+                    next++;
+                } else {
+                    logChange(records[i]);
+                }
+            }
+            return duplicates;
+        } finally {
+            endChange(stamp);
+        }
     }
 
     /**
@@ -85,6 +236,27 @@ public class Store {
         return inventoryService.getAvailableProducts();
     }
 
+    /**
+     * Returns products that expire within the given number of days (candidates for markdown)
+     */
+    public List<Product> getProductsExpiringWithin(int days) throws InvalidProductException {
+        return inventoryService.getProductsExpiringWithin(days);
+    }
+
+    /**
+     * Returns how often concurrent sales of the same product had to retry their stock update
+     */
+    public StockContentionMetrics getStockContentionMetrics() {
+        return inventoryService.getContentionMetrics();
+    }
+
+    /**
+     * Returns all expired products
+     */
+    public List<Product> getExpiredProducts() {
+        return inventoryService.getExpiredProducts();
+    }
+
     // ==================== Sale ====================
 
     /**
@@ -98,68 +270,182 @@ public class Store {
     public Receipt makeSale(String cashierId, Map<String, Integer> items, double customerPayment)
             throws InvalidProductException, InsufficientStockException,
             ExpiredProductException, IOException {
+        SaleEvent event = new SaleEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long stamp = beginChange();
+        Receipt receipt;
+        try {
+            receipt = sell(cashierId, items, customerPayment);
+            metrics.recordSale(start, receipt.getItems().size());
+            if (event.shouldCommit()) {
+                event.receiptNumber = receipt.getReceiptNumber();
+                event.itemCount = receipt.getItems().size();
+            }
+        } catch (InvalidProductException | InsufficientStockException | ExpiredProductException | IOException e) {
+            metrics.recordFailure(e);
+            if (event.shouldCommit()) {
+                event.itemCount = items != null ? items.size() : 0;
+                event.failure = e.getClass().getSimpleName();
+            }
+            throw e;
+        } finally {
+            endChange(stamp);
+            if (event.shouldCommit()) {
+                event.cashierId = cashierId;
+                event.commit();
+            }
+        }
 
-        // Get the cashier
-        Cashier cashier = getCashier(cashierId);
-
-        // Create list of items for the receipt
-        List<ReceiptItem> receiptItems = new ArrayList<>();
-        double totalAmount = 0.0;
-
-        // Process each product
-        for (Map.Entry<String, Integer> entry : items.entrySet()) {
-            String productId = entry.getKey();
-            int quantity = entry.getValue();
-
-            // Get the product
-            Product product = inventoryService.getProduct(productId);
+        // Outside the state lock, as a slow subscriber may hold the sale back here
+        saleStream.publish(receipt);
+        return receipt;
+    }
 
-            // Calculate the price
-            double unitPrice = pricingService.calculateSalePrice(product);
+    /**
+     * Subscribes a consumer (reporting, analytics, replenishment...) to all sales completed from now on
+     * Each subscriber reads on its own thread; see {@link SaleStream} for the back-pressure rules
+     */
+    public SaleStream.Subscription subscribeToSales(String name, SaleListener listener) {
+        return saleStream.subscribe(name, listener);
+    }
 
-            // Check availability and validity (throws exceptions on problem)
-            inventoryService.reduceStock(productId, quantity);
+    private Receipt sell(String cashierId, Map<String, Integer> items, double customerPayment)
+            throws InvalidProductException, InsufficientStockException,
+            ExpiredProductException, IOException {
 
-            // Add item to receipt
-            ReceiptItem receiptItem = new ReceiptItem(product, quantity, unitPrice);
-            receiptItems.add(receiptItem);
-            totalAmount += receiptItem.getTotalPrice();
-        }
+        // Get the cashier
+        Cashier cashier = getCashier(cashierId);
 
-        // Check if customer has enough money
-        if (customerPayment < totalAmount) {
-            throw new InvalidProductException(
-                    String.format("Insufficient payment amount. Required: %.2f EUR, Received: %.2f EUR",
-                            totalAmount, customerPayment));
+        // Reserve all items first - nothing is taken from stock if any item fails
+        List<ReceiptItem> receiptItems = new ArrayList<>();
+        long totalCents = 0;
+
+        long stockStart = System.nanoTime();
+        try (StockReservation reservation = inventoryService.reserve(items)) {
+            long pricingStart = System.nanoTime();
+            metrics.stockLatency.record(pricingStart - stockStart);
+
+            // Price each reserved product
+            for (StockReservation.Line line : reservation.getLines()) {
+                Product product = line.getProduct();
+                long unitPriceCents = pricingService.calculateSalePriceCents(product);
+
+                ReceiptItem receiptItem = ReceiptItem.ofCents(product.getId(), product.getName(),
+                        line.getQuantity(), unitPriceCents);
+                receiptItems.add(receiptItem);
+                totalCents += receiptItem.getTotalPriceCents();
+            }
+            metrics.pricingLatency.recordSince(pricingStart);
+
+            // Check if customer has enough money (the reservation is released on failure)
+            if (Money.toCents(customerPayment) < totalCents) {
+                throw new InvalidProductException(
+                        String.format("Insufficient payment amount. Required: %.2f EUR, Received: %.2f EUR",
+                                Money.toUnits(totalCents), customerPayment));
+            }
+
+            long commitStart = System.nanoTime();
+            reservation.commit();
+            metrics.commitLatency.recordSince(commitStart);
         }
 
-        // Create the receipt
+        // Create the receipt (number is taken only once the sale can no longer fail)
+        long buildStart = System.nanoTime();
         Receipt receipt = new Receipt.Builder()
-                .receiptNumber(receiptService.getNextReceiptNumber())
+                .receiptNumber(receiptService.allocateReceiptNumber())
                 .cashier(cashier)
-                .issuedAt(LocalDateTime.now())
+                .issuedAt(clock.now())
                 .items(receiptItems)
                 .build();
 
-        // Issue the receipt
+        // Log the sale (the receipt carries the sold quantities) and issue the receipt
+        long persistStart = System.nanoTime();
+        metrics.receiptBuildLatency.record(persistStart - buildStart);
+        StateLogWriter writer = stateLogWriter;
+        if (writer != null) {
+            writer.submit(StateCodec.receiptIssued(receipt));
+        }
         receiptService.issueReceipt(receipt);
-        receiptService.incrementReceiptNumber();
+        metrics.persistenceLatency.recordSince(persistStart);
 
         // Display receipt in console
-        System.out.println(receipt.format());
+        if (printReceipts) {
+            ReceiptPrinter.println(receipt, System.out);
+        }
 
         return receipt;
     }
 
+    // ==================== Metrics ====================
+
+    public StoreMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Describes the last failure of each background thread that failed: the receipt writer,
+     * the state log writer, snapshots and sale subscribers
+     * These threads have no caller to throw to, so they keep their failures instead of printing
+     * them; the application decides where to report them (e.g. when the store is closed)
+     */
+    public List<String> getBackgroundFailures() {
+        List<String> failures = new ArrayList<>();
+        IOException receiptFailure = receiptService.getLastWriteFailure();
+        if (receiptFailure != null) {
+            failures.add("Receipt writer failed " + receiptService.getWriteFailureCount()
+                    + " time(s), last: " + receiptFailure.getMessage());
+        }
+        IOException stateLogFailure = getLastStateLogFailure();
+        if (stateLogFailure != null) {
+            failures.add("State log write failed: " + stateLogFailure.getMessage());
+        }
+        Exception snapshotFailure = lastSnapshotFailure;
+        if (snapshotFailure != null) {
+            failures.add("State snapshot failed " + snapshotFailures.sum()
+                    + " time(s), last: " + snapshotFailure.getMessage());
+        }
+        for (SaleStream.Subscription subscription : saleStream.getSubscriptions()) {
+            Exception subscriberFailure = subscription.getLastFailure();
+            if (subscriberFailure != null) {
+                failures.add("Sale subscriber " + subscription.getName() + " failed "
+                        + subscription.getFailureCount() + " time(s), last: " + subscriberFailure.getMessage());
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Returns the checkout, inventory and receipt metrics at this moment
+     */
+    public MetricsSnapshot getMetricsSnapshot() {
+        StockContentionMetrics contention = inventoryService.getContentionMetrics();
+        return metrics.appendTo(new MetricsSnapshot.Builder())
+                .counter("inventory.products", inventoryService.getProductCount())
+                .counter("inventory.stockUpdates", contention.getUpdateCount())
+                .counter("inventory.contendedStockUpdates", contention.getContendedUpdateCount())
+                .counter("inventory.stockUpdateRetries", contention.getRetryCount())
+                .counter("receipts.issued", receiptService.getTotalReceiptsCount())
+                .counter("receipts.retained", receiptService.getRetainedReceiptsCount())
+                .counter("receipts.revenueCents", receiptService.getTotalRevenueCents())
+                .counter("receipts.writeFailures", receiptService.getWriteFailureCount())
+                .counter("state.logFailures", stateLogWriter != null ? stateLogWriter.getFailureCount() : 0)
+                .counter("state.snapshotFailures", snapshotFailures.sum())
+                .counter("saleStream.published", saleStream.getPublishedCount())
+                .counter("saleStream.backPressureWaits", saleStream.getBackPressureWaits())
+                .counter("saleStream.subscribers", saleStream.getSubscriptions().size())
+                .counter("saleStream.subscriberFailures", saleStream.getSubscriptions().stream()
+                        .mapToLong(SaleStream.Subscription::getFailureCount).sum())
+                .build();
+    }
+
     // ==================== Financial reports ====================
 
     /**
      * Calculates total salary expenses
      */
     public double calculateSalaryExpenses() {
-        return cashiers.values().stream()
-                .mapToDouble(Cashier::getMonthlySalary)
-                .sum();
+        return Money.toUnits(salaryExpensesCents.sum());
     }
 
     /**
@@ -173,7 +459,7 @@ public class Store {
      * Calculates total expenses
      */
     public double calculateTotalExpenses() {
-        return calculateSalaryExpenses() + calculateSupplyExpenses();
+        return Money.toUnits(salaryExpensesCents.sum() + inventoryService.getTotalPurchaseValueCents());
     }
 
     /**
@@ -187,41 +473,363 @@ public class Store {
      * Calculates profit (revenue - expenses)
      */
     public double calculateProfit() {
-        return calculateTotalRevenue() - calculateTotalExpenses();
+        return Money.toUnits(receiptService.getTotalRevenueCents()
+                - salaryExpensesCents.sum() - inventoryService.getTotalPurchaseValueCents());
     }
 
     /**
      * Returns financial report
+     * All totals are running sums, so the report is cheap to build while sales continue
      */
     public String getFinancialReport() {
+        // Read every total once, so the lines of the report agree with each other
+        long salaryExpenses = salaryExpensesCents.sum();
+        long supplyExpenses = inventoryService.getTotalPurchaseValueCents();
+        long totalExpenses = salaryExpenses + supplyExpenses;
+        long totalRevenue = receiptService.getTotalRevenueCents();
+        int receiptsCount = receiptService.getTotalReceiptsCount();
+
         StringBuilder sb = new StringBuilder();
         sb.append("=".repeat(60)).append("\n");
         sb.append("FINANCIAL REPORT - ").append(name).append("\n");
         sb.append("=".repeat(60)).append("\n");
-        sb.append(String.format("Salary expenses: %.2f EUR\n", calculateSalaryExpenses()));
-        sb.append(String.format("Supply expenses: %.2f EUR\n", calculateSupplyExpenses()));
-        sb.append(String.format("Total expenses: %.2f EUR\n", calculateTotalExpenses()));
+        sb.append(String.format("Salary expenses: %.2f EUR\n", Money.toUnits(salaryExpenses)));
+        sb.append(String.format("Supply expenses: %.2f EUR\n", Money.toUnits(supplyExpenses)));
+        sb.append(String.format("Total expenses: %.2f EUR\n", Money.toUnits(totalExpenses)));
         sb.append("-".repeat(60)).append("\n");
-        sb.append(String.format("Revenue from sales: %.2f EUR\n", calculateTotalRevenue()));
+        sb.append(String.format("Revenue from sales: %.2f EUR\n", Money.toUnits(totalRevenue)));
         sb.append("-".repeat(60)).append("\n");
-        sb.append(String.format("PROFIT: %.2f EUR\n", calculateProfit()));
+        sb.append(String.format("PROFIT: %.2f EUR\n", Money.toUnits(totalRevenue - totalExpenses)));
         sb.append("=".repeat(60)).append("\n");
-        sb.append(String.format("Number of issued receipts: %d\n",
-                receiptService.getTotalReceiptsCount()));
+        sb.append(String.format("Number of issued receipts: %d\n", receiptsCount));
         sb.append("=".repeat(60)).append("\n");
         return sb.toString();
     }
 
+    // ==================== State log ====================
+
+    /**
+     * Restores the store from the state log in a directory and logs all further changes there
+     * Must be called on a new store, before any cashier or product is added. The latest snapshot
+     * is loaded and the changes logged after it are replayed; a snapshot is taken every
+     * {@link #DEFAULT_SNAPSHOT_INTERVAL} logged changes
+     *
+     * Changes are logged in the background and synced in groups (see {@link StateLogWriter}),
+     * so with FIRE_AND_FORGET or a crash between two syncs the last changes may be lost.
+     * Changes made directly through the services, bypassing the store, are not logged
+     *
+     * @return Number of replayed log records
+     */
+    public long recoverState(Path directory) throws IOException {
+        return recoverState(directory, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * @param snapshotInterval Number of logged changes after which a snapshot is taken, 0 for
+     *                         snapshots only through {@link #snapshotState()}
+     */
+    public synchronized long recoverState(Path directory, long snapshotInterval) throws IOException {
+        if (stateLogWriter != null) {
+            throw new IllegalStateException("State log is already open");
+        }
+        if (inventoryService.getProductCount() > 0 || !cashiers.isEmpty()) {
+            throw new IllegalStateException("State can only be recovered into an empty store");
+        }
+
+        StateLog log = StateLog.open(directory);
+        try {
+            StateReplayer replayer = new StateReplayer();
+            ByteBuffer snapshot = log.readSnapshot();
+            if (snapshot != null) {
+                StateCodec.decodeSnapshot(snapshot, replayer);
+            }
+            long replayed = log.replay(record -> StateCodec.decode(record, replayer, receiptService.getReceiptNames()));
+
+            StateLogWriter writer = new StateLogWriter(log, receiptService.getDurabilityMode(),
+                    StateLogWriter.DEFAULT_QUEUE_CAPACITY, snapshotInterval, this::scheduleSnapshot);
+            if (!replayer.pricingRulesRestored) {
+                // From now on the rules given to the constructor are part of the state
+                writer.submit(StateCodec.pricingRulesChanged(pricingService.getExpirationThresholdDays(),
+                        pricingService.getExpirationDiscountPercentage()));
+            }
+            this.stateLog = log;
+            this.snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "state-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.stateLogWriter = writer;
+            return replayed;
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the whole state as a snapshot and drops the log records it replaces
+     * Changes wait only while the state is copied, not while the snapshot is written
+     */
+    public void snapshotState() throws IOException {
+        StateLogWriter writer = stateLogWriter;
+        if (writer == null) {
+            throw new IllegalStateException("State log is not open");
+        }
+        synchronized (snapshotScheduled) {
+            CompletableFuture<Integer> generation;
+            List<Cashier> cashierList;
+            List<Product> products;
+            int[] quantities;
+            int thresholdDays;
+            double discountPercentage;
+
+            long stamp = stateLock.writeLock();
+            try {
+                generation = writer.roll();
+                cashierList = new ArrayList<>(cashiers.values());
+                products = inventoryService.getAllProducts();
+                quantities = new int[products.size()];
+                for (int i = 0; i < quantities.length; i++) {
+                    quantities[i] = products.get(i).getQuantityInStock();
+                }
+                thresholdDays = pricingService.getExpirationThresholdDays();
+                discountPercentage = pricingService.getExpirationDiscountPercentage();
+            } finally {
+                stateLock.unlockWrite(stamp);
+            }
+
+            ByteBuffer snapshot = ByteBuffer.allocate(64 + products.size() * 64);
+            snapshot = StateCodec.appendToSnapshot(snapshot,
+                    StateCodec.pricingRulesChanged(thresholdDays, discountPercentage));
+            for (Cashier cashier : cashierList) {
+                snapshot = StateCodec.appendToSnapshot(snapshot, StateCodec.cashierAdded(cashier));
+            }
+            for (int i = 0; i < quantities.length; i++) {
+                snapshot = StateCodec.appendToSnapshot(snapshot,
+                        StateCodec.productAdded(products.get(i), quantities[i]));
+            }
+
+            int snapshotGeneration = StateLogWriter.await(generation);
+            // Receipts of sales before the snapshot must be in the journal before their log records go
+            receiptService.checkpoint();
+            stateLog.writeSnapshot(snapshotGeneration, snapshot.flip());
+        }
+    }
+
+    /**
+     * Waits until all changes made so far are written to the state log and synced
+     */
+    public void syncState() throws IOException {
+        StateLogWriter writer = stateLogWriter;
+        if (writer != null) {
+            writer.sync();
+        }
+    }
+
+    /**
+     * Returns the last failed write of the state log, or null if none failed
+     */
+    public IOException getLastStateLogFailure() {
+        StateLogWriter writer = stateLogWriter;
+        return writer != null ? writer.getLastFailure() : null;
+    }
+
+    /**
+     * Returns the last failure of a snapshot taken in the background, or null if none failed
+     */
+    public Exception getLastSnapshotFailure() {
+        return lastSnapshotFailure;
+    }
+
+    /**
+     * Returns the state log, or null if {@link #recoverState} was not called
+     */
+    public StateLog getStateLog() {
+        return stateLog;
+    }
+
+    /**
+     * Blocks snapshots while a change is applied and logged, so a snapshot never holds a change
+     * whose log record comes after it (or the other way round)
+     *
+     * @return Stamp for endChange, 0 when state logging is off
+     */
+    private long beginChange() {
+        return stateLogWriter != null ? stateLock.readLock() : 0;
+    }
+
+    private void endChange(long stamp) {
+        if (stamp != 0) {
+            stateLock.unlockRead(stamp);
+        }
+    }
+
+    private void logChange(ByteBuffer record) {
+        try {
+            stateLogWriter.submit(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot log state change", e);
+        }
+    }
+
+    /**
+     * Called by the state log writer; takes the snapshot on its own thread, as the writer
+     * must keep draining its queue meanwhile
+     */
+    private void scheduleSnapshot() {
+        if (snapshotScheduled.compareAndSet(false, true)) {
+            snapshotExecutor.execute(() -> {
+                try {
+                    snapshotState();
+                } catch (IOException | RuntimeException e) {
+                    // The log still holds every change, so only the next recovery gets slower
+                    lastSnapshotFailure = e;
+                    snapshotFailures.increment();
+                } finally {
+                    snapshotScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Applies snapshot and log records to this store
+     */
+    private class StateReplayer implements StateCodec.StateVisitor {
+        private boolean pricingRulesRestored;
+
+        @Override
+        public void productAdded(Product product) throws IOException {
+            try {
+                inventoryService.addProduct(product);
+            } catch (InvalidProductException e) {
+                throw new IOException("Cannot replay state log: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void restocked(String productId, int quantity) throws IOException {
+            try {
+                inventoryService.restockProduct(productId, quantity);
+            } catch (InvalidProductException e) {
+                throw new IOException("Cannot replay state log: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void cashierAdded(Cashier cashier) throws IOException {
+            try {
+                addCashier(cashier);
+            } catch (InvalidProductException e) {
+                throw new IOException("Cannot replay state log: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void receiptIssued(Receipt receipt) throws IOException {
+            // The stock was checked when the sale was made, so it is taken without checks
+            for (ReceiptItem item : receipt.getItems()) {
+                try {
+                    inventoryService.replaySale(item.getProductId(), item.getQuantity());
+                } catch (InvalidProductException e) {
+                    throw new IOException("Cannot replay state log: " + e.getMessage(), e);
+                }
+            }
+            receiptService.restoreReceipt(receipt);
+        }
+
+        @Override
+        public void pricingRulesChanged(int expirationThresholdDays, double expirationDiscountPercentage) {
+            pricingService.updateRules(expirationThresholdDays, expirationDiscountPercentage);
+            pricingRulesRestored = true;
+        }
+    }
+
+    /**
+     * Names for receipts read back from the journal, from the store's cashiers and products
+     */
+    private class StoreReceiptNames implements ReceiptNames {
+        @Override
+        public Cashier findCashier(String cashierId) {
+            return cashiers.get(cashierId);
+        }
+
+        @Override
+        public String findProductName(String productId) {
+            Product product = inventoryService.findProduct(productId);
+            return product != null ? product.getName() : null;
+        }
+    }
+
+    // ==================== Settings ====================
+
+    /**
+     * Changes the expiration discount rules
+     */
+    public void updatePricingRules(int expirationThresholdDays, double expirationDiscountPercentage) {
+        long stamp = beginChange();
+        try {
+            pricingService.updateRules(expirationThresholdDays, expirationDiscountPercentage);
+            if (stamp != 0) {
+                logChange(StateCodec.pricingRulesChanged(expirationThresholdDays, expirationDiscountPercentage));
+            }
+        } finally {
+            endChange(stamp);
+        }
+    }
+
+    /**
+     * Turns printing of every issued receipt to the console on or off
+     * Console output is shared by all cashiers, so it is best turned off for parallel checkout
+     */
+    public void setPrintReceipts(boolean printReceipts) {
+        this.printReceipts = printReceipts;
+    }
+
+    /**
+     * Lets sale subscribers catch up, writes all pending receipts and state changes and stops background work
+     */
+    @Override
+    public void close() throws IOException {
+        saleStream.close();
+        try {
+            StateLogWriter writer = stateLogWriter;
+            if (writer != null) {
+                snapshotExecutor.shutdown();
+                try {
+                    snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                try {
+                    writer.close();
+                } finally {
+                    stateLog.close();
+                }
+            }
+        } finally {
+            receiptService.close();
+        }
+    }
+
     // ==================== Getters ====================
 
     public String getName() {
         return name;
     }
 
+    public StoreClock getClock() {
+        return clock;
+    }
+
     public InventoryService getInventoryService() {
         return inventoryService;
     }
 
+    public SaleStream getSaleStream() {
+        return saleStream;
+    }
+
     public PricingService getPricingService() {
         return pricingService;
     }
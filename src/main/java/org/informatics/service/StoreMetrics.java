@@ -0,0 +1,79 @@
+package org.informatics.service;
+
+import org.informatics.exception.ExpiredProductException;
+import org.informatics.exception.InsufficientStockException;
+import org.informatics.exception.InvalidProductException;
+import org.informatics.metrics.LatencyHistogram;
+import org.informatics.metrics.MetricsSnapshot;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latencies of the checkout, recorded by {@link Store#makeSale}
+ * A sale's latency is split into its phases: stock reservation, pricing, committing the
+ * reserved stock, building the receipt and persisting it
+ */
+public class StoreMetrics {
+    private final LongAdder completedSales = new LongAdder();
+    private final LongAdder failedSales = new LongAdder();
+    private final LongAdder soldItems = new LongAdder();
+    private final LongAdder insufficientStockErrors = new LongAdder();
+    private final LongAdder expiredProductErrors = new LongAdder();
+    private final LongAdder invalidProductErrors = new LongAdder();
+    private final LongAdder ioErrors = new LongAdder();
+
+    final LatencyHistogram saleLatency = new LatencyHistogram();
+    final LatencyHistogram stockLatency = new LatencyHistogram();
+    final LatencyHistogram pricingLatency = new LatencyHistogram();
+    final LatencyHistogram commitLatency = new LatencyHistogram();
+    final LatencyHistogram receiptBuildLatency = new LatencyHistogram();
+    final LatencyHistogram persistenceLatency = new LatencyHistogram();
+
+    void recordSale(long startNanos, int itemCount) {
+        saleLatency.recordSince(startNanos);
+        completedSales.increment();
+        soldItems.add(itemCount);
+    }
+
+    void recordFailure(Exception e) {
+        failedSales.increment();
+        if (e instanceof InsufficientStockException) {
+            insufficientStockErrors.increment();
+        } else if (e instanceof ExpiredProductException) {
+            expiredProductErrors.increment();
+        } else if (e instanceof InvalidProductException) {
+            invalidProductErrors.increment();
+        } else if (e instanceof IOException) {
+            ioErrors.increment();
+        }
+    }
+
+    public long getCompletedSalesCount() {
+        return completedSales.sum();
+    }
+
+    public long getFailedSalesCount() {
+        return failedSales.sum();
+    }
+
+    /**
+     * Adds the checkout counters and latencies to a snapshot
+     */
+    public MetricsSnapshot.Builder appendTo(MetricsSnapshot.Builder builder) {
+        return builder
+                .counter("sales.completed", completedSales.sum())
+                .counter("sales.failed", failedSales.sum())
+                .counter("sales.items", soldItems.sum())
+                .counter("errors.insufficientStock", insufficientStockErrors.sum())
+                .counter("errors.expiredProduct", expiredProductErrors.sum())
+                .counter("errors.invalidProduct", invalidProductErrors.sum())
+                .counter("errors.io", ioErrors.sum())
+                .latency("sale.total", saleLatency)
+                .latency("sale.stock", stockLatency)
+                .latency("sale.pricing", pricingLatency)
+                .latency("sale.commit", commitLatency)
+                .latency("sale.receiptBuild", receiptBuildLatency)
+                .latency("sale.persistence", persistenceLatency);
+    }
+}
@@ -1,5 +1,7 @@
 package org.informatics.util;
 
+import org.informatics.jfr.FileWriteEvent;
+
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -15,12 +17,20 @@ public class FileManager {
      */
     public static void writeToFile(String filePath, String content) throws IOException {
         // Create directory if it doesn't exist
+        FileWriteEvent event = new FileWriteEvent();
+        event.begin();
         Path path = Paths.get(filePath);
         Files.createDirectories(path.getParent());
 
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
             writer.write(content);
         }
+
+        if (event.shouldCommit()) {
+            event.path = filePath;
+            event.bytesWritten = Files.size(path);
+            event.commit();
+        }
     }
 
     /**
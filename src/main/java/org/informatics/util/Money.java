@@ -0,0 +1,98 @@
+package org.informatics.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Helpers for amounts kept as a long number of cents (minor units)
+ *
+ * Rounding rules:
+ * - amounts given as double (e.g. purchase prices, customer payments) are rounded half up
+ *   to whole cents, the same way they are printed with "%.2f"
+ * - a sale price is computed from the purchase price in exact integer arithmetic and rounded
+ *   half up to whole cents once, after markup and discount
+ * - line totals and sums of cents are exact
+ */
+public final class Money {
+    public static final int CENTS_PER_UNIT = 100;
+    public static final int BASIS_POINTS_PER_PERCENT = 100;
+
+    private static final long HUNDRED_PERCENT_BP = 100L * BASIS_POINTS_PER_PERCENT;
+    // Above this, amount * 100 no longer has enough precision to round by hand
+    private static final double FAST_PATH_LIMIT = 1e12;
+    private static final double HALF_CENT_TOLERANCE = 1e-4;
+
+    private Money() {
+    }
+
+    /**
+     * Converts an amount to cents, rounding half up (2.675 -> 268)
+     */
+    public static long toCents(double amount) {
+        double scaled = amount * CENTS_PER_UNIT;
+        if (Double.isNaN(scaled) || Math.abs(scaled) >= FAST_PATH_LIMIT) {
+            // Out of range values saturate at Long.MIN_VALUE / Long.MAX_VALUE
+            return Math.round(scaled);
+        }
+
+        long cents = (long) Math.abs(scaled);
+        double fraction = Math.abs(scaled) - cents;
+        if (Math.abs(fraction - 0.5) < HALF_CENT_TOLERANCE) {
+            // Round the shortest decimal form of the double, e.g. 1.005 -> 101
+            return new BigDecimal(Double.toString(amount))
+                    .setScale(2, RoundingMode.HALF_UP)
+                    .unscaledValue()
+                    .longValueExact();
+        }
+        if (fraction > 0.5) {
+            cents++;
+        }
+        return amount < 0 ? -cents : cents;
+    }
+
+    /**
+     * Converts cents to an amount in units (for display and the double getters)
+     */
+    public static double toUnits(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    /**
+     * Converts a percentage to basis points (hundredths of a percent), e.g. 12.5 -> 1250
+     */
+    public static int toBasisPoints(double percentage) {
+        return Math.toIntExact(Math.round(percentage * BASIS_POINTS_PER_PERCENT));
+    }
+
+    /**
+     * Adds a markup and then takes a discount off an amount, rounding half up once at the end
+     *
+     * @param cents Amount in cents
+     * @param markupBasisPoints Markup in basis points (3000 = 30%)
+     * @param discountBasisPoints Discount in basis points (2000 = 20%), 0 for no discount
+     */
+    public static long applyMarkupAndDiscount(long cents, int markupBasisPoints, int discountBasisPoints) {
+        long numerator = Math.multiplyExact(Math.multiplyExact(cents, HUNDRED_PERCENT_BP + markupBasisPoints),
+                HUNDRED_PERCENT_BP - discountBasisPoints);
+        return divideHalfUp(numerator, HUNDRED_PERCENT_BP * HUNDRED_PERCENT_BP);
+    }
+
+    /**
+     * Returns the total for a number of items at the given unit price
+     */
+    public static long multiply(long unitCents, int quantity) {
+        return Math.multiplyExact(unitCents, quantity);
+    }
+
+    /**
+     * Divides and rounds half up (away from zero for negative values)
+     */
+    static long divideHalfUp(long value, long divisor) {
+        long quotient = value / divisor;
+        long remainder = value % divisor;
+        if (Math.abs(remainder) * 2 >= divisor) {
+            quotient += value < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,105 @@
+package org.informatics.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Writes amounts with two decimals straight into a StringBuilder
+ * The output is the same as String.format("%.2f", value), without creating a Formatter or String
+ * Locales that do not write numbers with '.' and ASCII digits fall back to String.format
+ */
+public final class MoneyFormat {
+    // Above this, value * 100 no longer has enough precision for the fast path
+    private static final double FAST_PATH_LIMIT = 1e12;
+    // Fractions this close to half a cent are rounded like Formatter does, through BigDecimal
+    private static final double HALF_CENT_TOLERANCE = 1e-4;
+
+    private static volatile LocaleCheck lastLocaleCheck = new LocaleCheck(null, false);
+
+    private MoneyFormat() {
+    }
+
+    /**
+     * Checks if the default format locale writes numbers with '.' and ASCII digits,
+     * like the fast paths of this class
+     */
+    public static boolean isPlainLocale() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        LocaleCheck check = lastLocaleCheck;
+        if (check.locale != locale) {
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+            check = new LocaleCheck(locale,
+                    symbols.getDecimalSeparator() == '.' && symbols.getZeroDigit() == '0');
+            lastLocaleCheck = check;
+        }
+        return check.plain;
+    }
+
+    /**
+     * Appends the value rounded half up to two decimals, e.g. 3.5 as "3.50"
+     */
+    public static StringBuilder appendTwoDecimals(StringBuilder sb, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || !isPlainLocale()) {
+            return sb.append(String.format("%.2f", value));
+        }
+
+        boolean negative = Double.doubleToRawLongBits(value) < 0;
+        double scaled = Math.abs(value) * 100.0;
+        if (scaled >= FAST_PATH_LIMIT) {
+            return appendSlow(sb, value);
+        }
+
+        long cents = (long) scaled;
+        double fraction = scaled - cents;
+        if (Math.abs(fraction - 0.5) < HALF_CENT_TOLERANCE) {
+            return appendSlow(sb, value);
+        }
+        if (fraction > 0.5) {
+            cents++;
+        }
+
+        if (negative) {
+            sb.append('-');
+        }
+        return appendCents(sb, cents);
+    }
+
+    /**
+     * Appends a whole number of cents as units with two decimals, e.g. 1234 as "12.34"
+     * Always uses '.' and ASCII digits
+     */
+    public static StringBuilder appendCents(StringBuilder sb, long cents) {
+        if (cents < 0) {
+            sb.append('-');
+            cents = -cents;
+        }
+        long units = cents / 100;
+        int rest = (int) (cents % 100);
+        sb.append(units).append('.');
+        if (rest < 10) {
+            sb.append('0');
+        }
+        return sb.append(rest);
+    }
+
+    private static StringBuilder appendSlow(StringBuilder sb, double value) {
+        // Formatter rounds the shortest decimal form of the double, e.g. 1.005 -> "1.01"
+        BigDecimal rounded = new BigDecimal(Double.toString(value)).setScale(2, RoundingMode.HALF_UP);
+        if (rounded.signum() == 0 && Double.doubleToRawLongBits(value) < 0) {
+            sb.append('-');
+        }
+        return sb.append(rounded.toPlainString());
+    }
+
+    private static final class LocaleCheck {
+        private final Locale locale;
+        private final boolean plain;
+
+        private LocaleCheck(Locale locale, boolean plain) {
+            this.locale = locale;
+            this.plain = plain;
+        }
+    }
+}
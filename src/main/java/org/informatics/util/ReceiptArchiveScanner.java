@@ -0,0 +1,143 @@
+package org.informatics.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fast read path for bulk scans over receipt journal segments (e.g. audits of past months)
+ * Segment files are memory-mapped and walked with a {@link ReceiptCursor}, so totals can be
+ * computed without creating Receipt objects or copying record bytes
+ */
+public class ReceiptArchiveScanner {
+    private final List<MappedByteBuffer> segments;
+
+    private ReceiptArchiveScanner(List<MappedByteBuffer> segments) {
+        this.segments = segments;
+    }
+
+    /**
+     * Maps all segments of a journal (or archive) directory
+     */
+    public static ReceiptArchiveScanner open(Path journalDirectory) throws IOException {
+        return open(ReceiptJournal.listSegmentFiles(journalDirectory));
+    }
+
+    /**
+     * Maps the records of a journal from the given position to its current end
+     */
+    public static ReceiptArchiveScanner open(ReceiptJournal journal, ReceiptJournal.Position from)
+            throws IOException {
+        List<MappedByteBuffer> mapped = new ArrayList<>();
+        for (Path file : journal.getSegmentFiles()) {
+            int segmentId = ReceiptJournal.segmentId(file);
+            if (segmentId < from.getSegmentId()) {
+                continue;
+            }
+            long start = segmentId == from.getSegmentId() ? from.getOffset() : 0;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(0, channel.size() - start)));
+            }
+        }
+        return new ReceiptArchiveScanner(mapped);
+    }
+
+    /**
+     * Maps the given segment files
+     */
+    public static ReceiptArchiveScanner open(List<Path> segmentFiles) throws IOException {
+        List<MappedByteBuffer> mapped = new ArrayList<>(segmentFiles.size());
+        for (Path file : segmentFiles) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // The mapping stays valid after the channel is closed
+                mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+        return new ReceiptArchiveScanner(mapped);
+    }
+
+    /**
+     * Visits every receipt in order
+     *
+     * @return Number of visited receipts
+     */
+    public long scan(ReceiptVisitor visitor) throws IOException {
+        ReceiptCursor cursor = new ReceiptCursor();
+        long count = 0;
+        for (MappedByteBuffer segment : segments) {
+            count += scanSegment(segment, cursor, visitor);
+        }
+        return count;
+    }
+
+    /**
+     * Computes total revenue, revenue per cashier and sold quantity per product
+     * Segments are scanned in parallel and the partial results merged
+     */
+    public ReceiptScanSummary summarize() throws IOException {
+        try {
+            return segments.parallelStream()
+                    .map(segment -> {
+                        ReceiptScanSummary summary = new ReceiptScanSummary();
+                        try {
+                            scanSegment(segment, new ReceiptCursor(), summary::add);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return summary;
+                    })
+                    .reduce(ReceiptScanSummary::merge)
+                    .orElseGet(ReceiptScanSummary::new);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the number of mapped segment files
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    private static long scanSegment(MappedByteBuffer segment, ReceiptCursor cursor, ReceiptVisitor visitor)
+            throws IOException {
+        ByteBuffer records = segment.duplicate();
+        int size = records.capacity();
+        int position = 0;
+        long count = 0;
+
+        while (position + ReceiptJournal.RECORD_HEADER_SIZE <= size) {
+            int length = records.getInt(position);
+            int payloadStart = position + ReceiptJournal.RECORD_HEADER_SIZE;
+            if (length <= 0 || payloadStart + (long) length > size) {
+                // End of written data (possibly a torn record still being written)
+                break;
+            }
+
+            records.limit(payloadStart + length).position(payloadStart);
+            cursor.reset(records);
+            visitor.visit(cursor);
+            count++;
+
+            records.limit(size);
+            position = payloadStart + length;
+        }
+        return count;
+    }
+
+    /**
+     * Callback for each receipt of a scan
+     * The cursor is only valid during the call
+     */
+    @FunctionalInterface
+    public interface ReceiptVisitor {
+        void visit(ReceiptCursor cursor) throws IOException;
+    }
+}
@@ -0,0 +1,193 @@
+package org.informatics.util;
+
+import org.informatics.model.Receipt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Receipt totals (next number, count, revenue) covering the journal up to a position
+ * On startup the totals are read from the checkpoint file and only the records written after
+ * its position are replayed, so restart time does not grow with the number of receipts
+ *
+ * File layout (receipts.checkpoint, big-endian):
+ * [int magic][int version][int segment id][long offset][int next receipt number]
+ * [int receipt count][long revenue cents][int CRC32C of the previous fields]
+ * It is written to a temporary file and moved over the old one, so a crash leaves either
+ * the old or the new checkpoint
+ */
+public final class ReceiptCheckpoint {
+    public static final String FILE_NAME = "receipts.checkpoint";
+
+    private static final int MAGIC = 0x52435031; // "RCP1"
+    private static final int VERSION = 1;
+    private static final int SIZE = 40;
+
+    private final ReceiptJournal.Position position;
+    private final int nextReceiptNumber;
+    private final int receiptCount;
+    private final long revenueCents;
+    private final long replayedCount;
+
+    public ReceiptCheckpoint(ReceiptJournal.Position position, int nextReceiptNumber, int receiptCount,
+                             long revenueCents) {
+        this(position, nextReceiptNumber, receiptCount, revenueCents, 0);
+    }
+
+    private ReceiptCheckpoint(ReceiptJournal.Position position, int nextReceiptNumber, int receiptCount,
+                              long revenueCents, long replayedCount) {
+        this.position = position;
+        this.nextReceiptNumber = nextReceiptNumber;
+        this.receiptCount = receiptCount;
+        this.revenueCents = revenueCents;
+        this.replayedCount = replayedCount;
+    }
+
+    /**
+     * Rebuilds the totals of a journal from its checkpoint file and the records written after it
+     * Without a usable checkpoint the whole journal is replayed, together with the receipt_N.ser
+     * files of older versions (only this once, as the totals are then checkpointed)
+     *
+     * Receipts archived out of the journal stay counted: {@link ReceiptJournal#archive} only
+     * archives segments the checkpoint covers. If the checkpoint's own segment is gone anyway,
+     * its totals are kept and the journal is replayed from its first record
+     */
+    public static ReceiptCheckpoint recover(ReceiptJournal journal) throws IOException {
+        Path directory = journal.getDirectory();
+        ReceiptCheckpoint checkpoint = read(directory.resolve(FILE_NAME));
+        if (checkpoint != null && !journal.contains(checkpoint.position)) {
+            ReceiptJournal.Position start = journal.getStartPosition();
+            checkpoint = checkpoint.position.getSegmentId() < start.getSegmentId()
+                    ? new ReceiptCheckpoint(start, checkpoint.nextReceiptNumber, checkpoint.receiptCount,
+                    checkpoint.revenueCents)
+                    // Journal cut off before the checkpoint, its totals cannot be trusted
+                    : null;
+        }
+        if (checkpoint == null) {
+            checkpoint = readLegacyReceipts(directory, journal.getStartPosition());
+        }
+
+        long[] totals = {checkpoint.nextReceiptNumber, checkpoint.receiptCount, checkpoint.revenueCents};
+        long replayed = ReceiptArchiveScanner.open(journal, checkpoint.position).scan(cursor -> {
+            long receiptTotal = 0;
+            while (cursor.nextItem()) {
+                receiptTotal += cursor.getLineTotalCents();
+            }
+            totals[0] = Math.max(totals[0], cursor.getReceiptNumber() + 1L);
+            totals[1]++;
+            totals[2] += receiptTotal;
+        });
+        return new ReceiptCheckpoint(journal.getEndPosition(), (int) totals[0], (int) totals[1], totals[2],
+                replayed);
+    }
+
+    /**
+     * Reads a checkpoint file
+     *
+     * @return Checkpoint, or null if the file is missing, torn or from an unknown version
+     */
+    public static ReceiptCheckpoint read(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) != SIZE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getInt(SIZE - Integer.BYTES) != checksum(buffer)) {
+            return null;
+        }
+        return new ReceiptCheckpoint(new ReceiptJournal.Position(buffer.getInt(8), buffer.getLong(12)),
+                buffer.getInt(20), buffer.getInt(24), buffer.getLong(28));
+    }
+
+    /**
+     * Writes the checkpoint durably, replacing the previous one
+     * The journal must already be synced up to the checkpoint's position
+     */
+    public void write(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION)
+                .putInt(position.getSegmentId()).putLong(position.getOffset())
+                .putInt(nextReceiptNumber).putInt(receiptCount).putLong(revenueCents);
+        buffer.putInt(checksum(buffer));
+        buffer.flip();
+
+        Path tempPath = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tempPath, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public ReceiptJournal.Position getPosition() {
+        return position;
+    }
+
+    public int getNextReceiptNumber() {
+        return nextReceiptNumber;
+    }
+
+    public int getReceiptCount() {
+        return receiptCount;
+    }
+
+    public long getRevenueCents() {
+        return revenueCents;
+    }
+
+    /**
+     * Returns the number of journal records replayed by {@link #recover}, 0 for a checkpoint read from file
+     */
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiptCheckpoint{position=" + position +
+                ", nextReceiptNumber=" + nextReceiptNumber +
+                ", receiptCount=" + receiptCount +
+                ", revenueCents=" + revenueCents +
+                '}';
+    }
+
+    /**
+     * Totals of the receipt_N.ser files written by versions before the journal
+     */
+    private static ReceiptCheckpoint readLegacyReceipts(Path directory, ReceiptJournal.Position start)
+            throws IOException {
+        int nextNumber = 1;
+        int count = 0;
+        long revenueCents = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "receipt_*.ser")) {
+            for (Path file : stream) {
+                Receipt receipt;
+                try {
+                    receipt = (Receipt) SerializationUtil.deserialize(file.toString());
+                } catch (ClassNotFoundException | ClassCastException e) {
+                    throw new IOException("Cannot read legacy receipt " + file, e);
+                }
+                nextNumber = Math.max(nextNumber, receipt.getReceiptNumber() + 1);
+                count++;
+                revenueCents += receipt.getTotalAmountCents();
+            }
+        }
+        return new ReceiptCheckpoint(start, nextNumber, count, revenueCents);
+    }
+
+    private static int checksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, SIZE - Integer.BYTES);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,261 @@
+package org.informatics.util;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.Receipt;
+import org.informatics.model.ReceiptItem;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary format for receipts, used instead of Java serialization
+ *
+ * Layout (version 1), integers as varints, strings as varint byte length followed by UTF-8 bytes:
+ * [version][receipt number][issued at: epoch second (zigzag), nanos]
+ * [cashier id]
+ * [item count] then for every item: [product id][quantity][unit price in cents (zigzag)]
+ *
+ * Records hold only IDs, quantities and prices: cashier and product names are looked up in
+ * {@link ReceiptNames} when decoding, and the cashier's salary never goes to disk
+ *
+ * An encoder instance reuses its buffer and is meant for one thread (the receipt writer).
+ * Decoding is static
+ */
+public class ReceiptCodec {
+    public static final byte VERSION = 1;
+
+    private ByteBuffer buffer;
+
+    public ReceiptCodec() {
+        this.buffer = ByteBuffer.allocate(512);
+    }
+
+    /**
+     * Encodes a receipt into this codec's buffer
+     *
+     * @return Buffer ready for reading; valid until the next call to encode
+     */
+    public ByteBuffer encode(Receipt receipt) {
+        while (true) {
+            buffer.clear();
+            if (tryEncode(receipt, buffer)) {
+                buffer.flip();
+                return buffer;
+            }
+            buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        }
+    }
+
+    /**
+     * Encodes a receipt into a new byte array
+     */
+    public byte[] encodeToBytes(Receipt receipt) {
+        ByteBuffer encoded = encode(receipt);
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Decodes a receipt from the remaining bytes of the buffer, showing IDs in place of names
+     */
+    public static Receipt decode(ByteBuffer in) throws IOException {
+        return decode(in, ReceiptNames.NONE);
+    }
+
+    /**
+     * Decodes a receipt from the remaining bytes of the buffer, taking the names from a registry
+     */
+    public static Receipt decode(ByteBuffer in, ReceiptNames names) throws IOException {
+        try {
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported receipt format version " + version);
+            }
+
+            int receiptNumber = readVarInt(in);
+            long epochSecond = zigZagDecode(readVarLong(in));
+            int nanos = readVarInt(in);
+
+            String cashierId = readString(in);
+            Cashier cashier = names.findCashier(cashierId);
+            if (cashier == null) {
+                cashier = new Cashier(cashierId, cashierId, 0);
+            }
+
+            int itemCount = readVarInt(in);
+            List<ReceiptItem> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                String productId = readString(in);
+                String productName = names.findProductName(productId);
+                if (productName == null) {
+                    productName = productId;
+                }
+                int quantity = readVarInt(in);
+                long unitPriceCents = zigZagDecode(readVarLong(in));
+                items.add(ReceiptItem.ofCents(productId, productName, quantity, unitPriceCents));
+            }
+
+            return new Receipt.Builder()
+                    .receiptNumber(receiptNumber)
+                    .cashier(cashier)
+                    .issuedAt(LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC))
+                    .items(items)
+                    .build();
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted receipt data", e);
+        }
+    }
+
+    public static Receipt decode(byte[] bytes) throws IOException {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    public static Receipt decode(byte[] bytes, ReceiptNames names) throws IOException {
+        return decode(ByteBuffer.wrap(bytes), names);
+    }
+
+    // ==================== Encoding ====================
+
+    private static boolean tryEncode(Receipt receipt, ByteBuffer out) {
+        try {
+            out.put(VERSION);
+            writeVarInt(out, receipt.getReceiptNumber());
+            LocalDateTime issuedAt = receipt.getIssuedAt();
+            writeVarLong(out, zigZagEncode(issuedAt.toEpochSecond(ZoneOffset.UTC)));
+            writeVarInt(out, issuedAt.getNano());
+
+            writeString(out, receipt.getCashier().getId());
+
+            List<ReceiptItem> items = receipt.getItems();
+            writeVarInt(out, items.size());
+            for (int i = 0; i < items.size(); i++) {
+                ReceiptItem item = items.get(i);
+                writeString(out, item.getProductId());
+                writeVarInt(out, item.getQuantity());
+                writeVarLong(out, zigZagEncode(item.getUnitPriceCents()));
+            }
+            return true;
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+    }
+
+    static void writeVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Writes a string as UTF-8 without creating a temporary byte array
+     */
+    static void writeString(ByteBuffer out, String value) {
+        int length = value.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                utf8Length++;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else {
+                utf8Length += 3;
+            }
+        }
+
+        writeVarInt(out, utf8Length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xF0 | (codePoint >> 18)));
+                out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                // Unpaired surrogates are written as they are, like in modified UTF-8
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    // ==================== Decoding ====================
+
+    static int readVarInt(ByteBuffer in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static long readVarLong(ByteBuffer in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varlong");
+    }
+
+    static String readString(ByteBuffer in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new IOException("Malformed string length " + length);
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,165 @@
+package org.informatics.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Read-only view over one binary receipt record inside a mapped journal segment
+ * The same cursor object is moved from record to record, so a scan creates no receipt
+ * objects; item lines are visited with {@link #nextItem()}
+ *
+ * IDs are turned into strings through a small cache, so repeated cashier and product IDs
+ * do not allocate. A cursor belongs to one scanning thread
+ */
+public class ReceiptCursor {
+    private final StringCache strings;
+    private ByteBuffer buffer;
+
+    private int receiptNumber;
+    private long issuedAtEpochSecond;
+    private int cashierIdOffset;
+    private int cashierIdLength;
+    private int itemCount;
+    private int itemsOffset;
+
+    private int itemIndex;
+    private int productIdOffset;
+    private int productIdLength;
+    private int quantity;
+    private long unitPriceCents;
+
+    ReceiptCursor() {
+        this.strings = new StringCache();
+    }
+
+    /**
+     * Positions the cursor on a record stored between position and limit of the buffer
+     */
+    void reset(ByteBuffer record) throws IOException {
+        this.buffer = record;
+        byte version = buffer.get();
+        if (version != ReceiptCodec.VERSION) {
+            throw new IOException("Unsupported receipt format version " + version);
+        }
+        receiptNumber = ReceiptCodec.readVarInt(buffer);
+        issuedAtEpochSecond = ReceiptCodec.zigZagDecode(ReceiptCodec.readVarLong(buffer));
+        ReceiptCodec.readVarInt(buffer);
+
+        cashierIdLength = ReceiptCodec.readVarInt(buffer);
+        cashierIdOffset = buffer.position();
+        buffer.position(cashierIdOffset + cashierIdLength);
+
+        itemCount = ReceiptCodec.readVarInt(buffer);
+        itemsOffset = buffer.position();
+        itemIndex = -1;
+    }
+
+    public int getReceiptNumber() {
+        return receiptNumber;
+    }
+
+    public long getIssuedAtEpochSecond() {
+        return issuedAtEpochSecond;
+    }
+
+    public String getCashierId() {
+        return strings.get(buffer, cashierIdOffset, cashierIdLength);
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Moves to the next item line of the receipt
+     *
+     * @return false when there are no more items
+     */
+    public boolean nextItem() throws IOException {
+        if (itemIndex + 1 >= itemCount) {
+            return false;
+        }
+        if (itemIndex < 0) {
+            buffer.position(itemsOffset);
+        }
+        itemIndex++;
+
+        productIdLength = ReceiptCodec.readVarInt(buffer);
+        productIdOffset = buffer.position();
+        buffer.position(productIdOffset + productIdLength);
+        quantity = ReceiptCodec.readVarInt(buffer);
+        unitPriceCents = ReceiptCodec.zigZagDecode(ReceiptCodec.readVarLong(buffer));
+        return true;
+    }
+
+    public String getProductId() {
+        return strings.get(buffer, productIdOffset, productIdLength);
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getUnitPriceCents() {
+        return unitPriceCents;
+    }
+
+    public long getLineTotalCents() {
+        return unitPriceCents * quantity;
+    }
+
+    /**
+     * Small open-addressing cache from UTF-8 bytes to strings
+     */
+    private static class StringCache {
+        private static final int CAPACITY = 4096;
+
+        private final int[] hashes = new int[CAPACITY];
+        private final byte[][] keys = new byte[CAPACITY][];
+        private final String[] values = new String[CAPACITY];
+
+        String get(ByteBuffer buffer, int offset, int length) {
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + buffer.get(offset + i);
+            }
+
+            int slot = (hash ^ (hash >>> 16)) & (CAPACITY - 1);
+            for (int probe = 0; probe < 8; probe++) {
+                int index = (slot + probe) & (CAPACITY - 1);
+                byte[] key = keys[index];
+                if (key == null) {
+                    return store(index, hash, buffer, offset, length);
+                }
+                if (hashes[index] == hash && matches(key, buffer, offset, length)) {
+                    return values[index];
+                }
+            }
+            // Table region is full - replace the first slot
+            return store(slot, hash, buffer, offset, length);
+        }
+
+        private String store(int index, int hash, ByteBuffer buffer, int offset, int length) {
+            byte[] key = new byte[length];
+            buffer.get(offset, key);
+            String value = new String(key, StandardCharsets.UTF_8);
+            hashes[index] = hash;
+            keys[index] = key;
+            values[index] = value;
+            return value;
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buffer, int offset, int length) {
+            if (key.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (key[i] != buffer.get(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
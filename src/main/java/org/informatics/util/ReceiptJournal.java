@@ -0,0 +1,665 @@
+package org.informatics.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of receipt records split into rolling segment files
+ *
+ * Each segment (journal_NNNNNNNN.log) is a sequence of records:
+ * [int payload length][int receipt number][int CRC32C of number and payload][payload]
+ * When a segment is full it is sealed and an index file (journal_NNNNNNNN.idx) with
+ * sorted (receipt number, offset) pairs is written next to it, so a receipt is found
+ * with one index lookup and one positioned read
+ *
+ * A torn record at the end of the last segment (crash during a write) is cut off when
+ * the journal is opened. The journal is safe to use from several threads
+ */
+public class ReceiptJournal implements Closeable {
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    public static final int RECORD_HEADER_SIZE = 12;
+
+    private static final String SEGMENT_PREFIX = "journal_";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_HEADER_SIZE = 12;
+
+    private final Path directory;
+    private final long maxSegmentSize;
+    private final List<Segment> segments;
+    private final CRC32C crc;
+    private Segment active;
+    private FileChannel activeChannel;
+    private ByteBuffer writeBuffer;
+
+    private ReceiptJournal(Path directory, long maxSegmentSize) {
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        this.segments = new ArrayList<>();
+        this.crc = new CRC32C();
+        this.writeBuffer = ByteBuffer.allocateDirect(4096);
+    }
+
+    /**
+     * Opens (or creates) a journal in the given directory
+     *
+     * @param maxSegmentSize Size in bytes after which a new segment file is started
+     */
+    public static ReceiptJournal open(Path directory, long maxSegmentSize) throws IOException {
+        if (maxSegmentSize <= RECORD_HEADER_SIZE || maxSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between "
+                    + (RECORD_HEADER_SIZE + 1) + " and " + Integer.MAX_VALUE + " bytes");
+        }
+        Files.createDirectories(directory);
+
+        ReceiptJournal journal = new ReceiptJournal(directory, maxSegmentSize);
+        journal.load();
+        return journal;
+    }
+
+    public static ReceiptJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Appends a record; it is in the OS cache afterwards, call {@link #sync()} to force it to disk
+     */
+    public void append(int receiptNumber, byte[] payload) throws IOException {
+        append(receiptNumber, ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Appends the remaining bytes of the buffer as a record
+     */
+    public synchronized void append(int receiptNumber, ByteBuffer payload) throws IOException {
+        int payloadLength = payload.remaining();
+        int recordSize = RECORD_HEADER_SIZE + payloadLength;
+        if (active.size > 0 && active.size + recordSize > maxSegmentSize) {
+            roll();
+        }
+
+        if (writeBuffer.capacity() < recordSize) {
+            writeBuffer = ByteBuffer.allocateDirect(Math.max(recordSize, writeBuffer.capacity() * 2));
+        }
+        writeBuffer.clear();
+        writeBuffer.putInt(payloadLength);
+        writeBuffer.putInt(receiptNumber);
+        writeBuffer.putInt(checksum(receiptNumber, payload.duplicate()));
+        writeBuffer.put(payload);
+        writeBuffer.flip();
+
+        long offset = active.size;
+        while (writeBuffer.hasRemaining()) {
+            activeChannel.write(writeBuffer, offset + writeBuffer.position());
+        }
+        active.size += recordSize;
+        active.addEntry(receiptNumber, (int) offset);
+    }
+
+    /**
+     * Forces all appended records to disk
+     */
+    public synchronized void sync() throws IOException {
+        activeChannel.force(false);
+    }
+
+    /**
+     * Reads the payload of a receipt record
+     *
+     * @return Payload, or null if the journal has no record with this number
+     */
+    public synchronized byte[] read(int receiptNumber) throws IOException {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (receiptNumber < segment.minNumber || receiptNumber > segment.maxNumber) {
+                continue;
+            }
+            int offset = segment.find(receiptNumber);
+            if (offset >= 0) {
+                return readRecord(segment, offset, receiptNumber);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the journal has a record with this number
+     */
+    public synchronized boolean contains(int receiptNumber) throws IOException {
+        for (Segment segment : segments) {
+            if (receiptNumber >= segment.minNumber && receiptNumber <= segment.maxNumber
+                    && segment.find(receiptNumber) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of records in all segments
+     */
+    public synchronized long getRecordCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.count;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the segment files in order, oldest first
+     */
+    public synchronized List<Path> getSegmentFiles() {
+        List<Path> files = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            files.add(segment.path);
+        }
+        return files;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the position of the first record
+     */
+    public synchronized Position getStartPosition() {
+        return new Position(segments.get(0).id, 0);
+    }
+
+    /**
+     * Returns the position right after the last appended record
+     */
+    public synchronized Position getEndPosition() {
+        return new Position(active.id, active.size);
+    }
+
+    /**
+     * Checks if a position lies within the records of this journal
+     * (false e.g. when its segment was archived or the journal was cut off after a crash)
+     */
+    public synchronized boolean contains(Position position) {
+        for (Segment segment : segments) {
+            if (segment.id == position.getSegmentId()) {
+                return position.getOffset() >= 0 && position.getOffset() <= segment.size;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the numbers of all records, segment by segment (sorted within sealed segments,
+     * in append order within the active one)
+     */
+    public synchronized int[] getReceiptNumbers() throws IOException {
+        int[] numbers = new int[(int) getRecordCount()];
+        int count = 0;
+        for (Segment segment : segments) {
+            segment.ensureIndexLoaded();
+            System.arraycopy(segment.numbers, 0, numbers, count, segment.count);
+            count += segment.count;
+        }
+        return numbers;
+    }
+
+    /**
+     * Compacts and archives old receipts
+     * All sealed segments whose receipts are all below the given number are copied, record by
+     * record with checksums verified, into one new segment in the archive directory and then
+     * removed from this journal. The archive directory can itself be opened as a journal
+     *
+     * When the directory has a receipt checkpoint, only segments it fully covers are archived:
+     * the checkpoint then keeps their count and revenue, which a restart could no longer replay
+     *
+     * @return Number of archived records
+     */
+    public synchronized long archive(Path archiveDirectory, int beforeReceiptNumber) throws IOException {
+        ReceiptCheckpoint checkpoint = ReceiptCheckpoint.read(directory.resolve(ReceiptCheckpoint.FILE_NAME));
+        int checkpointSegmentId = checkpoint != null ? checkpoint.getPosition().getSegmentId() : Integer.MAX_VALUE;
+
+        List<Segment> archived = new ArrayList<>();
+        long archivedSize = 0;
+        for (Segment segment : segments) {
+            if (segment != active && segment.count > 0 && segment.maxNumber < beforeReceiptNumber
+                    && segment.id < checkpointSegmentId
+                    && archivedSize + segment.size <= Integer.MAX_VALUE) {
+                archived.add(segment);
+                archivedSize += segment.size;
+            }
+        }
+        if (archived.isEmpty()) {
+            return 0;
+        }
+
+        Files.createDirectories(archiveDirectory);
+        Path archivePath = archiveDirectory.resolve(segmentFileName(archived.get(0).id, SEGMENT_SUFFIX));
+        Path tempPath = archiveDirectory.resolve(archivePath.getFileName() + ".tmp");
+        Segment target = new Segment(archived.get(0).id, archivePath);
+
+        long copied = 0;
+        try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Segment segment : archived) {
+                segment.ensureIndexLoaded();
+                for (int i = 0; i < segment.count; i++) {
+                    int number = segment.numbers[i];
+                    byte[] payload = readRecord(segment, segment.offsets[i], number);
+                    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+                    record.putInt(payload.length).putInt(number)
+                            .putInt(checksum(number, payload, 0, payload.length)).put(payload).flip();
+                    target.addEntry(number, (int) target.size);
+                    while (record.hasRemaining()) {
+                        target.size += out.write(record);
+                    }
+                    copied++;
+                }
+            }
+            out.force(true);
+        }
+        Files.move(tempPath, archivePath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        target.writeIndex();
+
+        for (Segment segment : archived) {
+            segment.closeReadChannel();
+            Files.deleteIfExists(segment.indexPath());
+            Files.deleteIfExists(segment.path);
+            segments.remove(segment);
+        }
+        return copied;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.closeReadChannel();
+        }
+        if (activeChannel != null && activeChannel.isOpen()) {
+            activeChannel.force(false);
+            activeChannel.close();
+        }
+    }
+
+    // ==================== Opening ====================
+
+    /**
+     * Returns the journal segment files in a directory, oldest first
+     */
+    static List<Path> listSegmentFiles(Path directory) throws IOException {
+        List<Integer> ids = listSegmentIds(directory);
+        List<Path> files = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            files.add(directory.resolve(segmentFileName(id, SEGMENT_SUFFIX)));
+        }
+        return files;
+    }
+
+    private static List<Integer> listSegmentIds(Path directory) throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                ids.add(segmentId(path));
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    private void load() throws IOException {
+        List<Integer> ids = listSegmentIds(directory);
+
+        for (int i = 0; i < ids.size(); i++) {
+            Segment segment = new Segment(ids.get(i), directory.resolve(segmentFileName(ids.get(i), SEGMENT_SUFFIX)));
+            boolean last = i == ids.size() - 1;
+            if (!last && Files.exists(segment.indexPath())) {
+                segment.readIndexHeader();
+            } else {
+                scan(segment, last);
+                if (!last) {
+                    segment.writeIndex();
+                }
+            }
+            segments.add(segment);
+        }
+
+        if (segments.isEmpty()) {
+            segments.add(new Segment(1, directory.resolve(segmentFileName(1, SEGMENT_SUFFIX))));
+        }
+        active = segments.get(segments.size() - 1);
+        activeChannel = FileChannel.open(active.path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Reads all records of a segment and builds its index
+     * For the last segment, everything after the last valid record is truncated
+     */
+    private void scan(Segment segment, boolean truncateTail) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            int position = 0;
+            while (position + RECORD_HEADER_SIZE <= fileSize) {
+                int length = buffer.getInt(position);
+                int number = buffer.getInt(position + 4);
+                int storedCrc = buffer.getInt(position + 8);
+                if (length < 0 || position + RECORD_HEADER_SIZE + (long) length > fileSize) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(position + RECORD_HEADER_SIZE, payload);
+                if (checksum(number, payload, 0, length) != storedCrc) {
+                    break;
+                }
+                segment.addEntry(number, position);
+                position += RECORD_HEADER_SIZE + length;
+            }
+            segment.size = position;
+
+            if (position < fileSize) {
+                if (!truncateTail) {
+                    throw new IOException("Corrupted record at offset " + position + " in " + segment.path);
+                }
+                channel.truncate(position);
+                channel.force(true);
+            }
+        }
+    }
+
+    // ==================== Writing ====================
+
+    /**
+     * Seals the active segment and starts a new one
+     */
+    private void roll() throws IOException {
+        activeChannel.force(false);
+        activeChannel.close();
+        active.writeIndex();
+
+        Segment next = new Segment(active.id + 1, directory.resolve(segmentFileName(active.id + 1, SEGMENT_SUFFIX)));
+        segments.add(next);
+        active = next;
+        activeChannel = FileChannel.open(active.path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // ==================== Reading ====================
+
+    private byte[] readRecord(Segment segment, int offset, int expectedNumber) throws IOException {
+        if (segment == active) {
+            return readRecord(activeChannel, segment, offset, expectedNumber);
+        }
+        if (segment.readChannel == null) {
+            segment.readChannel = FileChannel.open(segment.path, StandardOpenOption.READ);
+        }
+        return readRecord(segment.readChannel, segment, offset, expectedNumber);
+    }
+
+    private byte[] readRecord(FileChannel channel, Segment segment, int offset, int expectedNumber)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(channel, header, offset);
+        int length = header.getInt(0);
+        int number = header.getInt(4);
+        int storedCrc = header.getInt(8);
+
+        if (number != expectedNumber || length < 0) {
+            throw new IOException("Index of " + segment.path + " points to a wrong record at offset " + offset);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, offset + RECORD_HEADER_SIZE);
+        if (checksum(number, payload.array(), 0, length) != storedCrc) {
+            throw new IOException("Checksum mismatch for receipt #" + number + " in " + segment.path);
+        }
+        return payload.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal segment");
+            }
+        }
+    }
+
+    // ==================== Helpers ====================
+
+    private int checksum(int receiptNumber, byte[] payload, int offset, int length) {
+        return checksum(receiptNumber, ByteBuffer.wrap(payload, offset, length));
+    }
+
+    private int checksum(int receiptNumber, ByteBuffer payload) {
+        crc.reset();
+        crc.update(receiptNumber >>> 24);
+        crc.update(receiptNumber >>> 16);
+        crc.update(receiptNumber >>> 8);
+        crc.update(receiptNumber);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static String segmentFileName(int id, String suffix) {
+        return String.format("%s%08d%s", SEGMENT_PREFIX, id, suffix);
+    }
+
+    static int segmentId(Path path) {
+        String fileName = path.getFileName().toString();
+        return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(),
+                fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Location in the journal: a segment and a byte offset in it, always at a record boundary
+     */
+    public static final class Position {
+        private final int segmentId;
+        private final long offset;
+
+        public Position(int segmentId, long offset) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+        }
+
+        public int getSegmentId() {
+            return segmentId;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Position)) {
+                return false;
+            }
+            Position other = (Position) o;
+            return segmentId == other.segmentId && offset == other.offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * segmentId + Long.hashCode(offset);
+        }
+
+        @Override
+        public String toString() {
+            return segmentFileName(segmentId, SEGMENT_SUFFIX) + "@" + offset;
+        }
+    }
+
+    /**
+     * One segment file and its (receipt number to offset) index
+     * Sealed segments keep their index sorted by number and load it only when first needed;
+     * the active segment also keeps its offsets by receipt number, because its records arrive
+     * in any order but (numbers being sequential) cover an almost gapless range
+     */
+    private static class Segment {
+        private final int id;
+        private final Path path;
+        private long size;
+        private int count;
+        private int minNumber = Integer.MAX_VALUE;
+        private int maxNumber = Integer.MIN_VALUE;
+        private int[] numbers = new int[64];
+        private int[] offsets = new int[64];
+        // Active segment only: offset of receipt minNumber + i at index i, -1 for a missing number
+        private int[] offsetsByNumber = newOffsetsByNumber(64);
+        private FileChannel readChannel;
+
+        Segment(int id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+
+        Path indexPath() {
+            return path.resolveSibling(segmentFileName(id, INDEX_SUFFIX));
+        }
+
+        void addEntry(int number, int offset) {
+            if (count == numbers.length) {
+                numbers = Arrays.copyOf(numbers, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            numbers[count] = number;
+            offsets[count] = offset;
+            count++;
+            if (offsetsByNumber != null) {
+                putOffsetByNumber(number, offset);
+            }
+            minNumber = Math.min(minNumber, number);
+            maxNumber = Math.max(maxNumber, number);
+        }
+
+        int find(int number) throws IOException {
+            if (offsetsByNumber != null) {
+                long index = (long) number - minNumber;
+                return index >= 0 && index < offsetsByNumber.length ? offsetsByNumber[(int) index] : -1;
+            }
+            ensureIndexLoaded();
+            int index = Arrays.binarySearch(numbers, 0, count, number);
+            return index >= 0 ? offsets[index] : -1;
+        }
+
+        /**
+         * Sorts the index by receipt number and writes it to the index file
+         */
+        void writeIndex() throws IOException {
+            sortEntries();
+            ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_SIZE + count * 8);
+            buffer.putInt(count).putInt(minNumber).putInt(maxNumber);
+            for (int i = 0; i < count; i++) {
+                buffer.putInt(numbers[i]).putInt(offsets[i]);
+            }
+            buffer.flip();
+
+            Path tempPath = indexPath().resolveSibling(indexPath().getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tempPath, indexPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            offsetsByNumber = null;
+        }
+
+        void readIndexHeader() throws IOException {
+            try (FileChannel channel = FileChannel.open(indexPath(), StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+                readFully(channel, header, 0);
+                count = header.getInt(0);
+                minNumber = header.getInt(4);
+                maxNumber = header.getInt(8);
+            }
+            size = Files.size(path);
+            numbers = null;
+            offsets = null;
+            offsetsByNumber = null;
+        }
+
+        void ensureIndexLoaded() throws IOException {
+            if (numbers != null) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(indexPath(), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                readFully(channel, buffer, 0);
+                int[] loadedNumbers = new int[count];
+                int[] loadedOffsets = new int[count];
+                for (int i = 0; i < count; i++) {
+                    loadedNumbers[i] = buffer.getInt(INDEX_HEADER_SIZE + i * 8);
+                    loadedOffsets[i] = buffer.getInt(INDEX_HEADER_SIZE + i * 8 + 4);
+                }
+                offsets = loadedOffsets;
+                numbers = loadedNumbers;
+            }
+        }
+
+        void closeReadChannel() throws IOException {
+            if (readChannel != null) {
+                readChannel.close();
+                readChannel = null;
+            }
+        }
+
+        /**
+         * Stores the offset at its number's index; called before minNumber and maxNumber take the number in
+         */
+        private void putOffsetByNumber(int number, int offset) {
+            if (count == 1) {
+                offsetsByNumber[0] = offset;
+                return;
+            }
+            int low = Math.min(minNumber, number);
+            int length = Math.toIntExact((long) Math.max(maxNumber, number) - low + 1);
+            if (low < minNumber || length > offsetsByNumber.length) {
+                // A number below the range moves the entries up by the difference
+                int[] grown = newOffsetsByNumber(Math.max(length, offsetsByNumber.length * 2));
+                System.arraycopy(offsetsByNumber, 0, grown, minNumber - low, maxNumber - minNumber + 1);
+                offsetsByNumber = grown;
+            }
+            offsetsByNumber[number - low] = offset;
+        }
+
+        private static int[] newOffsetsByNumber(int length) {
+            int[] array = new int[length];
+            Arrays.fill(array, -1);
+            return array;
+        }
+
+        private void sortEntries() {
+            // Records are appended nearly in number order, so insertion sort is close to linear
+            for (int i = 1; i < count; i++) {
+                int number = numbers[i];
+                int offset = offsets[i];
+                int j = i - 1;
+                while (j >= 0 && numbers[j] > number) {
+                    numbers[j + 1] = numbers[j];
+                    offsets[j + 1] = offsets[j];
+                    j--;
+                }
+                numbers[j + 1] = number;
+                offsets[j + 1] = offset;
+            }
+        }
+    }
+}
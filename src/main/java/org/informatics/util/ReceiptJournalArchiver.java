@@ -0,0 +1,36 @@
+package org.informatics.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command line tool for compacting old receipt journal segments into an archive
+ *
+ * Usage: ReceiptJournalArchiver &lt;journal directory&gt; &lt;archive directory&gt; &lt;before receipt number&gt;
+ */
+public class ReceiptJournalArchiver {
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: ReceiptJournalArchiver <journal directory> <archive directory> "
+                    + "<before receipt number>");
+            System.exit(1);
+        }
+
+        Path journalDirectory = Paths.get(args[0]);
+        Path archiveDirectory = Paths.get(args[1]);
+        int beforeReceiptNumber = Integer.parseInt(args[2]);
+
+        try (ReceiptJournal journal = ReceiptJournal.open(journalDirectory)) {
+            // Checkpoint the totals first, so the archived receipts stay counted after a restart
+            ReceiptCheckpoint.recover(journal).write(journalDirectory.resolve(ReceiptCheckpoint.FILE_NAME));
+            long archived = journal.archive(archiveDirectory, beforeReceiptNumber);
+            System.out.println("Archived " + archived + " receipts to " + archiveDirectory);
+            System.out.println("Receipts left in journal: " + journal.getRecordCount());
+        } catch (IOException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+}
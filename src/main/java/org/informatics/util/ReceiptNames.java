@@ -0,0 +1,58 @@
+package org.informatics.util;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.Product;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Looks up the cashiers and product names that binary receipt records leave out
+ * (records only hold IDs, see {@link ReceiptCodec}); unknown IDs return null
+ */
+public interface ReceiptNames {
+    /**
+     * Knows no names: decoded receipts show the IDs instead
+     */
+    ReceiptNames NONE = new ReceiptNames() {
+        @Override
+        public Cashier findCashier(String cashierId) {
+            return null;
+        }
+
+        @Override
+        public String findProductName(String productId) {
+            return null;
+        }
+    };
+
+    Cashier findCashier(String cashierId);
+
+    String findProductName(String productId);
+
+    /**
+     * Returns fixed names of the given cashiers and products
+     */
+    static ReceiptNames of(Collection<Cashier> cashiers, Collection<? extends Product> products) {
+        Map<String, Cashier> cashiersById = new HashMap<>();
+        for (Cashier cashier : cashiers) {
+            cashiersById.put(cashier.getId(), cashier);
+        }
+        Map<String, String> productNames = new HashMap<>();
+        for (Product product : products) {
+            productNames.put(product.getId(), product.getName());
+        }
+        return new ReceiptNames() {
+            @Override
+            public Cashier findCashier(String cashierId) {
+                return cashiersById.get(cashierId);
+            }
+
+            @Override
+            public String findProductName(String productId) {
+                return productNames.get(productId);
+            }
+        };
+    }
+}
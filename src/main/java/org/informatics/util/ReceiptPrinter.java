@@ -0,0 +1,71 @@
+package org.informatics.util;
+
+import org.informatics.model.Receipt;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Prints receipts to a stream without building a String for each receipt
+ * Every thread renders into its own reusable text and byte buffers
+ */
+public final class ReceiptPrinter {
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private ReceiptPrinter() {
+    }
+
+    /**
+     * Prints the receipt followed by a line separator, like println(receipt.format())
+     * The receipt is written in one piece, so receipts of different threads do not mix
+     */
+    public static void println(Receipt receipt, PrintStream out) {
+        Buffers buffers = BUFFERS.get();
+        StringBuilder text = buffers.text;
+        text.setLength(0);
+        receipt.formatTo(text).append(System.lineSeparator());
+
+        CharsetEncoder encoder = buffers.encoderFor(out);
+        CharBuffer chars = CharBuffer.wrap(text);
+        ByteBuffer bytes = buffers.bytes;
+        synchronized (out) {
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, true);
+                if (result.isOverflow()) {
+                    writeTo(out, bytes);
+                    continue;
+                }
+                encoder.flush(bytes);
+                writeTo(out, bytes);
+                break;
+            }
+            out.flush();
+        }
+        encoder.reset();
+    }
+
+    private static void writeTo(PrintStream out, ByteBuffer bytes) {
+        bytes.flip();
+        out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        bytes.clear();
+    }
+
+    private static final class Buffers {
+        private final StringBuilder text = new StringBuilder(1024);
+        private final ByteBuffer bytes = ByteBuffer.allocate(4096);
+        private CharsetEncoder encoder;
+
+        private CharsetEncoder encoderFor(PrintStream out) {
+            if (encoder == null || !encoder.charset().equals(out.charset())) {
+                encoder = out.charset().newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            return encoder;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.informatics.util;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Totals collected by scanning a receipt archive
+ */
+public class ReceiptScanSummary {
+    private long receiptCount;
+    private long itemLineCount;
+    private long totalRevenueCents;
+    private final Map<String, long[]> revenueCentsByCashier;
+    private final Map<String, long[]> quantityByProduct;
+
+    ReceiptScanSummary() {
+        this.revenueCentsByCashier = new HashMap<>();
+        this.quantityByProduct = new HashMap<>();
+    }
+
+    /**
+     * Adds one receipt; moves the cursor over all of its items
+     */
+    void add(ReceiptCursor cursor) throws IOException {
+        long receiptTotal = 0;
+        while (cursor.nextItem()) {
+            receiptTotal += cursor.getLineTotalCents();
+            quantityByProduct.computeIfAbsent(cursor.getProductId(), id -> new long[1])[0] += cursor.getQuantity();
+            itemLineCount++;
+        }
+        revenueCentsByCashier.computeIfAbsent(cursor.getCashierId(), id -> new long[1])[0] += receiptTotal;
+        totalRevenueCents += receiptTotal;
+        receiptCount++;
+    }
+
+    ReceiptScanSummary merge(ReceiptScanSummary other) {
+        receiptCount += other.receiptCount;
+        itemLineCount += other.itemLineCount;
+        totalRevenueCents += other.totalRevenueCents;
+        other.revenueCentsByCashier.forEach((id, sum) ->
+                revenueCentsByCashier.computeIfAbsent(id, key -> new long[1])[0] += sum[0]);
+        other.quantityByProduct.forEach((id, sum) ->
+                quantityByProduct.computeIfAbsent(id, key -> new long[1])[0] += sum[0]);
+        return this;
+    }
+
+    public long getReceiptCount() {
+        return receiptCount;
+    }
+
+    public long getItemLineCount() {
+        return itemLineCount;
+    }
+
+    public double getTotalRevenue() {
+        return Money.toUnits(totalRevenueCents);
+    }
+
+    public long getTotalRevenueCents() {
+        return totalRevenueCents;
+    }
+
+    /**
+     * Returns revenue per cashier ID
+     */
+    public Map<String, Double> getRevenueByCashier() {
+        Map<String, Double> result = new HashMap<>();
+        revenueCentsByCashier.forEach((id, sum) -> result.put(id, Money.toUnits(sum[0])));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns sold quantity per product ID
+     */
+    public Map<String, Long> getQuantityByProduct() {
+        Map<String, Long> result = new HashMap<>();
+        quantityByProduct.forEach((id, sum) -> result.put(id, sum[0]));
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiptScanSummary{" +
+                "receiptCount=" + receiptCount +
+                ", itemLineCount=" + itemLineCount +
+                ", totalRevenue=" + getTotalRevenue() +
+                ", cashiers=" + revenueCentsByCashier.size() +
+                ", products=" + quantityByProduct.size() +
+                '}';
+    }
+}
@@ -1,5 +1,7 @@
 package org.informatics.util;
 
+import org.informatics.jfr.FileWriteEvent;
+
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -15,12 +17,21 @@ public class SerializationUtil {
      */
     public static void serialize(Object obj, String filePath) throws IOException {
         // Create directory if it doesn't exist
+        FileWriteEvent event = new FileWriteEvent();
+        event.begin();
         Path path = Paths.get(filePath);
         Files.createDirectories(path.getParent());
 
         try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
             oos.writeObject(obj);
         }
+
+        if (event.shouldCommit()) {
+            event.path = filePath;
+            event.bytesWritten = Files.size(path);
+            event.objectType = obj != null ? obj.getClass().getName() : null;
+            event.commit();
+        }
     }
 
     /**
@@ -0,0 +1,205 @@
+package org.informatics.util;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.FoodProduct;
+import org.informatics.model.NonFoodProduct;
+import org.informatics.model.Product;
+import org.informatics.model.ProductCategory;
+import org.informatics.model.Receipt;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * Binary records of store state changes, as written to the {@link StateLog}
+ * Each record is [byte type][fields]; strings and numbers use the same encoding as {@link ReceiptCodec}
+ * A snapshot is a sequence of the same records ([int length][record] each) that rebuilds the state
+ *
+ * A sale is one RECEIPT_ISSUED record holding the whole receipt: replaying it takes the sold
+ * quantities from stock, so a sale is never half logged
+ */
+public final class StateCodec {
+    static final byte PRODUCT_ADDED = 1;
+    static final byte RESTOCKED = 2;
+    static final byte CASHIER_ADDED = 3;
+    static final byte RECEIPT_ISSUED = 4;
+    static final byte PRICING_RULES_CHANGED = 5;
+
+    private static final ProductCategory[] CATEGORIES = ProductCategory.values();
+
+    private StateCodec() {
+    }
+
+    // ==================== Encoding ====================
+
+    public static ByteBuffer productAdded(Product product) {
+        return productAdded(product, product.getQuantityInStock());
+    }
+
+    /**
+     * Encodes a product with the given quantity in stock (e.g. read at the moment of a snapshot)
+     */
+    public static ByteBuffer productAdded(Product product, int quantityInStock) {
+        ByteBuffer out = allocate(product.getId(), product.getName());
+        out.put(PRODUCT_ADDED);
+        out.put((byte) product.getCategory().ordinal());
+        ReceiptCodec.writeString(out, product.getId());
+        ReceiptCodec.writeString(out, product.getName());
+        ReceiptCodec.writeVarLong(out, ReceiptCodec.zigZagEncode(product.getPurchasePriceCents()));
+        ReceiptCodec.writeVarLong(out, ReceiptCodec.zigZagEncode(product.getExpirationDate().toEpochDay()));
+        ReceiptCodec.writeVarInt(out, quantityInStock);
+        out.putDouble(markupPercentage(product));
+        return out.flip();
+    }
+
+    public static ByteBuffer restocked(String productId, int quantity) {
+        ByteBuffer out = allocate(productId, "");
+        out.put(RESTOCKED);
+        ReceiptCodec.writeString(out, productId);
+        ReceiptCodec.writeVarInt(out, quantity);
+        return out.flip();
+    }
+
+    public static ByteBuffer cashierAdded(Cashier cashier) {
+        ByteBuffer out = allocate(cashier.getId(), cashier.getName());
+        out.put(CASHIER_ADDED);
+        ReceiptCodec.writeString(out, cashier.getId());
+        ReceiptCodec.writeString(out, cashier.getName());
+        out.putDouble(cashier.getMonthlySalary());
+        return out.flip();
+    }
+
+    public static ByteBuffer receiptIssued(Receipt receipt) {
+        ByteBuffer encoded = new ReceiptCodec().encode(receipt);
+        ByteBuffer out = ByteBuffer.allocate(1 + encoded.remaining());
+        out.put(RECEIPT_ISSUED).put(encoded);
+        return out.flip();
+    }
+
+    public static ByteBuffer pricingRulesChanged(int expirationThresholdDays, double expirationDiscountPercentage) {
+        ByteBuffer out = ByteBuffer.allocate(1 + 5 + Double.BYTES);
+        out.put(PRICING_RULES_CHANGED);
+        ReceiptCodec.writeVarInt(out, expirationThresholdDays);
+        out.putDouble(expirationDiscountPercentage);
+        return out.flip();
+    }
+
+    /**
+     * Appends a record to a snapshot buffer, growing it when needed
+     *
+     * @return The buffer to continue with
+     */
+    public static ByteBuffer appendToSnapshot(ByteBuffer snapshot, ByteBuffer record) {
+        int needed = Integer.BYTES + record.remaining();
+        if (snapshot.remaining() < needed) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(snapshot.capacity() * 2, snapshot.position() + needed));
+            snapshot.flip();
+            grown.put(snapshot);
+            snapshot = grown;
+        }
+        snapshot.putInt(record.remaining()).put(record);
+        return snapshot;
+    }
+
+    // ==================== Decoding ====================
+
+    /**
+     * Decodes one record and passes it to the visitor
+     */
+    public static void decode(ByteBuffer record, StateVisitor visitor) throws IOException {
+        decode(record, visitor, ReceiptNames.NONE);
+    }
+
+    /**
+     * @param names Names for the cashier and products of logged receipts (stored as IDs only)
+     */
+    public static void decode(ByteBuffer record, StateVisitor visitor, ReceiptNames names) throws IOException {
+        try {
+            byte type = record.get();
+            switch (type) {
+                case PRODUCT_ADDED -> visitor.productAdded(decodeProduct(record));
+                case RESTOCKED -> visitor.restocked(ReceiptCodec.readString(record), ReceiptCodec.readVarInt(record));
+                case CASHIER_ADDED -> visitor.cashierAdded(new Cashier(ReceiptCodec.readString(record),
+                        ReceiptCodec.readString(record), record.getDouble()));
+                case RECEIPT_ISSUED -> visitor.receiptIssued(ReceiptCodec.decode(record, names));
+                case PRICING_RULES_CHANGED -> visitor.pricingRulesChanged(ReceiptCodec.readVarInt(record),
+                        record.getDouble());
+                default -> throw new IOException("Unknown state record type " + type);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated state record", e);
+        }
+    }
+
+    /**
+     * Decodes all records of a snapshot
+     *
+     * @return Number of records
+     */
+    public static long decodeSnapshot(ByteBuffer snapshot, StateVisitor visitor) throws IOException {
+        ByteBuffer records = snapshot.duplicate();
+        long count = 0;
+        while (records.hasRemaining()) {
+            if (records.remaining() < Integer.BYTES) {
+                throw new IOException("Truncated snapshot record");
+            }
+            int length = records.getInt();
+            if (length < 0 || length > records.remaining()) {
+                throw new IOException("Truncated snapshot record");
+            }
+            decode(records.slice(records.position(), length), visitor);
+            records.position(records.position() + length);
+            count++;
+        }
+        return count;
+    }
+
+    private static Product decodeProduct(ByteBuffer in) throws IOException {
+        int categoryIndex = in.get();
+        if (categoryIndex < 0 || categoryIndex >= CATEGORIES.length) {
+            throw new IOException("Unknown product category " + categoryIndex);
+        }
+        String id = ReceiptCodec.readString(in);
+        String name = ReceiptCodec.readString(in);
+        double purchasePrice = Money.toUnits(ReceiptCodec.zigZagDecode(ReceiptCodec.readVarLong(in)));
+        LocalDate expirationDate = LocalDate.ofEpochDay(ReceiptCodec.zigZagDecode(ReceiptCodec.readVarLong(in)));
+        int quantity = ReceiptCodec.readVarInt(in);
+        double markupPercentage = in.getDouble();
+        return CATEGORIES[categoryIndex] == ProductCategory.FOOD
+                ? new FoodProduct(id, name, purchasePrice, expirationDate, quantity, markupPercentage)
+                : new NonFoodProduct(id, name, purchasePrice, expirationDate, quantity, markupPercentage);
+    }
+
+    private static double markupPercentage(Product product) {
+        if (product instanceof FoodProduct) {
+            return ((FoodProduct) product).getMarkupPercentage();
+        }
+        if (product instanceof NonFoodProduct) {
+            return ((NonFoodProduct) product).getMarkupPercentage();
+        }
+        throw new IllegalArgumentException("Unsupported product type " + product.getClass().getName());
+    }
+
+    private static ByteBuffer allocate(String first, String second) {
+        // Strings take at most 3 bytes per char plus their length
+        return ByteBuffer.allocate(64 + 3 * (first.length() + second.length()));
+    }
+
+    /**
+     * Receives decoded state records
+     */
+    public interface StateVisitor {
+        void productAdded(Product product) throws IOException;
+
+        void restocked(String productId, int quantity) throws IOException;
+
+        void cashierAdded(Cashier cashier) throws IOException;
+
+        void receiptIssued(Receipt receipt) throws IOException;
+
+        void pricingRulesChanged(int expirationThresholdDays, double expirationDiscountPercentage)
+                throws IOException;
+    }
+}
@@ -0,0 +1,340 @@
+package org.informatics.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log of store state changes with snapshots, in numbered generations
+ *
+ * state_NNNNNNNN.log holds the records of generation N: [int payload length][int CRC32C][payload]
+ * state_NNNNNNNN.snapshot holds the whole state at the start of generation N:
+ * [int magic][int version][int generation][int payload length][payload][int CRC32C of the payload]
+ * The state is the latest snapshot followed by the log records of its generation and all later ones
+ *
+ * Every open starts a new generation, so old log files are never appended to; a torn record at
+ * the end of the newest log (crash during a write) is cut off when the log is opened.
+ * Appended records are buffered until {@link #flush} or {@link #sync}
+ */
+public class StateLog implements Closeable {
+    public static final int RECORD_HEADER_SIZE = 8;
+
+    private static final String FILE_PREFIX = "state_";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final int SNAPSHOT_MAGIC = 0x53544E31; // "STN1"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 16;
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+
+    private final Path directory;
+    private final CRC32C crc;
+    private final int snapshotGeneration;
+    private final List<Integer> replayGenerations;
+    private int generation;
+    private FileChannel channel;
+    private ByteBuffer writeBuffer;
+    private long recordsSinceSnapshot;
+
+    private StateLog(Path directory, int snapshotGeneration, List<Integer> replayGenerations, int generation)
+            throws IOException {
+        this.directory = directory;
+        this.crc = new CRC32C();
+        this.snapshotGeneration = snapshotGeneration;
+        this.replayGenerations = replayGenerations;
+        this.generation = generation;
+        this.channel = openLogFile(generation);
+        this.writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens (or creates) a state log in the given directory and starts a new generation
+     */
+    public static StateLog open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        List<Integer> logs = listGenerations(directory, LOG_SUFFIX);
+        List<Integer> snapshots = listGenerations(directory, SNAPSHOT_SUFFIX);
+        // The newest snapshot that was completely written
+        int snapshotGeneration = 0;
+        for (int i = snapshots.size() - 1; i >= 0 && snapshotGeneration == 0; i--) {
+            if (readSnapshotFile(directory.resolve(fileName(snapshots.get(i), SNAPSHOT_SUFFIX))) != null) {
+                snapshotGeneration = snapshots.get(i);
+            }
+        }
+
+        List<Integer> replay = new ArrayList<>();
+        for (int logGeneration : logs) {
+            if (logGeneration >= snapshotGeneration) {
+                replay.add(logGeneration);
+            }
+        }
+        if (!replay.isEmpty()) {
+            truncateTornTail(directory.resolve(fileName(replay.get(replay.size() - 1), LOG_SUFFIX)));
+        }
+
+        int last = Math.max(snapshotGeneration, logs.isEmpty() ? 0 : logs.get(logs.size() - 1));
+        return new StateLog(directory, snapshotGeneration, replay, last + 1);
+    }
+
+    /**
+     * Returns the payload of the snapshot the state starts from, or null if there is none
+     */
+    public ByteBuffer readSnapshot() throws IOException {
+        if (snapshotGeneration == 0) {
+            return null;
+        }
+        return readSnapshotFile(directory.resolve(fileName(snapshotGeneration, SNAPSHOT_SUFFIX)));
+    }
+
+    /**
+     * Visits the log records written after the snapshot, oldest first
+     *
+     * @return Number of visited records
+     */
+    public long replay(RecordVisitor visitor) throws IOException {
+        long count = 0;
+        for (int replayGeneration : replayGenerations) {
+            Path file = directory.resolve(fileName(replayGeneration, LOG_SUFFIX));
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer records = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                int position = 0;
+                while (position < records.capacity()) {
+                    int length = recordLength(records, position);
+                    if (length < 0) {
+                        throw new IOException("Corrupted record at offset " + position + " in " + file);
+                    }
+                    ByteBuffer payload = records.slice(position + RECORD_HEADER_SIZE, length);
+                    visitor.visit(payload);
+                    position += RECORD_HEADER_SIZE + length;
+                    count++;
+                }
+            }
+        }
+        recordsSinceSnapshot = count;
+        return count;
+    }
+
+    /**
+     * Appends a record to the current generation
+     */
+    public synchronized void append(ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        if (writeBuffer.remaining() < RECORD_HEADER_SIZE + length) {
+            flush();
+            if (writeBuffer.capacity() < RECORD_HEADER_SIZE + length) {
+                writeBuffer = ByteBuffer.allocateDirect(RECORD_HEADER_SIZE + length);
+            }
+        }
+        writeBuffer.putInt(length).putInt(checksum(payload.duplicate())).put(payload);
+        recordsSinceSnapshot++;
+    }
+
+    /**
+     * Writes the buffered records to the operating system
+     */
+    public synchronized void flush() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    /**
+     * Writes the buffered records and forces them to disk
+     */
+    public synchronized void sync() throws IOException {
+        flush();
+        channel.force(false);
+    }
+
+    /**
+     * Ends the current generation (synced to disk) and starts the next one
+     *
+     * @return Number of the new generation
+     */
+    public synchronized int roll() throws IOException {
+        sync();
+        channel.close();
+        generation++;
+        channel = openLogFile(generation);
+        recordsSinceSnapshot = 0;
+        return generation;
+    }
+
+    /**
+     * Stores the state at the start of a generation, then deletes the older snapshots and logs
+     * The logs of that generation and later ones are kept, as they follow the snapshot
+     */
+    public void writeSnapshot(int snapshotGeneration, ByteBuffer payload) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE);
+        header.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(snapshotGeneration)
+                .putInt(payload.remaining()).flip();
+        CRC32C snapshotCrc = new CRC32C();
+        snapshotCrc.update(payload.duplicate());
+        ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES).putInt((int) snapshotCrc.getValue()).flip();
+
+        Path file = directory.resolve(fileName(snapshotGeneration, SNAPSHOT_SUFFIX));
+        Path tempPath = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] parts = {header, payload.duplicate(), trailer};
+            while (trailer.hasRemaining()) {
+                out.write(parts);
+            }
+            out.force(true);
+        }
+        Files.move(tempPath, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (int old : listGenerations(directory, SNAPSHOT_SUFFIX)) {
+            if (old < snapshotGeneration) {
+                Files.deleteIfExists(directory.resolve(fileName(old, SNAPSHOT_SUFFIX)));
+            }
+        }
+        for (int old : listGenerations(directory, LOG_SUFFIX)) {
+            if (old < snapshotGeneration) {
+                Files.deleteIfExists(directory.resolve(fileName(old, LOG_SUFFIX)));
+            }
+        }
+    }
+
+    /**
+     * Returns the generation records are appended to
+     */
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the generation of the snapshot the state was loaded from, 0 if there was none
+     */
+    public int getSnapshotGeneration() {
+        return snapshotGeneration;
+    }
+
+    /**
+     * Returns the number of records replayed or appended since the last snapshot
+     */
+    public synchronized long getRecordsSinceSnapshot() {
+        return recordsSinceSnapshot;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            try {
+                sync();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // ==================== Helpers ====================
+
+    private FileChannel openLogFile(int logGeneration) throws IOException {
+        return FileChannel.open(directory.resolve(fileName(logGeneration, LOG_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Returns the payload length of a valid record at the position, or -1 if it is torn or corrupted
+     */
+    private static int recordLength(ByteBuffer records, int position) {
+        if (position + RECORD_HEADER_SIZE > records.capacity()) {
+            return -1;
+        }
+        int length = records.getInt(position);
+        if (length < 0 || position + RECORD_HEADER_SIZE + (long) length > records.capacity()) {
+            return -1;
+        }
+        CRC32C recordCrc = new CRC32C();
+        recordCrc.update(records.slice(position + RECORD_HEADER_SIZE, length));
+        return (int) recordCrc.getValue() == records.getInt(position + 4) ? length : -1;
+    }
+
+    private static void truncateTornTail(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int position = 0;
+            int length;
+            while (position < records.capacity() && (length = recordLength(records, position)) >= 0) {
+                position += RECORD_HEADER_SIZE + length;
+            }
+            if (position < channel.size()) {
+                channel.truncate(position);
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot file, or returns null if it is incomplete or corrupted
+     */
+    private static ByteBuffer readSnapshotFile(Path file) throws IOException {
+        long size = Files.size(file);
+        if (size < SNAPSHOT_HEADER_SIZE + Integer.BYTES) {
+            return null;
+        }
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(file));
+        int length = content.getInt(12);
+        if (content.getInt(0) != SNAPSHOT_MAGIC || content.getInt(4) != SNAPSHOT_VERSION
+                || length < 0 || SNAPSHOT_HEADER_SIZE + (long) length + Integer.BYTES != size) {
+            return null;
+        }
+        ByteBuffer payload = content.slice(SNAPSHOT_HEADER_SIZE, length);
+        CRC32C snapshotCrc = new CRC32C();
+        snapshotCrc.update(payload.duplicate());
+        if ((int) snapshotCrc.getValue() != content.getInt(SNAPSHOT_HEADER_SIZE + length)) {
+            return null;
+        }
+        return payload;
+    }
+
+    private int checksum(ByteBuffer payload) {
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static List<Integer> listGenerations(Path directory, String suffix) throws IOException {
+        List<Integer> generations = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + suffix)) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                generations.add(Integer.parseInt(fileName.substring(FILE_PREFIX.length(),
+                        fileName.length() - suffix.length())));
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private static String fileName(int generation, String suffix) {
+        return String.format("%s%08d%s", FILE_PREFIX, generation, suffix);
+    }
+
+    /**
+     * Callback for each record of a replay
+     * The buffer is only valid during the call
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(ByteBuffer payload) throws IOException;
+    }
+}
@@ -0,0 +1,147 @@
+package org.informatics.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Business clock of the store: the current day and a coarse current time
+ * Readers only read a volatile field. The system clock is refreshed by a background
+ * ticker thread; a manual clock only moves when told to, so tests and replays are repeatable
+ */
+public final class StoreClock {
+    public static final Duration DEFAULT_TICK = Duration.ofMillis(10);
+
+    private static volatile StoreClock system;
+
+    private final Clock source;
+    private final boolean manual;
+    private volatile Tick tick;
+
+    private StoreClock(Clock source, boolean manual) {
+        this.source = source;
+        this.manual = manual;
+        this.tick = readSource();
+    }
+
+    /**
+     * Returns the shared clock following the system time, refreshed every {@link #DEFAULT_TICK}
+     */
+    public static StoreClock system() {
+        StoreClock clock = system;
+        if (clock == null) {
+            synchronized (StoreClock.class) {
+                clock = system;
+                if (clock == null) {
+                    clock = ticking(Clock.systemDefaultZone(), DEFAULT_TICK);
+                    system = clock;
+                }
+            }
+        }
+        return clock;
+    }
+
+    /**
+     * Creates a clock that follows the given source, refreshed by a daemon thread
+     */
+    public static StoreClock ticking(Clock source, Duration tickInterval) {
+        StoreClock clock = new StoreClock(source, false);
+        long intervalMillis = Math.max(1, tickInterval.toMillis());
+        Thread ticker = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                clock.refresh();
+            }
+        }, "store-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+        return clock;
+    }
+
+    /**
+     * Creates a clock that stands still at the given time until it is moved
+     */
+    public static StoreClock manual(LocalDateTime start) {
+        ZoneId zone = ZoneId.systemDefault();
+        return new StoreClock(Clock.fixed(start.atZone(zone).toInstant(), zone), true);
+    }
+
+    /**
+     * Moves a manual clock to the given time
+     */
+    public void set(LocalDateTime dateTime) {
+        if (!manual) {
+            throw new IllegalStateException("Only a manual clock can be moved");
+        }
+        tick = new Tick(dateTime, dateTime.atZone(source.getZone()).toInstant().toEpochMilli());
+    }
+
+    /**
+     * Moves a manual clock forward
+     */
+    public void advance(Duration duration) {
+        set(tick.now.plus(duration));
+    }
+
+    /**
+     * Returns the current time (accurate to one tick)
+     */
+    public LocalDateTime now() {
+        return tick.now;
+    }
+
+    public LocalDate today() {
+        return tick.today;
+    }
+
+    /**
+     * Returns the current day as days since 1970-01-01
+     */
+    public long currentEpochDay() {
+        return tick.epochDay;
+    }
+
+    /**
+     * Returns the current time in milliseconds since the epoch (accurate to one tick)
+     */
+    public long millis() {
+        return tick.millis;
+    }
+
+    public ZoneId getZone() {
+        return source.getZone();
+    }
+
+    private void refresh() {
+        tick = readSource();
+    }
+
+    private Tick readSource() {
+        Instant instant = source.instant();
+        return new Tick(LocalDateTime.ofInstant(instant, source.getZone()), instant.toEpochMilli());
+    }
+
+    /**
+     * Values of one moment, replaced as a whole on every tick
+     */
+    private static final class Tick {
+        private final LocalDateTime now;
+        private final LocalDate today;
+        private final long epochDay;
+        private final long millis;
+
+        private Tick(LocalDateTime now, long millis) {
+            this.now = now;
+            this.today = now.toLocalDate();
+            this.epochDay = today.toEpochDay();
+            this.millis = millis;
+        }
+    }
+}
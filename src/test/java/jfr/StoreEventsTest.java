@@ -0,0 +1,80 @@
+package jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.informatics.exception.InsufficientStockException;
+import org.informatics.jfr.FileWriteEvent;
+import org.informatics.jfr.ReceiptIssueEvent;
+import org.informatics.jfr.ReceiptJournalWriteEvent;
+import org.informatics.jfr.SaleEvent;
+import org.informatics.model.Cashier;
+import org.informatics.model.FoodProduct;
+import org.informatics.service.Store;
+import org.informatics.util.FileManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the flight recorder events of sales and receipt I/O
+ */
+class StoreEventsTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSaleAndReceiptIo_AreRecorded() throws Exception {
+        Path dump = tempDir.resolve("store.jfr");
+        try (Recording recording = new Recording();
+             Store store = new Store("Shop NBU", 5, 20.0, tempDir.resolve("receipts").toString())) {
+            recording.enable(SaleEvent.class);
+            recording.enable(ReceiptIssueEvent.class);
+            recording.enable(ReceiptJournalWriteEvent.class);
+            recording.enable(FileWriteEvent.class);
+            recording.start();
+
+            store.setPrintReceipts(false);
+            store.addCashier(new Cashier("C001", "Ivan Ivanov", 1500.0));
+            store.addProduct(new FoodProduct("P001", "Milk", 2.50, LocalDate.now().plusDays(10), 10, 30.0));
+            store.makeSale("C001", Map.of("P001", 2), 20.0);
+            assertThrows(InsufficientStockException.class, () -> store.makeSale("C001", Map.of("P001", 50), 500.0));
+            store.getReceiptService().flush();
+            FileManager.writeToFile(tempDir.resolve("report.txt").toString(), "hello");
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+
+        List<RecordedEvent> sales = ofType(events, "org.informatics.Sale");
+        assertEquals(2, sales.size());
+        RecordedEvent sale = sales.stream().filter(e -> e.getString("failure") == null).findFirst().orElseThrow();
+        assertEquals("C001", sale.getString("cashierId"));
+        assertEquals(1, sale.getInt("receiptNumber"));
+        assertEquals(1, sale.getInt("itemCount"));
+        assertTrue(sales.stream().anyMatch(e -> "InsufficientStockException".equals(e.getString("failure"))));
+
+        RecordedEvent issue = ofType(events, "org.informatics.ReceiptIssue").get(0);
+        assertEquals(1, issue.getInt("receiptNumber"));
+        assertEquals("C001", issue.getString("cashierId"));
+
+        RecordedEvent journalWrite = ofType(events, "org.informatics.ReceiptJournalWrite").get(0);
+        assertEquals(1, journalWrite.getInt("receiptCount"));
+        assertTrue(journalWrite.getLong("bytesWritten") > 0);
+
+        RecordedEvent fileWrite = ofType(events, "org.informatics.FileWrite").get(0);
+        assertEquals(5, fileWrite.getLong("bytesWritten"));
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+    }
+}
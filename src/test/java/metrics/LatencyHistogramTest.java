@@ -0,0 +1,69 @@
+package metrics;
+
+import org.informatics.metrics.LatencyHistogram;
+import org.informatics.metrics.MetricsSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for latency histograms and metrics snapshots
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void testPercentiles_WithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100_000_000, snapshot.getMaxNanos());
+        assertEquals(50_000_500.0, snapshot.getMeanNanos(), 0.001);
+        assertEquals(50_000_000, snapshot.getPercentileNanos(50), 50_000_000 / 32.0);
+        assertEquals(99_000_000, snapshot.getPercentileNanos(99), 99_000_000 / 32.0);
+        assertEquals(100_000_000, snapshot.getPercentileNanos(100));
+        assertTrue(snapshot.getPercentileNanos(99) >= 99_000_000);
+    }
+
+    @Test
+    void testSmallAndNegativeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(7);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(3, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentileNanos(10));
+        assertEquals(7, snapshot.getPercentileNanos(50));
+        assertEquals(Long.MAX_VALUE, snapshot.getPercentileNanos(100));
+        assertEquals(0, new LatencyHistogram().snapshot().getPercentileNanos(99));
+    }
+
+    @Test
+    void testSnapshot_TextAndJson() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(2_000);
+
+        MetricsSnapshot snapshot = new MetricsSnapshot.Builder()
+                .takenAt(Instant.parse("2024-01-01T00:00:00Z"))
+                .counter("sales.completed", 3)
+                .latency("sale.total", histogram)
+                .build();
+
+        assertEquals("{\"takenAt\":\"2024-01-01T00:00:00Z\",\"counters\":{\"sales.completed\":3},"
+                + "\"latencies\":{\"sale.total\":{\"count\":1,\"meanNanos\":2000,\"p50Nanos\":2000,"
+                + "\"p90Nanos\":2000,\"p99Nanos\":2000,\"p999Nanos\":2000,\"maxNanos\":2000}}}",
+                snapshot.toJson());
+        assertTrue(snapshot.toText().contains("p99=2.0us"));
+        assertEquals(3, snapshot.getCounter("sales.completed"));
+        assertEquals(0, snapshot.getCounter("missing"));
+    }
+}
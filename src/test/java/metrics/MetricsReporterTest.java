@@ -0,0 +1,40 @@
+package metrics;
+
+import org.informatics.metrics.MetricsReporter;
+import org.informatics.metrics.MetricsSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the periodic metrics reporter
+ */
+class MetricsReporterTest {
+
+    @Test
+    void testFailingSink_IsRecordedAndLaterReportsContinue() throws Exception {
+        List<String> reports = new CopyOnWriteArrayList<>();
+        MetricsSnapshot snapshot = new MetricsSnapshot.Builder().counter("sales.completed", 3).build();
+
+        try (MetricsReporter reporter = MetricsReporter.start(() -> snapshot, Duration.ofMillis(5),
+                MetricsReporter.Format.TEXT, report -> {
+                    if (reports.add(report) && reports.size() == 1) {
+                        throw new IllegalStateException("Sink unavailable");
+                    }
+                })) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (reports.size() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            assertTrue(reports.size() >= 3);
+            assertEquals(1, reporter.getFailureCount());
+            assertEquals("Sink unavailable", reporter.getLastFailure().getMessage());
+        }
+    }
+}
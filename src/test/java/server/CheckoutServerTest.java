@@ -0,0 +1,137 @@
+package server;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.FoodProduct;
+import org.informatics.server.CheckoutLoadClient;
+import org.informatics.server.CheckoutServer;
+import org.informatics.service.Store;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the HTTP checkout front-end
+ */
+class CheckoutServerTest {
+    @TempDir
+    Path tempDir;
+
+    private Store store;
+    private CheckoutServer server;
+    private URI baseUri;
+    private HttpClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = new Store("Shop NBU", 5, 20.0, tempDir.toString());
+        store.setPrintReceipts(false);
+        store.addCashier(new Cashier("C001", "Ivan Ivanov", 1500.0));
+        store.addCashier(new Cashier("C002", "Mariya Popova", 1600.0));
+        store.addProduct(new FoodProduct("P001", "Milk", 2.50, LocalDate.now().plusDays(10), 1_000, 30.0));
+        store.addProduct(new FoodProduct("P002", "Bread", 1.20, LocalDate.now().plusDays(10), 1_000, 25.0));
+
+        server = new CheckoutServer(store, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        baseUri = URI.create("http://localhost:" + server.getPort());
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.close();
+        store.close();
+    }
+
+    @Test
+    void testSale_ReturnsReceiptAndReducesStock() throws Exception {
+        HttpResponse<String> response = post("cashier=C001&payment=10&item=P001:2&item=P002:1");
+
+        // 2 * 3.25 + 1.50 = 8.00
+        assertEquals(200, response.statusCode());
+        assertEquals("receipt=1\ntotal=8.00\nchange=2.00\n", response.body());
+        assertEquals(998, store.getInventoryService().getProduct("P001").getQuantityInStock());
+        assertEquals(1, server.getCompletedSalesCount());
+    }
+
+    @Test
+    void testRejectedSales_MapToStatusCodes() throws Exception {
+        assertEquals(409, post("cashier=C001&payment=100000&item=P001:5000").statusCode());
+        assertEquals(400, post("cashier=C999&payment=10&item=P001:1").statusCode());
+        assertEquals(400, post("cashier=C001&payment=1&item=P001:1").statusCode());
+        assertEquals(400, post("cashier=C001&payment=10&item=P001").statusCode());
+
+        HttpResponse<String> get = client.send(HttpRequest.newBuilder(baseUri.resolve("/sale")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, get.statusCode());
+        assertEquals(4, server.getRejectedSalesCount());
+        assertEquals(1_000, store.getInventoryService().getProduct("P001").getQuantityInStock());
+    }
+
+    @Test
+    void testNonFiniteOrNegativePayment_IsRejected() throws Exception {
+        for (String payment : List.of("NaN", "Infinity", "-Infinity", "1e400", "-5")) {
+            assertEquals(400, post("cashier=C001&payment=" + payment + "&item=P001:1").statusCode(), payment);
+        }
+
+        assertEquals(5, server.getRejectedSalesCount());
+        assertEquals(0, store.getTotalReceiptsCount());
+        assertEquals(1_000, store.getInventoryService().getProduct("P001").getQuantityInStock());
+    }
+
+    @Test
+    void testInvalidOrOverflowingQuantity_IsRejected() throws Exception {
+        assertEquals(400, post("cashier=C001&payment=10&item=P001:0").statusCode());
+        assertEquals(400, post("cashier=C001&payment=10&item=P001:-1").statusCode());
+        // Summing the repeated item would wrap around to 2147483645
+        String max = "&item=P001:" + Integer.MAX_VALUE;
+        assertEquals(400, post("cashier=C001&payment=10" + max + max + max).statusCode());
+
+        assertEquals(3, server.getRejectedSalesCount());
+        assertEquals(1_000, store.getInventoryService().getProduct("P001").getQuantityInStock());
+    }
+
+    @Test
+    void testUnexpectedFailure_Returns500() throws Exception {
+        // Publishing the completed sale now throws IllegalStateException
+        store.getSaleStream().close();
+
+        HttpResponse<String> response = post("cashier=C001&payment=10&item=P001:1");
+
+        assertEquals(500, response.statusCode());
+        assertEquals(1, server.getRejectedSalesCount());
+        assertEquals(0, server.getCompletedSalesCount());
+    }
+
+    @Test
+    void testLoadClient_ManyTills() throws Exception {
+        CheckoutLoadClient loadClient = new CheckoutLoadClient(baseUri, 2, List.of("P001", "P002"));
+
+        CheckoutLoadClient.Result result = loadClient.run(50, 4);
+
+        assertEquals(200, result.getCompleted());
+        assertEquals(0, result.getFailed());
+        assertEquals(200, store.getTotalReceiptsCount());
+        assertTrue(result.getLatencyMillis(99) >= result.getLatencyMillis(50));
+    }
+
+    private HttpResponse<String> post(String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/sale"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,136 @@
+package service;
+
+import org.informatics.exception.InvalidProductException;
+import org.informatics.model.FoodProduct;
+import org.informatics.model.NonFoodProduct;
+import org.informatics.model.Product;
+import org.informatics.service.CatalogImportReport;
+import org.informatics.service.CatalogImporter;
+import org.informatics.service.InventoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for importing a product catalog from CSV
+ */
+class CatalogImporterTest {
+    @TempDir
+    Path tempDir;
+
+    private InventoryService inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        inventoryService = new InventoryService();
+    }
+
+    @Test
+    void testImport_CreatesProductsOfBothCategories() throws Exception {
+        Path file = write(List.of(
+                CatalogImporter.HEADER,
+                "FOOD,P001,Milk,1.50,2099-01-31,100,30",
+                "NON_FOOD,P002,\"Soap, lavender\",3.00,2099-12-31,40,50"));
+
+        CatalogImportReport report = new CatalogImporter(inventoryService).importFile(file);
+
+        assertFalse(report.hasErrors());
+        assertEquals(2, report.getRowCount());
+        assertEquals(2, report.getImportedCount());
+
+        Product milk = inventoryService.getProduct("P001");
+        assertInstanceOf(FoodProduct.class, milk);
+        assertEquals(150, milk.getPurchasePriceCents());
+        assertEquals(LocalDate.of(2099, 1, 31), milk.getExpirationDate());
+        assertEquals(100, milk.getQuantityInStock());
+
+        Product soap = inventoryService.getProduct("P002");
+        assertInstanceOf(NonFoodProduct.class, soap);
+        assertEquals("Soap, lavender", soap.getName());
+        assertEquals(150 * 100 + 300 * 40, inventoryService.getTotalPurchaseValueCents());
+    }
+
+    @Test
+    void testImport_ReportsInvalidRowsWithLineNumbers() throws Exception {
+        inventoryService.addProduct(new FoodProduct("P000", "Bread", 1.20,
+                LocalDate.of(2099, 1, 1), 10, 25.0));
+        Path file = write(List.of(
+                CatalogImporter.HEADER,
+                "FOOD,P001,Milk,1.50,2099-01-31,100,30",
+                "FOOD,P002,Cheese,-5.50,2099-01-31,20,35",
+                "FOOD,P003,Yogurt,0.90,2099-02-30,20,35",
+                "FOOD,P001,Milk again,1.60,2099-01-31,100,30",
+                "",
+                "FOOD,P000,Bread,1.20,2099-01-01,10,25",
+                "DRINK,P004,Juice,1.10,2099-01-31,20,35",
+                "FOOD,P005,Eggs,2.10,2099-01-31,20"));
+
+        CatalogImportReport report = new CatalogImporter(inventoryService).importFile(file);
+
+        assertEquals(7, report.getRowCount());
+        assertEquals(1, report.getImportedCount());
+        List<String> errors = new ArrayList<>();
+        for (CatalogImportReport.RowError error : report.getErrors()) {
+            assertInstanceOf(InvalidProductException.class, error.getError());
+            errors.add(error.toString());
+        }
+        assertEquals(List.of(
+                "Line 3: Purchase price cannot be negative",
+                "Line 4: Invalid expiration date '2099-02-30' (expected yyyy-MM-dd)",
+                "Line 5: Product with ID P001 already exists",
+                "Line 7: Product with ID P000 already exists",
+                "Line 8: Unknown category 'DRINK'",
+                "Line 9: Expected 7 columns but found 6"), errors);
+
+        assertEquals("Milk", inventoryService.getProduct("P001").getName());
+        assertThrows(InvalidProductException.class, () -> inventoryService.getProduct("P002"));
+    }
+
+    @Test
+    void testImport_ManySmallChunks_KeepsFileOrderAndTotals() throws Exception {
+        List<String> lines = new ArrayList<>();
+        long expectedValueCents = 0;
+        for (int i = 0; i < 5_000; i++) {
+            // Every 1000th row repeats the ID of the row before it
+            int id = i % 1000 == 999 ? i - 1 : i;
+            lines.add("FOOD,P" + id + ",Item " + i + ",1.25," + LocalDate.of(2099, 1, 1).plusDays(i % 30)
+                    + ",4,20");
+            if (id == i) {
+                expectedValueCents += 125 * 4;
+            }
+        }
+        Path file = write(lines);
+
+        CatalogImportReport report = new CatalogImporter(inventoryService, 7).importFile(file);
+
+        assertEquals(5_000, report.getRowCount());
+        assertEquals(4_995, report.getImportedCount());
+        assertEquals(4_995, inventoryService.getProductCount());
+        assertEquals(expectedValueCents, inventoryService.getTotalPurchaseValueCents());
+        assertEquals(4_995, inventoryService.getAvailableProducts().size());
+
+        List<Long> errorLines = new ArrayList<>();
+        for (CatalogImportReport.RowError error : report.getErrors()) {
+            errorLines.add(error.getLineNumber());
+        }
+        assertEquals(List.of(1000L, 2000L, 3000L, 4000L, 5000L), errorLines);
+        // The first row with an ID wins
+        assertEquals("Item 998", inventoryService.getProduct("P998").getName());
+    }
+
+    private Path write(List<String> lines) throws IOException {
+        Path file = tempDir.resolve("catalog.csv");
+        Files.write(file, lines, StandardCharsets.UTF_8);
+        return file;
+    }
+}
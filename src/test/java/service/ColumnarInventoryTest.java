@@ -0,0 +1,133 @@
+package service;
+
+import org.informatics.exception.ExpiredProductException;
+import org.informatics.exception.InsufficientStockException;
+import org.informatics.exception.InvalidProductException;
+import org.informatics.model.FoodProduct;
+import org.informatics.model.NonFoodProduct;
+import org.informatics.model.Product;
+import org.informatics.model.ProductCategory;
+import org.informatics.service.ColumnarInventory;
+import org.informatics.service.InventoryService;
+import org.informatics.util.StoreClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the column-based inventory backend
+ */
+class ColumnarInventoryTest {
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    private StoreClock clock;
+    private ColumnarInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        clock = StoreClock.manual(TODAY.atTime(9, 0));
+        inventory = new ColumnarInventory(clock);
+    }
+
+    @Test
+    void testProductView_ReadsTheColumns() throws Exception {
+        FoodProduct cheese = new FoodProduct("P006", "Cheese", 5.50, TODAY.plusDays(2), 20, 35.0);
+        NonFoodProduct soap = new NonFoodProduct("P004", "Soap", 3.00, TODAY.plusMonths(12), 40, 50.0);
+        assertEquals(0, inventory.addProduct(cheese));
+        assertEquals(1, inventory.addProduct(soap));
+
+        ColumnarInventory.ProductView view = inventory.getProduct("P006");
+        assertEquals(0, view.getIndex());
+        assertEquals("Cheese", view.getName());
+        assertEquals(ProductCategory.FOOD, view.getCategory());
+        assertEquals(550, view.getPurchasePriceCents());
+        assertEquals(3500, view.getMarkupBasisPoints());
+        assertEquals(TODAY.plusDays(2), view.getExpirationDate());
+        assertEquals(cheese.calculateSalePriceCents(2, 5, 20.0), view.calculateSalePriceCents(5, 20.0));
+
+        Product copy = inventory.view(1).toProduct();
+        assertInstanceOf(NonFoodProduct.class, copy);
+        assertEquals(soap.calculateSalePriceCents(365, 5, 20.0), copy.calculateSalePriceCents(365, 5, 20.0));
+
+        assertThrows(InvalidProductException.class, () -> inventory.addProduct(cheese));
+        assertThrows(InvalidProductException.class, () -> inventory.getProduct("P999"));
+    }
+
+    @Test
+    void testReduceStock_ChecksQuantityAndExpiration() throws Exception {
+        inventory.addProduct("P001", "Milk", ProductCategory.FOOD, 250, 3000, TODAY.plusDays(1), 10);
+
+        inventory.reduceStock("P001", 4);
+        ColumnarInventory.ProductView milk = inventory.getProduct("P001");
+        assertEquals(6, milk.getQuantityInStock());
+
+        InsufficientStockException shortage = assertThrows(InsufficientStockException.class,
+                () -> inventory.reduceStock("P001", 7));
+        assertEquals(6, shortage.getAvailableQuantity());
+
+        inventory.addStock("P001", 4);
+        assertEquals(10, milk.getQuantityInStock());
+
+        clock.set(TODAY.plusDays(2).atTime(12, 0));
+        assertThrows(ExpiredProductException.class, () -> inventory.reduceStock("P001", 1));
+        assertEquals(1, inventory.getExpiredProducts().size());
+    }
+
+    @Test
+    void testTotals_MatchInventoryServiceAcrossPages() throws Exception {
+        InventoryService inventoryService = new InventoryService(clock);
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            products.add(new FoodProduct("P" + i, "Item " + i, 0.25 + i % 100,
+                    TODAY.plusDays(i % 40 - 5), i % 17, 20.0));
+        }
+        assertTrue(inventory.addProducts(products).isEmpty());
+        inventoryService.addProducts(products);
+
+        assertEquals(10_000, inventory.getProductCount());
+        assertEquals(inventoryService.getTotalPurchaseValueCents(), inventory.getTotalPurchaseValueCents());
+        assertEquals(inventoryService.getExpiredProducts().size(), inventory.getExpiredProducts().size());
+        assertEquals(inventoryService.getProductsExpiringWithin(7).size(),
+                inventory.getProductsExpiringWithin(7).size());
+        assertEquals("Item 9999", inventory.view(9_999).getName());
+    }
+
+    @Test
+    void testConcurrentSalesOfOneProduct_NeverOversell() throws Exception {
+        inventory.addProduct("P002", "Bread", ProductCategory.FOOD, 120, 2500, TODAY.plusDays(3), 1_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 200; i++) {
+                    try {
+                        inventory.reduceStock("P002", 1);
+                        sold.incrementAndGet();
+                    } catch (InsufficientStockException e) {
+                        // Sold out
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(1_000, sold.get());
+        assertEquals(0, inventory.getProduct("P002").getQuantityInStock());
+    }
+}
@@ -7,6 +7,8 @@ import org.informatics.model.FoodProduct;
 import org.informatics.model.NonFoodProduct;
 import org.informatics.model.Product;
 import org.informatics.service.InventoryService;
+import org.informatics.service.RestockReport;
+import org.informatics.service.StockReservation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,6 +17,9 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -170,6 +175,31 @@ class InventoryServiceTest {
         assertEquals("P003", available.get(0).getId());
     }
 
+    @Test
+    void testExpirationQueries() throws InvalidProductException {
+        inventoryService.addProduct(milk);        // expires in 10 days
+        inventoryService.addProduct(bread);       // expires in 3 days
+        inventoryService.addProduct(expiredHam);  // expired 5 days ago
+        inventoryService.addProduct(soap);        // expires in 12 months
+
+        var expiringSoon = inventoryService.getProductsExpiringWithin(3);
+        assertEquals(1, expiringSoon.size());
+        assertEquals("P002", expiringSoon.get(0).getId());
+
+        var expiringWithinTenDays = inventoryService.getProductsExpiringWithin(10);
+        assertEquals(2, expiringWithinTenDays.size());
+        // Ordered by expiration date
+        assertEquals("P002", expiringWithinTenDays.get(0).getId());
+        assertEquals("P001", expiringWithinTenDays.get(1).getId());
+
+        var expired = inventoryService.getExpiredProducts();
+        assertEquals(1, expired.size());
+        assertEquals("P008", expired.get(0).getId());
+
+        assertEquals(3, inventoryService.getAvailableProducts().size());
+        assertThrows(InvalidProductException.class, () -> inventoryService.getProductsExpiringWithin(-1));
+    }
+
     @Test
     void testIsAvailable_Milk_ValidProduct_ReturnsTrue() throws InvalidProductException {
         inventoryService.addProduct(milk);
@@ -215,6 +245,49 @@ class InventoryServiceTest {
         assertEquals(107.50, totalValue, 0.01);
     }
 
+    @Test
+    void testGetTotalPurchaseValue_AfterRestockAndReleasedReservation() throws Exception {
+        inventoryService.addProduct(milk);
+        inventoryService.restockProduct("P001", 10);    // 60 left
+
+        StockReservation reservation = inventoryService.reserve(Map.of("P001", 20));
+        assertEquals(100.0, inventoryService.getTotalPurchaseValue(), 0.01);
+
+        reservation.release();
+
+        // 2.50 * 60 = 150.00
+        assertEquals(150.0, inventoryService.getTotalPurchaseValue(), 0.01);
+    }
+
+    @Test
+    void testRestockAll_AggregatesLinesAndReportsBadOnes() throws Exception {
+        inventoryService.addProduct(milk);      // 50
+        inventoryService.addProduct(bread);     // 100
+
+        RestockReport report = inventoryService.restockAll(List.of(
+                Map.entry("P001", 10),
+                Map.entry("P999", 5),
+                Map.entry("P002", 20),
+                Map.entry("P001", 15),
+                Map.entry("P002", 0)));
+
+        assertEquals(3, report.getAppliedCount());
+        assertEquals(2, report.getRejectedCount());
+        assertEquals(45, report.getRestockedQuantity());
+        assertEquals(75, milk.getQuantityInStock());
+        assertEquals(120, bread.getQuantityInStock());
+
+        List<RestockReport.Line> rejected = report.getRejectedLines();
+        assertEquals(2, rejected.get(0).getLineNumber());
+        assertEquals("Product with ID P999 does not exist", rejected.get(0).getError().getMessage());
+        assertEquals(5, rejected.get(1).getLineNumber());
+        assertEquals("Quantity must be a positive number", rejected.get(1).getError().getMessage());
+        assertTrue(report.getLines().get(3).isApplied());
+
+        // 2.50 * 75 + 1.20 * 120 = 331.50
+        assertEquals(33_150, inventoryService.getTotalPurchaseValueCents());
+    }
+
     @Test
     void testMockProduct_IsExpired() {
         when(mockProduct.isExpired()).thenReturn(true);
@@ -249,4 +322,56 @@ class InventoryServiceTest {
         assertEquals(4, inventoryService.getProductCount());
         assertEquals(4, inventoryService.getAllProducts().size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testReserve_CommitKeepsStockReduced() throws Exception {
+        inventoryService.addProduct(milk);
+        inventoryService.addProduct(bread);
+
+        StockReservation reservation = inventoryService.reserve(Map.of("P001", 5, "P002", 10));
+        assertEquals(45, milk.getQuantityInStock());
+        assertEquals(90, bread.getQuantityInStock());
+        assertEquals(2, reservation.getLines().size());
+
+        reservation.commit();
+        reservation.close();
+
+        assertEquals(45, milk.getQuantityInStock());
+        assertEquals(90, bread.getQuantityInStock());
+    }
+
+    @Test
+    void testReserve_ReleaseRestoresStock() throws Exception {
+        inventoryService.addProduct(milk);
+
+        StockReservation reservation = inventoryService.reserve(Map.of("P001", 5));
+        reservation.release();
+
+        assertEquals(50, milk.getQuantityInStock());
+        assertThrows(IllegalStateException.class, reservation::commit);
+    }
+
+    @Test
+    void testReserve_ExpiredItem_NothingIsReserved() throws Exception {
+        inventoryService.addProduct(milk);
+        inventoryService.addProduct(expiredHam);
+
+        Map<String, Integer> items = new LinkedHashMap<>();
+        items.put("P001", 5);
+        items.put("P008", 1);
+
+        assertThrows(ExpiredProductException.class, () -> inventoryService.reserve(items));
+
+        assertEquals(50, milk.getQuantityInStock());
+        assertEquals(12, expiredHam.getQuantityInStock());
+    }
+
+    @Test
+    void testReserve_NonPositiveQuantity_ThrowsException() throws Exception {
+        inventoryService.addProduct(milk);
+
+        assertThrows(InvalidProductException.class,
+                () -> inventoryService.reserve(Map.of("P001", -3)));
+        assertEquals(50, milk.getQuantityInStock());
+    }
+}
@@ -0,0 +1,75 @@
+package service;
+
+import org.informatics.exception.InsufficientStockException;
+import org.informatics.model.ProductCategory;
+import org.informatics.service.ColumnarInventory;
+import org.informatics.service.OffHeapStockCounters;
+import org.informatics.util.StoreClock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for stock counters kept off the heap and in a mapped file
+ */
+class OffHeapStockCountersTest {
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 10);
+
+    @TempDir
+    Path tempDir;
+
+    private final StoreClock clock = StoreClock.manual(TODAY.atTime(9, 0));
+
+    @Test
+    void testInMemoryCounters_BehaveLikeHeapCounters() throws Exception {
+        try (ColumnarInventory inventory = new ColumnarInventory(clock, OffHeapStockCounters.inMemory())) {
+            for (int i = 0; i < 5_000; i++) {
+                inventory.addProduct("P" + i, "Item " + i, ProductCategory.NON_FOOD, 100, 2000,
+                        TODAY.plusDays(30), 10);
+            }
+
+            inventory.reduceStock("P4500", 4);
+            inventory.addStock("P1", 5);
+
+            assertEquals(6, inventory.getProduct("P4500").getQuantityInStock());
+            assertEquals(15, inventory.getProduct("P1").getQuantityInStock());
+            assertEquals(50_001, inventory.getTotalStock());
+            assertThrows(InsufficientStockException.class, () -> inventory.reduceStock("P4500", 7));
+        }
+    }
+
+    @Test
+    void testFileCounters_SurviveRestart() throws Exception {
+        Path file = tempDir.resolve("stock.bin");
+        try (ColumnarInventory inventory = new ColumnarInventory(clock, OffHeapStockCounters.open(file))) {
+            inventory.addProduct("P001", "Milk", ProductCategory.FOOD, 250, 3000, TODAY.plusDays(5), 50);
+            inventory.addProduct("P002", "Bread", ProductCategory.FOOD, 120, 2500, TODAY.plusDays(3), 100);
+            inventory.reduceStock("P001", 20);
+            inventory.reduceStock("P002", 1);
+        }
+
+        // Same catalog again: the counts from the file win over the catalog quantities
+        try (ColumnarInventory inventory = new ColumnarInventory(clock, OffHeapStockCounters.open(file))) {
+            inventory.addProduct("P001", "Milk", ProductCategory.FOOD, 250, 3000, TODAY.plusDays(5), 50);
+            inventory.addProduct("P003", "Eggs", ProductCategory.FOOD, 210, 2000, TODAY.plusDays(9), 30);
+
+            assertEquals(30, inventory.getProduct("P001").getQuantityInStock());
+            // Another product in the slot of P002 starts from its own quantity
+            assertEquals(30, inventory.getProduct("P003").getQuantityInStock());
+        }
+    }
+
+    @Test
+    void testOpen_RejectsOtherFiles() throws IOException {
+        Path file = tempDir.resolve("not-stock.bin");
+        Files.writeString(file, "just some text that is long enough to fill a whole header of 64 bytes....");
+
+        assertThrows(IOException.class, () -> OffHeapStockCounters.open(file));
+    }
+}
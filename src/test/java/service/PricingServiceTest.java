@@ -4,13 +4,16 @@ import org.informatics.model.FoodProduct;
 import org.informatics.model.NonFoodProduct;
 import org.informatics.model.Product;
 import org.informatics.service.PricingService;
+import org.informatics.util.StoreClock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -158,7 +161,7 @@ class PricingServiceTest {
     @Test
     void testMockProduct_CalculateSalePrice() {
         // Arrange
-        when(mockProduct.getDaysUntilExpiration()).thenReturn(10);
+        when(mockProduct.getDaysUntilExpiration(anyLong())).thenReturn(10);
         when(mockProduct.calculateSalePrice(10, 5, 20.0)).thenReturn(3.25);
 
         // Act
@@ -166,10 +169,57 @@ class PricingServiceTest {
 
         // Assert
         assertEquals(3.25, price, 0.01);
-        verify(mockProduct, times(1)).getDaysUntilExpiration();
+        verify(mockProduct, times(1)).getDaysUntilExpiration(anyLong());
         verify(mockProduct, times(1)).calculateSalePrice(10, 5, 20.0);
     }
 
+    @Test
+    void testCalculateSalePriceCents_CachedPerDay() {
+        StoreClock clock = StoreClock.manual(LocalDateTime.of(2026, 3, 10, 10, 0));
+        PricingService cachedPricing = new PricingService(5, 20.0, clock);
+        LocalDate today = clock.today();
+        // Expires in 6 days - one day outside the discount threshold
+        FoodProduct cheese = new FoodProduct("P006", "Cheese", 5.50, today.plusDays(6), 20, 35.0);
+
+        // 5.50 * 1.35 = 7.425 -> 7.43
+        assertEquals(743, cachedPricing.calculateSalePriceCents(cheese));
+        assertEquals(743, cachedPricing.calculateSalePriceCents(cheese));
+
+        // Later the same day the price does not change
+        clock.advance(Duration.ofHours(13));
+        assertEquals(743, cachedPricing.calculateSalePriceCents(cheese));
+
+        // After midnight the product is within the threshold: 7.425 * 0.80 = 5.94
+        clock.advance(Duration.ofHours(2));
+        assertEquals(594, cachedPricing.calculateSalePriceCents(cheese));
+    }
+
+    @Test
+    void testCalculateSalePrice_UsesStoreClock() {
+        StoreClock clock = StoreClock.manual(LocalDateTime.of(2026, 3, 10, 10, 0));
+        PricingService clockedPricing = new PricingService(5, 20.0, clock);
+        FoodProduct cheese = new FoodProduct("P006", "Cheese", 5.50,
+                clock.today().plusDays(6), 20, 35.0);
+
+        assertEquals(7.43, clockedPricing.calculateSalePrice(cheese), 0.001);
+
+        clock.advance(Duration.ofDays(1));
+        assertEquals(5.94, clockedPricing.calculateSalePrice(cheese), 0.001);
+    }
+
+    @Test
+    void testUpdateRules_RecalculatesCachedPrices() {
+        FoodProduct bread = new FoodProduct("P002", "Bread", 1.20,
+                LocalDate.now().plusDays(3), 100, 25.0);
+        assertEquals(120, pricingService.calculateSalePriceCents(bread));
+
+        pricingService.updateRules(5, 50.0);
+
+        // 1.50 * 0.50 = 0.75
+        assertEquals(75, pricingService.calculateSalePriceCents(bread));
+        assertEquals(50.0, pricingService.getExpirationDiscountPercentage(), 0.0);
+    }
+
     @Test
     void testYogurt_NoDiscount() {
         // Yogurt - expires in 15 days, no discount
@@ -183,4 +233,4 @@ class PricingServiceTest {
         // 1.80 * 1.30 = 2.34 (no discount)
         assertEquals(2.34, price, 0.01);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,367 @@
+package service;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.FoodProduct;
+import org.informatics.model.Receipt;
+import org.informatics.model.ReceiptItem;
+import org.informatics.service.DurabilityMode;
+import org.informatics.service.ReceiptRetentionPolicy;
+import org.informatics.service.ReceiptService;
+import org.informatics.service.ReceiptWriter;
+import org.informatics.util.ReceiptCheckpoint;
+import org.informatics.util.ReceiptCodec;
+import org.informatics.util.ReceiptJournal;
+import org.informatics.util.ReceiptNames;
+import org.informatics.util.SerializationUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for ReceiptService and its background receipt writer
+ */
+class ReceiptServiceTest {
+    @TempDir
+    Path tempDir;
+
+    private final Cashier cashier = new Cashier("C001", "Ivan Ivanov", 1500.0);
+    private final FoodProduct milk = new FoodProduct("P001", "Milk", 2.50,
+            LocalDate.now().plusDays(10), 50, 30.0);
+
+    @Test
+    void testIssueReceipt_FlushWritesToJournal() throws Exception {
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            // The journal stores IDs only, the names come from the registry
+            receiptService.setReceiptNames(ReceiptNames.of(List.of(cashier), List.of(milk)));
+            Receipt receipt = receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+
+            receiptService.flush();
+
+            assertTrue(receiptService.getJournal().contains(1));
+            assertTrue(Files.exists(tempDir.resolve("journal_00000001.log")));
+            assertEquals(receipt.format(), receiptService.readReceiptFromFile(1));
+        }
+    }
+
+    @Test
+    void testReadLegacyReceiptFiles() throws Exception {
+        Receipt legacy = createReceipt(7);
+        Files.writeString(tempDir.resolve("receipt_7.txt"), legacy.format());
+        SerializationUtil.serialize(legacy, tempDir.resolve("receipt_7.ser").toString());
+
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            assertEquals(legacy.format(), receiptService.readReceiptFromFile(7));
+            assertEquals(7, receiptService.deserializeReceipt(7).getReceiptNumber());
+        }
+    }
+
+    @Test
+    void testDeserializeReceipt_AllDurabilityModes() throws Exception {
+        for (DurabilityMode mode : DurabilityMode.values()) {
+            Path directory = tempDir.resolve(mode.name());
+            try (ReceiptService receiptService = new ReceiptService(directory.toString(), mode, 4)) {
+                for (int i = 0; i < 20; i++) {
+                    receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+                }
+
+                Receipt deserialized = receiptService.deserializeReceipt(20);
+
+                assertEquals(20, deserialized.getReceiptNumber());
+                assertEquals("C001", deserialized.getCashier().getId());
+                assertEquals(6.50, deserialized.getTotalAmount(), 0.01);
+            }
+        }
+    }
+
+    @Test
+    void testClose_WritesPendingReceipts() throws Exception {
+        ReceiptService receiptService = new ReceiptService(tempDir.toString(),
+                DurabilityMode.FIRE_AND_FORGET, 1);
+        for (int i = 0; i < 50; i++) {
+            receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+        }
+
+        receiptService.close();
+        assertEquals(50, receiptService.getTotalReceiptsCount());
+
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir)) {
+            assertEquals(50, journal.getRecordCount());
+            assertNotNull(journal.read(50));
+        }
+    }
+
+    @Test
+    void testRetainLastReceipts_HistoryAndCountersStayComplete() throws Exception {
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            receiptService.setRetentionPolicy(ReceiptRetentionPolicy.keepLast(10));
+            for (int i = 0; i < 100; i++) {
+                receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+            }
+
+            assertEquals(10, receiptService.getRetainedReceiptsCount());
+            assertEquals(100, receiptService.getTotalReceiptsCount());
+            assertEquals(650.0, receiptService.getTotalRevenue(), 0.001);
+
+            List<Receipt> history = receiptService.getAllReceipts();
+            assertEquals(100, history.size());
+            assertEquals(1, history.get(0).getReceiptNumber());
+            assertEquals(100, history.get(99).getReceiptNumber());
+            assertEquals(650.0, history.stream().mapToDouble(Receipt::getTotalAmount).sum(), 0.001);
+        }
+    }
+
+    @Test
+    void testRetainForDuration_EvictsOldReceipts() throws Exception {
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            receiptService.setRetentionPolicy(ReceiptRetentionPolicy.keepFor(Duration.ofMinutes(30)));
+            receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber(),
+                    LocalDateTime.now().minusHours(2)));
+            receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+
+            assertEquals(1, receiptService.getRetainedReceiptsCount());
+            assertEquals(2, receiptService.getTotalReceiptsCount());
+            assertEquals(1, receiptService.getAllReceipts().get(0).getReceiptNumber());
+        }
+    }
+
+    @Test
+    void testRestart_ContinuesNumberingAndRevenue() throws Exception {
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            for (int i = 0; i < 30; i++) {
+                receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+            }
+        }
+
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            // Everything was checkpointed on close, nothing needs to be replayed
+            assertEquals(0, receiptService.getRecoveredState().getReplayedCount());
+            assertEquals(31, receiptService.getNextReceiptNumber());
+            assertEquals(30, receiptService.getTotalReceiptsCount());
+            assertEquals(195.0, receiptService.getTotalRevenue(), 0.001);
+
+            receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+
+            List<Receipt> history = receiptService.getAllReceipts();
+            assertEquals(31, history.size());
+            assertEquals(1, history.get(0).getReceiptNumber());
+            assertEquals(31, history.get(30).getReceiptNumber());
+        }
+    }
+
+    @Test
+    void testRestartAfterCrash_ReplaysOnlyTheTail() throws Exception {
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            for (int i = 0; i < 20; i++) {
+                receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+            }
+        }
+        Path checkpointFile = tempDir.resolve(ReceiptCheckpoint.FILE_NAME);
+        byte[] checkpoint = Files.readAllBytes(checkpointFile);
+
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            for (int i = 0; i < 5; i++) {
+                receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+            }
+        }
+        // As if the process died before checkpointing the last 5 receipts
+        Files.write(checkpointFile, checkpoint);
+
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            assertEquals(5, receiptService.getRecoveredState().getReplayedCount());
+            assertEquals(26, receiptService.getNextReceiptNumber());
+            assertEquals(25, receiptService.getTotalReceiptsCount());
+            assertEquals(162.5, receiptService.getTotalRevenue(), 0.001);
+        }
+
+        // Without a checkpoint the whole journal is replayed
+        Files.delete(checkpointFile);
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            assertEquals(25, receiptService.getRecoveredState().getReplayedCount());
+            assertEquals(26, receiptService.getNextReceiptNumber());
+            assertEquals(162.5, receiptService.getTotalRevenue(), 0.001);
+        }
+    }
+
+    @Test
+    void testFailedSync_RestartKeepsTotalsAndNumbering() throws Exception {
+        try (ReceiptJournal journal = spy(ReceiptJournal.open(tempDir))) {
+            doThrow(new IOException("Disk full")).doCallRealMethod().when(journal).sync();
+            ReceiptCheckpoint start = ReceiptCheckpoint.recover(journal);
+            ReceiptWriter writer = new ReceiptWriter(journal, DurabilityMode.FSYNC_PER_RECEIPT, 4,
+                    start, tempDir.resolve(ReceiptCheckpoint.FILE_NAME));
+
+            CompletableFuture<Void> failed = writer.submit(createReceipt(1));
+            assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            writer.submit(createReceipt(2)).get(5, TimeUnit.SECONDS);
+            // The checkpoint ends after both records, so it must also count the one whose sync failed
+            writer.checkpoint();
+            assertThrows(IOException.class, writer::close);
+            assertTrue(journal.contains(1));
+        }
+
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            assertEquals(0, receiptService.getRecoveredState().getReplayedCount());
+            assertEquals(2, receiptService.getTotalReceiptsCount());
+            assertEquals(13.0, receiptService.getTotalRevenue(), 0.001);
+            assertEquals(3, receiptService.getNextReceiptNumber());
+        }
+    }
+
+    @Test
+    void testFireAndForget_FailedWriteIsRecorded() throws Exception {
+        ReceiptJournal journal = mock(ReceiptJournal.class);
+        doThrow(new IOException("Disk full")).when(journal).append(anyInt(), any(ByteBuffer.class));
+        ReceiptWriter writer = new ReceiptWriter(journal, DurabilityMode.FIRE_AND_FORGET, 4);
+
+        // The sale does not wait for the write, so it does not see the failure
+        writer.submit(createReceipt(1));
+
+        assertThrows(IOException.class, writer::flush);
+        writer.close();
+        // Reporting the failure on flush does not clear it
+        assertEquals("Disk full", writer.getLastFailure().getMessage());
+        assertEquals(1, writer.getFailureCount());
+    }
+
+    @Test
+    void testFailedCheckpoint_IsRecordedWithoutFailingReceipts() throws Exception {
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir)) {
+            Path checkpointFile = tempDir.resolve("missing").resolve(ReceiptCheckpoint.FILE_NAME);
+            ReceiptWriter writer = new ReceiptWriter(journal, DurabilityMode.FLUSH_PER_BATCH, 4,
+                    null, checkpointFile);
+
+            writer.submit(createReceipt(1)).get(5, TimeUnit.SECONDS);
+            writer.close();
+
+            assertTrue(journal.contains(1));
+            assertEquals(1, writer.getFailureCount());
+            assertNotNull(writer.getLastFailure());
+        }
+    }
+
+    @Test
+    void testRestartAfterArchive_KeepsTotalsAndNumbering() throws Exception {
+        Path journalDir = tempDir.resolve("journal");
+        try (ReceiptJournal journal = ReceiptJournal.open(journalDir, 512)) {
+            ReceiptCodec codec = new ReceiptCodec();
+            for (int number = 1; number <= 30; number++) {
+                journal.append(number, codec.encode(createReceipt(number)));
+            }
+            ReceiptCheckpoint.recover(journal).write(journalDir.resolve(ReceiptCheckpoint.FILE_NAME));
+            for (int number = 31; number <= 35; number++) {
+                journal.append(number, codec.encode(createReceipt(number)));
+            }
+
+            // Only the segments the checkpoint covers may go
+            long archived = journal.archive(tempDir.resolve("archive"), 1000);
+            assertTrue(archived > 0 && archived < 30, "Archived " + archived);
+        }
+
+        try (ReceiptService receiptService = new ReceiptService(journalDir.toString())) {
+            assertEquals(35, receiptService.getTotalReceiptsCount());
+            assertEquals(227.5, receiptService.getTotalRevenue(), 0.001);
+            assertEquals(36, receiptService.getNextReceiptNumber());
+        }
+    }
+
+    @Test
+    void testGetAllReceipts_AfterArchiveWhileRunning() throws Exception {
+        Path journalDir = tempDir.resolve("journal");
+        try (ReceiptJournal journal = ReceiptJournal.open(journalDir, 512)) {
+            ReceiptCodec codec = new ReceiptCodec();
+            for (int number = 1; number <= 30; number++) {
+                journal.append(number, codec.encode(createReceipt(number)));
+            }
+        }
+
+        try (ReceiptService receiptService = new ReceiptService(journalDir.toString())) {
+            receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+            receiptService.flush();
+            long archived = receiptService.getJournal().archive(tempDir.resolve("archive"), 1000);
+            assertTrue(archived > 0 && archived < 30, "Archived " + archived);
+
+            List<Receipt> receipts = receiptService.getAllReceipts();
+            assertEquals(31 - archived, receipts.size());
+            for (Receipt receipt : receipts) {
+                assertTrue(receipt.getReceiptNumber() > archived, "Listed #" + receipt.getReceiptNumber());
+            }
+            assertEquals(31, receipts.get(receipts.size() - 1).getReceiptNumber());
+            assertEquals(31, receiptService.getTotalReceiptsCount());
+        }
+    }
+
+    @Test
+    void testFirstStart_CountsLegacyReceiptFiles() throws Exception {
+        SerializationUtil.serialize(createReceipt(3), tempDir.resolve("receipt_3.ser").toString());
+        SerializationUtil.serialize(createReceipt(4), tempDir.resolve("receipt_4.ser").toString());
+
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            assertEquals(5, receiptService.allocateReceiptNumber());
+            assertEquals(2, receiptService.getTotalReceiptsCount());
+            assertEquals(13.0, receiptService.getTotalRevenue(), 0.001);
+        }
+    }
+
+    @Test
+    void testGetAllReceipts_ListsLegacyReceiptFiles() throws Exception {
+        SerializationUtil.serialize(createReceipt(3), tempDir.resolve("receipt_3.ser").toString());
+        SerializationUtil.serialize(createReceipt(4), tempDir.resolve("receipt_4.ser").toString());
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+        }
+
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            receiptService.issueReceipt(createReceipt(receiptService.allocateReceiptNumber()));
+
+            List<Receipt> history = receiptService.getAllReceipts();
+            assertEquals(receiptService.getTotalReceiptsCount(), history.size());
+            assertEquals(List.of(3, 4, 5, 6), history.stream().map(Receipt::getReceiptNumber).toList());
+        }
+    }
+
+    @Test
+    void testGetAllReceipts_OutOfOrderAndSkippedNumbers() throws Exception {
+        try (ReceiptService receiptService = new ReceiptService(tempDir.toString())) {
+            // Parallel cashiers finish their sales in any order, and some numbers are never issued
+            int[] numbers = {2, 1, 3, 7, 5, 6, 10, 4, 12, 11};
+            for (int number : numbers) {
+                receiptService.issueReceipt(createReceipt(number));
+            }
+            List<Receipt> before = receiptService.getAllReceipts();
+            receiptService.issueReceipt(createReceipt(9));
+
+            assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 10, 11, 12),
+                    before.stream().map(Receipt::getReceiptNumber).toList());
+            assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 9, 10, 11, 12),
+                    receiptService.getAllReceipts().stream().map(Receipt::getReceiptNumber).toList());
+            assertEquals(11, receiptService.getTotalReceiptsCount());
+        }
+    }
+
+    private Receipt createReceipt(int receiptNumber) {
+        return createReceipt(receiptNumber, LocalDateTime.now());
+    }
+
+    private Receipt createReceipt(int receiptNumber, LocalDateTime issuedAt) {
+        return new Receipt.Builder()
+                .receiptNumber(receiptNumber)
+                .cashier(cashier)
+                .issuedAt(issuedAt)
+                .addItem(new ReceiptItem(milk, 2, 3.25))
+                .build();
+    }
+}
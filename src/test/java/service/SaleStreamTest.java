@@ -0,0 +1,201 @@
+package service;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.FoodProduct;
+import org.informatics.model.Receipt;
+import org.informatics.model.ReceiptItem;
+import org.informatics.service.SaleStream;
+import org.informatics.service.Store;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the sale stream and its subscribers
+ */
+class SaleStreamTest {
+    @TempDir
+    Path tempDir;
+
+    private final Cashier cashier = new Cashier("C001", "Ivan Ivanov", 1500.0);
+    private final FoodProduct milk = new FoodProduct("P001", "Milk", 2.50,
+            LocalDate.now().plusDays(10), 50, 30.0);
+
+    @Test
+    void testSubscribers_ReceiveEverySaleInOrder() {
+        List<Integer> reporting = new ArrayList<>();
+        List<Integer> analytics = new ArrayList<>();
+
+        try (SaleStream stream = new SaleStream(4)) {
+            stream.subscribe("reporting", (receipt, endOfBatch) -> reporting.add(receipt.getReceiptNumber()));
+            stream.subscribe("analytics", (receipt, endOfBatch) -> analytics.add(receipt.getReceiptNumber()));
+
+            for (int i = 1; i <= 100; i++) {
+                stream.publish(createReceipt(i));
+            }
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, reporting);
+        assertEquals(expected, analytics);
+    }
+
+    @Test
+    void testSlowSubscriber_HoldsBackPublisherInsteadOfLosingSales() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+
+        try (SaleStream stream = new SaleStream(4)) {
+            stream.subscribe("replenishment", (receipt, endOfBatch) -> {
+                release.await();
+                received.add(receipt.getReceiptNumber());
+            });
+
+            ExecutorService publisher = Executors.newSingleThreadExecutor();
+            Future<?> publishing = publisher.submit(() -> {
+                for (int i = 1; i <= 10; i++) {
+                    stream.publish(createReceipt(i));
+                }
+            });
+
+            // The ring is full while the subscriber is stuck on the first sale
+            Thread.sleep(100);
+            assertFalse(publishing.isDone());
+
+            release.countDown();
+            publishing.get(5, TimeUnit.SECONDS);
+            publisher.shutdown();
+            assertTrue(stream.getBackPressureWaits() > 0);
+        }
+
+        assertEquals(10, received.size());
+    }
+
+    @Test
+    void testClose_EverySalePublishedBeforeCloseIsDelivered() throws Exception {
+        AtomicInteger delivered = new AtomicInteger();
+        AtomicInteger accepted = new AtomicInteger();
+        SaleStream stream = new SaleStream(16);
+        stream.subscribe("reporting", (receipt, endOfBatch) -> delivered.incrementAndGet());
+
+        ExecutorService cashiers = Executors.newFixedThreadPool(4);
+        List<Future<?>> publishing = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            publishing.add(cashiers.submit(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    try {
+                        stream.publish(createReceipt(i));
+                    } catch (IllegalStateException e) {
+                        return;
+                    }
+                    accepted.incrementAndGet();
+                }
+            }));
+        }
+        Thread.sleep(20);
+        stream.close();
+        for (Future<?> future : publishing) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        cashiers.shutdown();
+
+        assertThrows(IllegalStateException.class, () -> stream.publish(createReceipt(1)));
+        assertEquals(accepted.get(), delivered.get());
+        assertEquals(accepted.get(), stream.getPublishedCount());
+    }
+
+    @Test
+    void testFailingSubscriber_KeepsReceivingSales() {
+        SaleStream.Subscription subscription;
+        try (SaleStream stream = new SaleStream(8)) {
+            subscription = stream.subscribe("flaky", (receipt, endOfBatch) -> {
+                if (receipt.getReceiptNumber() % 2 == 0) {
+                    throw new IllegalStateException("Cannot process receipt");
+                }
+            });
+            for (int i = 1; i <= 10; i++) {
+                stream.publish(createReceipt(i));
+            }
+        }
+
+        assertEquals(5, subscription.getFailureCount());
+        assertEquals("Cannot process receipt", subscription.getLastFailure().getMessage());
+        assertEquals(0, subscription.getLag());
+    }
+
+    @Test
+    void testStore_PublishesParallelSales() throws Exception {
+        List<Receipt> received = Collections.synchronizedList(new ArrayList<>());
+        List<Future<Receipt>> sales = new ArrayList<>();
+
+        try (Store store = new Store("Shop NBU", 5, 20.0, tempDir.toString())) {
+            store.setPrintReceipts(false);
+            store.addCashier(cashier);
+            store.addProduct(milk);
+            store.subscribeToSales("reporting", (receipt, endOfBatch) -> received.add(receipt));
+
+            ExecutorService cashiers = Executors.newFixedThreadPool(4);
+            for (int i = 0; i < 40; i++) {
+                sales.add(cashiers.submit(() -> store.makeSale("C001", Map.of("P001", 1), 10.0)));
+            }
+            for (Future<Receipt> sale : sales) {
+                sale.get(5, TimeUnit.SECONDS);
+            }
+            cashiers.shutdown();
+
+            assertEquals(40, store.getMetricsSnapshot().getCounter("saleStream.published"));
+        }
+
+        assertEquals(40, received.size());
+        assertEquals(40, received.stream().mapToInt(Receipt::getReceiptNumber).distinct().count());
+    }
+
+    @Test
+    void testStore_ListsSubscriberFailure() throws Exception {
+        try (Store store = new Store("Shop NBU", 5, 20.0, tempDir.toString())) {
+            store.setPrintReceipts(false);
+            store.addCashier(cashier);
+            store.addProduct(milk);
+            SaleStream.Subscription subscription = store.subscribeToSales("flaky", (receipt, endOfBatch) -> {
+                throw new IllegalStateException("Cannot process receipt");
+            });
+            assertTrue(store.getBackgroundFailures().isEmpty());
+
+            store.makeSale("C001", Map.of("P001", 1), 10.0);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (subscription.getFailureCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            assertEquals(List.of("Sale subscriber flaky failed 1 time(s), last: Cannot process receipt"),
+                    store.getBackgroundFailures());
+        }
+    }
+
+    private Receipt createReceipt(int receiptNumber) {
+        return new Receipt.Builder()
+                .receiptNumber(receiptNumber)
+                .cashier(cashier)
+                .issuedAt(LocalDateTime.now())
+                .addItem(new ReceiptItem(milk, 2, 3.25))
+                .build();
+    }
+}
@@ -0,0 +1,206 @@
+package service;
+
+import org.informatics.exception.InsufficientStockException;
+import org.informatics.exception.InvalidProductException;
+import org.informatics.model.*;
+import org.informatics.service.StockContentionMetrics;
+import org.informatics.service.Store;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests for parallel checkout from many cashiers
+ */
+class StoreConcurrencyTest {
+    private static final int CASHIERS = 16;
+    private static final int SALES_PER_CASHIER = 200;
+    private static final String[] PRODUCT_IDS = {"P001", "P002", "P003", "P004", "P005"};
+    private static final int INITIAL_STOCK = 500;
+
+    @TempDir
+    Path tempDir;
+
+    private Store store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = new Store("Shop NBU", 5, 20.0, tempDir.toString());
+        store.setPrintReceipts(false);
+
+        for (int i = 1; i <= CASHIERS; i++) {
+            store.addCashier(new Cashier(String.format("C%03d", i), "Cashier " + i, 1500.0));
+        }
+
+        store.addProduct(new FoodProduct("P001", "Milk", 2.50,
+                LocalDate.now().plusDays(10), INITIAL_STOCK, 30.0));
+        store.addProduct(new FoodProduct("P002", "Bread", 1.20,
+                LocalDate.now().plusDays(3), INITIAL_STOCK, 25.0));
+        store.addProduct(new FoodProduct("P003", "Yogurt", 1.80,
+                LocalDate.now().plusDays(15), INITIAL_STOCK, 30.0));
+        store.addProduct(new NonFoodProduct("P004", "Soap", 3.00,
+                LocalDate.now().plusMonths(12), INITIAL_STOCK, 50.0));
+        store.addProduct(new NonFoodProduct("P005", "Shampoo", 8.00,
+                LocalDate.now().plusMonths(18), INITIAL_STOCK, 45.0));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    void testParallelSales_NoLostUpdatesOrOversoldStock() throws Exception {
+        // Demand is higher than stock, so some sales must be rejected
+        AtomicInteger rejected = new AtomicInteger();
+        List<Receipt> receipts = runParallelSales(rejected);
+
+        Map<String, Integer> sold = new HashMap<>();
+        for (Receipt receipt : receipts) {
+            for (ReceiptItem item : receipt.getItems()) {
+                sold.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+        }
+
+        for (String productId : PRODUCT_IDS) {
+            int stock = store.getInventoryService().getProduct(productId).getQuantityInStock();
+            assertTrue(stock >= 0, "Stock of " + productId + " went negative");
+            assertEquals(INITIAL_STOCK - sold.getOrDefault(productId, 0), stock);
+        }
+
+        assertTrue(rejected.get() > 0);
+        assertEquals(CASHIERS * SALES_PER_CASHIER, receipts.size() + rejected.get());
+    }
+
+    @Test
+    void testParallelSales_UniqueGapFreeReceiptNumbers() throws Exception {
+        List<Receipt> receipts = runParallelSales(new AtomicInteger());
+
+        Set<Integer> numbers = new HashSet<>();
+        for (Receipt receipt : receipts) {
+            assertTrue(numbers.add(receipt.getReceiptNumber()),
+                    "Duplicate receipt number " + receipt.getReceiptNumber());
+        }
+
+        // Numbers are exactly 1..N
+        for (int i = 1; i <= receipts.size(); i++) {
+            assertTrue(numbers.contains(i), "Missing receipt number " + i);
+        }
+        assertEquals(receipts.size(), store.getTotalReceiptsCount());
+    }
+
+    @Test
+    void testParallelSales_ExactRevenue() throws Exception {
+        List<Receipt> receipts = runParallelSales(new AtomicInteger());
+
+        double expectedRevenue = receipts.stream()
+                .mapToDouble(Receipt::getTotalAmount)
+                .sum();
+
+        assertEquals(expectedRevenue, store.calculateTotalRevenue(), 0.000001);
+        assertEquals(receipts.size(), store.getReceiptService().getAllReceipts().size());
+
+        // The running supply expenses match the stock left after all sales and released reservations
+        double expectedSupplyExpenses = store.getInventoryService().getAllProducts().stream()
+                .mapToDouble(p -> p.getPurchasePrice() * p.getQuantityInStock())
+                .sum();
+        assertEquals(expectedSupplyExpenses, store.calculateSupplyExpenses(), 0.000001);
+    }
+
+    @Test
+    void testParallelSales_ContentionMetricsCountEveryStockUpdate() throws Exception {
+        List<Receipt> receipts = runParallelSales(new AtomicInteger());
+        StockContentionMetrics metrics = store.getStockContentionMetrics();
+
+        long soldLines = receipts.stream().mapToLong(r -> r.getItems().size()).sum();
+        // Released reservations took stock too
+        assertTrue(metrics.getUpdateCount() >= soldLines);
+        assertTrue(metrics.getContendedUpdateCount() <= metrics.getUpdateCount());
+
+        long retriesByProduct = metrics.getMostContended(PRODUCT_IDS.length).stream()
+                .mapToLong(StockContentionMetrics.ProductContention::getRetries)
+                .sum();
+        assertEquals(metrics.getRetryCount(), retriesByProduct);
+    }
+
+    @Test
+    void testParallelSalesAndDeliveries_NoLostUpdates() throws Exception {
+        int deliveries = 50;
+        Thread supplier = new Thread(() -> {
+            for (int i = 0; i < deliveries; i++) {
+                List<Map.Entry<String, Integer>> delivery = new ArrayList<>();
+                for (String productId : PRODUCT_IDS) {
+                    delivery.add(Map.entry(productId, 2));
+                }
+                store.restockAll(delivery);
+            }
+        });
+        supplier.start();
+        List<Receipt> receipts = runParallelSales(new AtomicInteger());
+        supplier.join();
+
+        Map<String, Integer> sold = new HashMap<>();
+        for (Receipt receipt : receipts) {
+            for (ReceiptItem item : receipt.getItems()) {
+                sold.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+        }
+        for (String productId : PRODUCT_IDS) {
+            int stock = store.getInventoryService().getProduct(productId).getQuantityInStock();
+            assertEquals(INITIAL_STOCK + deliveries * 2 - sold.getOrDefault(productId, 0), stock);
+        }
+    }
+
+    /**
+     * Every cashier makes sales of 1-3 products in its own thread, all starting together
+     * Some customers pay too little, so those sales are rejected after stock was reserved
+     */
+    private List<Receipt> runParallelSales(AtomicInteger rejected) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CASHIERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Receipt>>> futures = new ArrayList<>();
+
+        for (int c = 1; c <= CASHIERS; c++) {
+            String cashierId = String.format("C%03d", c);
+            long seed = c;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                List<Receipt> issued = new ArrayList<>();
+                start.await();
+                for (int i = 0; i < SALES_PER_CASHIER; i++) {
+                    Map<String, Integer> items = new HashMap<>();
+                    int lines = 1 + random.nextInt(3);
+                    for (int l = 0; l < lines; l++) {
+                        items.merge(PRODUCT_IDS[random.nextInt(PRODUCT_IDS.length)], 1 + random.nextInt(3),
+                                Integer::sum);
+                    }
+                    double payment = random.nextInt(10) == 0 ? 1.0 : 1000.0;
+                    try {
+                        issued.add(store.makeSale(cashierId, items, payment));
+                    } catch (InsufficientStockException | InvalidProductException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return issued;
+            }));
+        }
+
+        start.countDown();
+        List<Receipt> receipts = new ArrayList<>();
+        for (Future<List<Receipt>> future : futures) {
+            receipts.addAll(future.get(60, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        return receipts;
+    }
+}
@@ -0,0 +1,141 @@
+package service;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.FoodProduct;
+import org.informatics.model.NonFoodProduct;
+import org.informatics.service.DurabilityMode;
+import org.informatics.service.StateLogWriter;
+import org.informatics.service.Store;
+import org.informatics.util.StateLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for restoring the store from its state log and snapshots
+ */
+class StoreStateLogTest {
+    @TempDir
+    Path tempDir;
+
+    private final LocalDate expiration = LocalDate.now().plusDays(30);
+
+    @Test
+    void testRecoverState_RestoresProductsStockAndCashiers() throws Exception {
+        try (Store store = createStore()) {
+            assertEquals(0, store.recoverState(stateDir()));
+            store.addCashier(new Cashier("C001", "Ivan Ivanov", 1500.0));
+            store.addProduct(new FoodProduct("P001", "Milk", 2.50, expiration, 50, 30.0));
+            store.addProduct(new NonFoodProduct("P002", "Soap", 1.20, expiration.plusYears(1), 10, 50.0));
+            store.restockProduct("P001", 10);
+            store.updatePricingRules(3, 40.0);
+            store.makeSale("C001", Map.of("P001", 5, "P002", 2), 100.0);
+        }
+
+        try (Store store = createStore()) {
+            assertTrue(store.recoverState(stateDir()) > 0);
+
+            assertEquals(55, store.getInventoryService().getProduct("P001").getQuantityInStock());
+            assertEquals(8, store.getInventoryService().getProduct("P002").getQuantityInStock());
+            assertEquals("Ivan Ivanov", store.getCashier("C001").getName());
+            assertEquals(3, store.getPricingService().getExpirationThresholdDays());
+            assertEquals(40.0, store.getPricingService().getExpirationDiscountPercentage(), 0.0001);
+            assertEquals(2.50 * 55 + 1.20 * 8, store.calculateSupplyExpenses(), 0.001);
+            assertEquals(1, store.getTotalReceiptsCount());
+
+            // The next sale continues where the last run stopped
+            assertEquals(2, store.makeSale("C001", Map.of("P001", 1), 10.0).getReceiptNumber());
+        }
+    }
+
+    @Test
+    void testSnapshotState_OnlyLaterChangesAreReplayed() throws Exception {
+        try (Store store = createStore()) {
+            store.recoverState(stateDir(), 0);
+            store.addCashier(new Cashier("C001", "Ivan Ivanov", 1500.0));
+            for (int i = 0; i < 20; i++) {
+                store.addProduct(new FoodProduct("P" + i, "Product " + i, 1.00, expiration, 10, 20.0));
+            }
+            store.makeSale("C001", Map.of("P0", 4), 10.0);
+
+            store.snapshotState();
+
+            store.restockProduct("P1", 5);
+            store.makeSale("C001", Map.of("P0", 1), 10.0);
+        }
+
+        try (Store store = createStore()) {
+            assertEquals(2, store.recoverState(stateDir()));
+
+            assertEquals(20, store.getInventoryService().getProductCount());
+            assertEquals(5, store.getInventoryService().getProduct("P0").getQuantityInStock());
+            assertEquals(15, store.getInventoryService().getProduct("P1").getQuantityInStock());
+            assertEquals(2, store.getTotalReceiptsCount());
+        }
+    }
+
+    @Test
+    void testRecoverState_TornTailIsDropped() throws Exception {
+        try (Store store = createStore()) {
+            store.recoverState(stateDir());
+            store.addProduct(new FoodProduct("P001", "Milk", 2.50, expiration, 50, 30.0));
+            store.syncState();
+        }
+
+        // A crash in the middle of a write leaves half a record at the end of the log
+        try (var logs = Files.list(stateDir())) {
+            List<Path> files = logs.filter(path -> path.toString().endsWith(".log")).sorted().toList();
+            Path last = files.get(files.size() - 1);
+            Files.write(last, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        }
+
+        try (Store store = createStore()) {
+            store.recoverState(stateDir());
+            assertEquals(50, store.getInventoryService().getProduct("P001").getQuantityInStock());
+        }
+    }
+
+    @Test
+    void testRecoverState_RejectsNonEmptyStore() throws Exception {
+        try (Store store = createStore()) {
+            store.addCashier(new Cashier("C001", "Ivan Ivanov", 1500.0));
+
+            assertThrows(IllegalStateException.class, () -> store.recoverState(stateDir()));
+        }
+    }
+
+    @Test
+    void testFailedWrite_IsKeptAfterCloseReportsIt() throws Exception {
+        StateLog log = mock(StateLog.class);
+        doThrow(new IOException("Disk full")).doNothing().when(log).sync();
+        StateLogWriter writer = new StateLogWriter(log, DurabilityMode.FLUSH_PER_BATCH, 16, 0, () -> { });
+
+        writer.submit(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        assertThrows(IOException.class, writer::close);
+
+        assertEquals("Disk full", writer.getLastFailure().getMessage());
+        assertEquals(1, writer.getFailureCount());
+    }
+
+    private Store createStore() {
+        Store store = new Store("Shop NBU", 5, 20.0, tempDir.resolve("receipts").toString(),
+                DurabilityMode.FLUSH_PER_BATCH);
+        store.setPrintReceipts(false);
+        return store;
+    }
+
+    private Path stateDir() {
+        return tempDir.resolve("state");
+    }
+}
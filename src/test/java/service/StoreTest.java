@@ -3,15 +3,23 @@ package service;
 import org.informatics.exception.ExpiredProductException;
 import org.informatics.exception.InsufficientStockException;
 import org.informatics.exception.InvalidProductException;
+import org.informatics.metrics.MetricsSnapshot;
 import org.informatics.model.*;
+import org.informatics.service.DurabilityMode;
 import org.informatics.service.Store;
+import org.informatics.util.StoreClock;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -81,6 +89,39 @@ class StoreTest {
         store.addProduct(shampoo);
     }
 
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    void testManualClock_ExpiryAndDiscountFollowTheStoreDay() throws Exception {
+        StoreClock clock = StoreClock.manual(LocalDateTime.of(2026, 5, 4, 9, 30));
+        try (Store clockedStore = new Store("Shop NBU", 5, 20.0, tempDir.resolve("clocked").toString(),
+                DurabilityMode.FLUSH_PER_BATCH, clock)) {
+            clockedStore.setPrintReceipts(false);
+            clockedStore.addCashier(cashier1);
+            // Expires in 6 days - no discount yet
+            clockedStore.addProduct(new FoodProduct("P100", "Kefir", 2.00,
+                    clock.today().plusDays(6), 10, 30.0));
+
+            Receipt first = clockedStore.makeSale("C001", Map.of("P100", 1), 10.0);
+            assertEquals(2.60, first.getTotalAmount(), 0.001);
+            assertEquals(clock.now(), first.getIssuedAt());
+
+            // Two days later the discount applies: 2.60 * 0.80 = 2.08
+            clock.advance(Duration.ofDays(2));
+            Receipt second = clockedStore.makeSale("C001", Map.of("P100", 1), 10.0);
+            assertEquals(2.08, second.getTotalAmount(), 0.001);
+
+            // After the expiration date the product can no longer be sold
+            clock.advance(Duration.ofDays(5));
+            assertThrows(ExpiredProductException.class,
+                    () -> clockedStore.makeSale("C001", Map.of("P100", 1), 10.0));
+            assertEquals(1, clockedStore.getExpiredProducts().size());
+        }
+    }
+
     @Test
     void testAddCashier() throws InvalidProductException {
         Cashier newCashier = new Cashier("C003", "New Cashier", 1550.0);
@@ -202,4 +243,57 @@ class StoreTest {
         // Receipts count
         assertEquals(1, store.getTotalReceiptsCount());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testInsufficientPayment_StockIsReleased() {
+        Map<String, Integer> items = new HashMap<>();
+        items.put("P001", 2);  // Milk
+        items.put("P005", 2);  // Shampoo
+
+        assertThrows(InvalidProductException.class,
+                () -> store.makeSale("C001", items, 10.0));
+
+        // Nothing was taken from stock and no receipt number was used
+        assertEquals(50, milk.getQuantityInStock());
+        assertEquals(25, shampoo.getQuantityInStock());
+        assertEquals(0, store.getTotalReceiptsCount());
+        assertEquals(1, store.getReceiptService().getNextReceiptNumber());
+    }
+
+    @Test
+    void testSaleWithOneUnavailableItem_OtherItemsAreReleased() {
+        Map<String, Integer> items = new LinkedHashMap<>();
+        items.put("P001", 5);    // Milk - available
+        items.put("P004", 3);    // Soap - available
+        items.put("P003", 100);  // Yogurt - only 30 in stock
+
+        assertThrows(InsufficientStockException.class,
+                () -> store.makeSale("C001", items, 500.0));
+
+        assertEquals(50, milk.getQuantityInStock());
+        assertEquals(40, soap.getQuantityInStock());
+        assertEquals(30, yogurt.getQuantityInStock());
+    }
+
+    @Test
+    void testMetricsSnapshot_CountsSalesAndFailuresByType() throws Exception {
+        store.makeSale("C001", Map.of("P001", 2), 100.0);
+        assertThrows(InsufficientStockException.class, () -> store.makeSale("C001", Map.of("P003", 100), 500.0));
+        assertThrows(InvalidProductException.class, () -> store.makeSale("C001", Map.of("P001", 1), 0.10));
+
+        MetricsSnapshot snapshot = store.getMetricsSnapshot();
+
+        assertEquals(1, snapshot.getCounter("sales.completed"));
+        assertEquals(2, snapshot.getCounter("sales.failed"));
+        assertEquals(1, snapshot.getCounter("errors.insufficientStock"));
+        assertEquals(1, snapshot.getCounter("errors.invalidProduct"));
+        assertEquals(1, snapshot.getCounter("receipts.issued"));
+        assertEquals(1, snapshot.getLatency("sale.total").getCount());
+        assertEquals(1, snapshot.getLatency("sale.persistence").getCount());
+        // The stock phase is also timed for the sale that failed at payment
+        assertEquals(2, snapshot.getLatency("sale.stock").getCount());
+        assertEquals(2, snapshot.getLatency("sale.pricing").getCount());
+        // Only the paid sale commits its reserved stock
+        assertEquals(1, snapshot.getLatency("sale.commit").getCount());
+    }
+}
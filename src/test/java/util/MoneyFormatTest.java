@@ -0,0 +1,103 @@
+package util;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.FoodProduct;
+import org.informatics.model.Receipt;
+import org.informatics.model.ReceiptItem;
+import org.informatics.util.MoneyFormat;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the hand-written money and receipt formatting matches String.format
+ */
+class MoneyFormatTest {
+
+    @Test
+    void testAppendTwoDecimals_MatchesStringFormat() {
+        double[] values = {0.0, -0.0, 0.005, 0.015, 1.005, 2.675, 3.5, 6.5, 9.995, 0.1 + 0.2,
+                -0.001, -1.005, 123456.785, 1e15 + 0.5, 99.999, 1234567890.125};
+        for (double value : values) {
+            assertFormattedLikeStringFormat(value);
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            // Prices and totals as they come out of pricing: cents times a markup and quantity
+            double value = random.nextInt(100_000) / 100.0 * (1 + random.nextInt(50) / 100.0)
+                    * (1 + random.nextInt(5));
+            assertFormattedLikeStringFormat(value);
+            assertFormattedLikeStringFormat(random.nextDouble() * 1000);
+        }
+    }
+
+    @Test
+    void testAppendTwoDecimals_OtherLocale() {
+        Locale defaultLocale = Locale.getDefault(Locale.Category.FORMAT);
+        try {
+            Locale.setDefault(Locale.Category.FORMAT, Locale.GERMANY);
+            assertFormattedLikeStringFormat(3.25);
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, defaultLocale);
+        }
+    }
+
+    @Test
+    void testReceiptFormat_SameAsStringFormat() {
+        Cashier cashier = new Cashier("C001", "Ivan Ivanov", 1500.0);
+        FoodProduct milk = new FoodProduct("P001", "Milk", 2.50, LocalDate.now().plusDays(10), 50, 30.0);
+        Receipt receipt = new Receipt.Builder()
+                .receiptNumber(42)
+                .cashier(cashier)
+                .issuedAt(LocalDateTime.of(2024, 3, 7, 9, 5, 1))
+                .addItem(new ReceiptItem(milk, 3, 3.255))
+                .addItem(new ReceiptItem("P002", "Bread", 1, 1.56))
+                .build();
+
+        assertEquals(formatWithStringFormat(receipt), receipt.format());
+
+        StringBuilder reused = new StringBuilder("previous text");
+        reused.setLength(0);
+        assertEquals(receipt.format(), receipt.formatTo(reused).toString());
+    }
+
+    private static void assertFormattedLikeStringFormat(double value) {
+        assertEquals(String.format("%.2f", value),
+                MoneyFormat.appendTwoDecimals(new StringBuilder(), value).toString(),
+                () -> "value " + value);
+    }
+
+    /**
+     * Receipt text as it was built before the allocation-free renderer
+     */
+    private static String formatWithStringFormat(Receipt receipt) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=".repeat(50)).append("\n");
+        sb.append("RECEIPT #").append(receipt.getReceiptNumber()).append("\n");
+        sb.append("=".repeat(50)).append("\n");
+        sb.append("Cashier: ").append(receipt.getCashier().getName())
+                .append(" (").append(receipt.getCashier().getId()).append(")\n");
+        sb.append("Date and time: ")
+                .append(receipt.getIssuedAt().format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss")))
+                .append("\n");
+        sb.append("-".repeat(50)).append("\n");
+        sb.append("ARTICLES:\n");
+        sb.append("-".repeat(50)).append("\n");
+        for (ReceiptItem item : receipt.getItems()) {
+            sb.append(String.format("%s x %d @ %.2f EUR = %.2f EUR",
+                    item.getProductName(), item.getQuantity(), item.getUnitPrice(), item.getTotalPrice()))
+                    .append("\n");
+        }
+        sb.append("-".repeat(50)).append("\n");
+        sb.append(String.format("SUM: %.2f EUR\n", receipt.getTotalAmount()));
+        sb.append("=".repeat(50)).append("\n");
+        return sb.toString();
+    }
+}
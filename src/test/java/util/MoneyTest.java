@@ -0,0 +1,75 @@
+package util;
+
+import org.informatics.model.FoodProduct;
+import org.informatics.model.NonFoodProduct;
+import org.informatics.model.ReceiptItem;
+import org.informatics.util.Money;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for amounts in cents and their rounding rules
+ */
+class MoneyTest {
+
+    @Test
+    void testToCents_RoundsHalfUp() {
+        assertEquals(250, Money.toCents(2.50));
+        assertEquals(101, Money.toCents(1.005));
+        assertEquals(268, Money.toCents(2.675));
+        assertEquals(30, Money.toCents(0.1 + 0.2));
+        assertEquals(-101, Money.toCents(-1.005));
+        assertEquals(0, Money.toCents(0.004));
+        assertEquals(Long.MAX_VALUE, Money.toCents(Double.MAX_VALUE));
+    }
+
+    @Test
+    void testApplyMarkupAndDiscount_RoundsOnceAtTheEnd() {
+        // 5.50 * 1.35 = 7.425 -> 7.43
+        assertEquals(743, Money.applyMarkupAndDiscount(550, 3500, 0));
+        // 5.50 * 1.35 * 0.80 = 5.94
+        assertEquals(594, Money.applyMarkupAndDiscount(550, 3500, 2000));
+        // 1.99 * 1.125 * 0.85 = 1.90290625 -> 1.90
+        assertEquals(190, Money.applyMarkupAndDiscount(199, 1250, 1500));
+    }
+
+    @Test
+    void testSalePriceCents_MatchesDoublePrice() {
+        FoodProduct cheese = new FoodProduct("P006", "Cheese", 5.50,
+                LocalDate.now().plusDays(2), 20, 35.0);
+
+        assertEquals(594, cheese.calculateSalePriceCents(2, 5, 20.0));
+        assertEquals(5.94, cheese.calculateSalePrice(2, 5, 20.0), 0.0);
+    }
+
+    @Test
+    void testSalePrice_IsRoundedToCents() {
+        NonFoodProduct pen = new NonFoodProduct("P007", "Pen", 1.99,
+                LocalDate.now().plusDays(2), 20, 12.5);
+        FoodProduct rice = new FoodProduct("P008", "Rice", 5.50,
+                LocalDate.now().plusDays(30), 20, 35.0);
+
+        // 1.99 * 1.125 * 0.85 = 1.90290625 is rounded down
+        assertEquals(1.90, pen.calculateSalePrice(2, 5, 15.0), 0.0);
+        // 5.50 * 1.35 = 7.425 is rounded half up
+        assertEquals(7.43, rice.calculateSalePrice(30, 5, 20.0), 0.0);
+    }
+
+    @Test
+    void testSumOfManyLines_IsExact() {
+        long totalCents = 0;
+        double totalDouble = 0.0;
+        for (int i = 0; i < 1_000_000; i++) {
+            ReceiptItem item = ReceiptItem.ofCents("P001", "Milk", 3, 10);
+            totalCents += item.getTotalPriceCents();
+            totalDouble += item.getTotalPrice();
+        }
+
+        assertEquals(30_000_000, totalCents);
+        // The same sum in doubles has drifted away from 300000.00
+        assertNotEquals(300_000.0, totalDouble);
+    }
+}
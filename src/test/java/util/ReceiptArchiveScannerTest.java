@@ -0,0 +1,112 @@
+package util;
+
+import org.informatics.model.Cashier;
+import org.informatics.model.FoodProduct;
+import org.informatics.model.NonFoodProduct;
+import org.informatics.model.Receipt;
+import org.informatics.model.ReceiptItem;
+import org.informatics.util.ReceiptArchiveScanner;
+import org.informatics.util.ReceiptCodec;
+import org.informatics.util.ReceiptJournal;
+import org.informatics.util.ReceiptScanSummary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for scanning receipt journals through memory-mapped segments
+ */
+class ReceiptArchiveScannerTest {
+    @TempDir
+    Path tempDir;
+
+    private final Cashier ivan = new Cashier("C001", "Ivan Ivanov", 1500.0);
+    private final Cashier maria = new Cashier("C002", "Maria Petrova", 1600.0);
+    private final FoodProduct milk = new FoodProduct("P001", "Milk", 2.50,
+            LocalDate.now().plusDays(10), 50, 30.0);
+    private final NonFoodProduct soap = new NonFoodProduct("P002", "Soap", 1.20,
+            LocalDate.now().plusDays(100), 50, 40.0);
+
+    @Test
+    void testScan_VisitsAllReceiptsAcrossSegments() throws Exception {
+        ReceiptCodec codec = new ReceiptCodec();
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir, 300)) {
+            for (int i = 1; i <= 30; i++) {
+                journal.append(i, codec.encode(createReceipt(i)));
+            }
+            assertTrue(journal.getSegmentFiles().size() > 1);
+        }
+
+        List<Integer> numbers = new ArrayList<>();
+        List<String> cashiers = new ArrayList<>();
+        ReceiptArchiveScanner scanner = ReceiptArchiveScanner.open(tempDir);
+        long count = scanner.scan(cursor -> {
+            numbers.add(cursor.getReceiptNumber());
+            cashiers.add(cursor.getCashierId());
+        });
+
+        assertEquals(30, count);
+        for (int i = 1; i <= 30; i++) {
+            assertEquals(i, numbers.get(i - 1));
+            assertEquals(cashierFor(i).getId(), cashiers.get(i - 1));
+        }
+    }
+
+    @Test
+    void testSummarize_MatchesDeserializedReceipts() throws Exception {
+        ReceiptCodec codec = new ReceiptCodec();
+        double expectedRevenue = 0.0;
+        double expectedIvanRevenue = 0.0;
+        long expectedMilk = 0;
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir, 500)) {
+            for (int i = 1; i <= 100; i++) {
+                Receipt receipt = createReceipt(i);
+                journal.append(i, codec.encode(receipt));
+
+                expectedRevenue += receipt.getTotalAmount();
+                if (receipt.getCashier() == ivan) {
+                    expectedIvanRevenue += receipt.getTotalAmount();
+                }
+                expectedMilk += receipt.getItems().get(0).getQuantity();
+            }
+        }
+
+        ReceiptScanSummary summary = ReceiptArchiveScanner.open(tempDir).summarize();
+
+        assertEquals(100, summary.getReceiptCount());
+        assertEquals(200, summary.getItemLineCount());
+        assertEquals(expectedRevenue, summary.getTotalRevenue(), 0.001);
+        assertEquals(expectedIvanRevenue, summary.getRevenueByCashier().get("C001"), 0.001);
+        assertEquals(expectedMilk, summary.getQuantityByProduct().get("P001"));
+        assertEquals(100, summary.getQuantityByProduct().get("P002"));
+    }
+
+    @Test
+    void testScan_EmptyDirectory() throws Exception {
+        ReceiptArchiveScanner scanner = ReceiptArchiveScanner.open(tempDir);
+
+        assertEquals(0, scanner.getSegmentCount());
+        assertEquals(0, scanner.summarize().getReceiptCount());
+    }
+
+    private Cashier cashierFor(int receiptNumber) {
+        return receiptNumber % 3 == 0 ? maria : ivan;
+    }
+
+    private Receipt createReceipt(int receiptNumber) {
+        return new Receipt.Builder()
+                .receiptNumber(receiptNumber)
+                .cashier(cashierFor(receiptNumber))
+                .issuedAt(LocalDateTime.now())
+                .addItem(new ReceiptItem(milk, 1 + receiptNumber % 4, 3.25))
+                .addItem(new ReceiptItem(soap, 1, 1.68))
+                .build();
+    }
+}
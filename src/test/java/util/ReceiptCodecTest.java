@@ -0,0 +1,139 @@
+package util;
+
+import org.informatics.model.*;
+import org.informatics.util.ReceiptCodec;
+import org.informatics.util.ReceiptNames;
+import org.informatics.util.SerializationUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for the binary receipt format
+ */
+class ReceiptCodecTest {
+    private final Cashier cashier = new Cashier("C001", "Ivan Ivanov", 1500.0);
+    private final FoodProduct milk = new FoodProduct("P001", "Milk", 2.50,
+            LocalDate.now().plusDays(10), 50, 30.0);
+    private final NonFoodProduct soap = new NonFoodProduct("P004", "Soap", 3.00,
+            LocalDate.now().plusMonths(12), 40, 50.0);
+
+    @Test
+    void testRoundTrip() throws Exception {
+        Receipt receipt = createReceipt(cashier);
+
+        Receipt decoded = ReceiptCodec.decode(new ReceiptCodec().encodeToBytes(receipt), names(cashier));
+
+        assertEquals(receipt.getReceiptNumber(), decoded.getReceiptNumber());
+        assertEquals(receipt.getIssuedAt(), decoded.getIssuedAt());
+        assertEquals("C001", decoded.getCashier().getId());
+        assertEquals(2, decoded.getItems().size());
+        assertEquals("P004", decoded.getItems().get(1).getProductId());
+        assertEquals(receipt.getTotalAmount(), decoded.getTotalAmount(), 0.0);
+        assertEquals(receipt.format(), decoded.format());
+    }
+
+    @Test
+    void testRoundTrip_NonAsciiNames() throws Exception {
+        Cashier maria = new Cashier("C002", "Мария Попова 😀", 1600.0);
+        Receipt receipt = createReceipt(maria);
+
+        Receipt decoded = ReceiptCodec.decode(new ReceiptCodec().encodeToBytes(receipt), names(maria));
+
+        assertEquals("Мария Попова 😀", decoded.getCashier().getName());
+    }
+
+    @Test
+    void testEncode_StoresOnlyIds() throws Exception {
+        Receipt receipt = createReceipt(cashier);
+
+        byte[] encoded = new ReceiptCodec().encodeToBytes(receipt);
+        String text = new String(encoded, StandardCharsets.ISO_8859_1);
+
+        assertFalse(text.contains("Ivan Ivanov"));
+        assertFalse(text.contains("Milk"));
+        ByteBuffer salary = ByteBuffer.allocate(Double.BYTES).putDouble(1500.0);
+        assertFalse(text.contains(new String(salary.array(), StandardCharsets.ISO_8859_1)));
+
+        // Without a registry the IDs stand in for the names
+        Receipt decoded = ReceiptCodec.decode(encoded);
+        assertEquals("C001", decoded.getCashier().getName());
+        assertEquals(0.0, decoded.getCashier().getMonthlySalary(), 0.0);
+        assertEquals("P001", decoded.getItems().get(0).getProductName());
+        assertEquals(receipt.getTotalAmountCents(), decoded.getTotalAmountCents());
+    }
+
+    @Test
+    void testEncode_ReusesBufferAndGrows() throws Exception {
+        ReceiptCodec codec = new ReceiptCodec();
+        Receipt.Builder builder = new Receipt.Builder()
+                .receiptNumber(1)
+                .cashier(cashier)
+                .issuedAt(LocalDateTime.now());
+        for (int i = 0; i < 200; i++) {
+            builder.addItem(new ReceiptItem("P" + i, "Product number " + i, i + 1, 1.25));
+        }
+        Receipt large = builder.build();
+
+        ByteBuffer encoded = codec.encode(large);
+        Receipt decoded = ReceiptCodec.decode(encoded);
+
+        assertEquals(200, decoded.getItems().size());
+        assertEquals(large.getTotalAmount(), decoded.getTotalAmount(), 0.0);
+    }
+
+    @Test
+    void testEncodedSize_MuchSmallerThanJavaSerialization() throws Exception {
+        Receipt receipt = createReceipt(cashier);
+
+        int binarySize = new ReceiptCodec().encodeToBytes(receipt).length;
+        int javaSize = SerializationUtil.serializeToBytes(receipt).length;
+
+        assertTrue(binarySize * 5 < javaSize,
+                "Binary: " + binarySize + " bytes, Java serialization: " + javaSize + " bytes");
+    }
+
+    @Test
+    void testEncode_LegacySerFileReceipt() throws Exception {
+        // Receipt written by the first version, where every item held the whole product
+        Path legacyFile = Paths.get("receipts", "receipt_3.ser");
+        assumeTrue(Files.exists(legacyFile));
+
+        Receipt legacy = (Receipt) SerializationUtil.deserialize(legacyFile.toString());
+
+        assertEquals(3, legacy.getReceiptNumber());
+        assertEquals(5, legacy.getItems().size());
+        for (ReceiptItem item : legacy.getItems()) {
+            assertNotNull(item.getProductId());
+            assertNotNull(item.getProductName());
+        }
+        assertEquals(Files.readString(Paths.get("receipts", "receipt_3.txt")), legacy.format());
+
+        // The old file also carried every product and class descriptions
+        assertTrue(new ReceiptCodec().encodeToBytes(legacy).length * 5 < Files.size(legacyFile));
+    }
+
+    private ReceiptNames names(Cashier cashier) {
+        return ReceiptNames.of(List.of(cashier), List.of(milk, soap));
+    }
+
+    private Receipt createReceipt(Cashier cashier) {
+        return new Receipt.Builder()
+                .receiptNumber(42)
+                .cashier(cashier)
+                .issuedAt(LocalDateTime.of(2026, 1, 29, 21, 19, 46, 123456789))
+                .addItem(new ReceiptItem(milk, 2, 3.25))
+                .addItem(new ReceiptItem(soap, 1, 4.50))
+                .build();
+    }
+}
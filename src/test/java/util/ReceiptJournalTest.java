@@ -0,0 +1,148 @@
+package util;
+
+import org.informatics.util.ReceiptJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the segmented receipt journal
+ */
+class ReceiptJournalTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testAppendAndRead() throws Exception {
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir)) {
+            journal.append(1, payload(1));
+            journal.append(2, payload(2));
+
+            assertArrayEquals(payload(1), journal.read(1));
+            assertArrayEquals(payload(2), journal.read(2));
+            assertNull(journal.read(3));
+            assertEquals(2, journal.getRecordCount());
+        }
+    }
+
+    @Test
+    void testSegmentRollover_AndReopen() throws Exception {
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir, 200)) {
+            for (int i = 1; i <= 50; i++) {
+                journal.append(i, payload(i));
+            }
+            assertTrue(journal.getSegmentFiles().size() > 1);
+        }
+
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir, 200)) {
+            assertEquals(50, journal.getRecordCount());
+            for (int i = 1; i <= 50; i++) {
+                assertArrayEquals(payload(i), journal.read(i));
+            }
+
+            // Appending continues after reopening
+            journal.append(51, payload(51));
+            assertArrayEquals(payload(51), journal.read(51));
+        }
+    }
+
+    @Test
+    void testOutOfOrderNumbers() throws Exception {
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir, 100)) {
+            int[] numbers = {3, 1, 2, 6, 4, 5, 9, 7, 8};
+            for (int number : numbers) {
+                journal.append(number, payload(number));
+            }
+        }
+
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir, 100)) {
+            for (int i = 1; i <= 9; i++) {
+                assertArrayEquals(payload(i), journal.read(i));
+            }
+        }
+    }
+
+    @Test
+    void testOutOfOrderNumbers_ActiveSegment() throws Exception {
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir)) {
+            // The first number is not the lowest, and 200 leaves a gap
+            int[] numbers = {5, 7, 6, 2, 1, 200, 3};
+            for (int number : numbers) {
+                journal.append(number, payload(number));
+            }
+
+            for (int number : numbers) {
+                assertArrayEquals(payload(number), journal.read(number));
+            }
+            assertNull(journal.read(4));
+            assertNull(journal.read(100));
+            assertNull(journal.read(201));
+            assertNull(journal.read(0));
+        }
+    }
+
+    @Test
+    void testTornTailIsTruncatedOnOpen() throws Exception {
+        Path segment;
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir)) {
+            journal.append(1, payload(1));
+            journal.append(2, payload(2));
+            segment = journal.getSegmentFiles().get(0);
+        }
+
+        // Simulate a crash in the middle of writing record #3
+        long validSize;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            validSize = channel.size();
+            ByteBuffer partial = ByteBuffer.allocate(20);
+            partial.putInt(100).putInt(3).putInt(12345).putInt(42).putInt(42).flip();
+            channel.write(partial, validSize);
+        }
+
+        try (ReceiptJournal journal = ReceiptJournal.open(tempDir)) {
+            assertEquals(2, journal.getRecordCount());
+            assertNull(journal.read(3));
+
+            journal.append(3, payload(3));
+            assertArrayEquals(payload(3), journal.read(3));
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            assertEquals(validSize + ReceiptJournal.RECORD_HEADER_SIZE + payload(3).length, channel.size());
+        }
+    }
+
+    @Test
+    void testArchive_MovesOldSegments() throws Exception {
+        Path archiveDir = tempDir.resolve("archive");
+        Path journalDir = tempDir.resolve("journal");
+
+        try (ReceiptJournal journal = ReceiptJournal.open(journalDir, 200)) {
+            for (int i = 1; i <= 40; i++) {
+                journal.append(i, payload(i));
+            }
+
+            long archived = journal.archive(archiveDir, 30);
+
+            assertTrue(archived > 0);
+            assertEquals(40, journal.getRecordCount() + archived);
+            assertNull(journal.read(1));
+            assertArrayEquals(payload(40), journal.read(40));
+        }
+
+        try (ReceiptJournal archive = ReceiptJournal.open(archiveDir, 200)) {
+            assertEquals(1, archive.getSegmentFiles().size());
+            assertArrayEquals(payload(1), archive.read(1));
+        }
+    }
+
+    private static byte[] payload(int number) {
+        return ("receipt #" + number).getBytes(StandardCharsets.UTF_8);
+    }
+}